@@ -0,0 +1,96 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.HttpClient;
+import io.pdfapi.client.http.HttpResponse;
+import io.pdfapi.client.http.StreamingHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The requests the client sends to start a conversion with two assets, answered in memory without a
+ * network. Run with the gc profiler, {@code gc.alloc.rate.norm} is what the client itself allocates
+ * per conversion to build and send its requests.
+ */
+@State(Scope.Benchmark)
+public class RequestPathBenchmark {
+    private static final byte[] ID = "{\"id\":\"benchmark-conversion\"}".getBytes(StandardCharsets.UTF_8);
+    private static final Map<String, List<String>> LOCATION =
+            Map.of("Location", List.of("http://localhost/api/results/benchmark-conversion"));
+    private static final ConversionRequest REQUEST = ConversionRequest.builder()
+            .htmlContent("<html><body><img src=\"logo.png\"></body></html>".getBytes(StandardCharsets.UTF_8))
+            .addAsset(ConversionRequest.AssetInput.of("body { margin: 0; }".getBytes(StandardCharsets.UTF_8),
+                    "style.css"))
+            .addAsset(ConversionRequest.AssetInput.of(new byte[2048], "logo.png"))
+            .build();
+
+    private PdfApiClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PdfApiClientConfig config = PdfApiClientConfig.builder()
+                .baseUrl("http://localhost")
+                .apiKey("benchmark")
+                .assetDeduplication(false)
+                .build();
+        client = PdfApiClientFactory.createWithCustomHttpClient(config, new InMemoryHttpClient());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public String startConversion() {
+        return client.initializeConversion(REQUEST.getProperties())
+                .thenCompose(id -> client.uploadAssetsInParallel(id, REQUEST.getAssets())
+                        .thenCompose(uploaded -> client.performConversion(id, REQUEST.getHtmlSource())))
+                .join();
+    }
+
+    /**
+     * Answers every request at once: initialization with a conversion id, uploads with a location.
+     * Request bodies are skipped, which consumes their sources without allocating a copy buffer.
+     */
+    private static final class InMemoryHttpClient implements HttpClient {
+        @Override
+        public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String jsonBody) {
+            return CompletableFuture.completedFuture(
+                    new StreamingHttpResponse(201, new ByteArrayInputStream(ID), null, Map.of()));
+        }
+
+        @Override
+        public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String fileName,
+                                                    InputStream content, String contentType, String partName) {
+            try (content) {
+                while (content.skip(Long.MAX_VALUE) > 0) {
+                    // discard
+                }
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return CompletableFuture.completedFuture(new StreamingHttpResponse(201, null, null, LOCATION));
+        }
+
+        @Override
+        public CompletableFuture<HttpResponse> get(String url, Map<String, String> headers) {
+            return CompletableFuture.completedFuture(new StreamingHttpResponse(204, null, null, Map.of()));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
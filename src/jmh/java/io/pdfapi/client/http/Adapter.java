@@ -0,0 +1,26 @@
+package io.pdfapi.client.http;
+
+import java.util.function.Supplier;
+
+/**
+ * HTTP client implementations compared by the benchmarks, each created with its defaults as
+ * {@link io.pdfapi.client.PdfApiClientFactory} does.
+ */
+public enum Adapter {
+    OKHTTP(() -> new OkHttpClient(30)),
+    APACHE(ApacheHttpClient::new),
+    APACHE_ASYNC(() -> new ApacheAsyncHttpClient(30)),
+    REST_TEMPLATE(RestTemplateHttpClient::new),
+    WEB_CLIENT(() -> new WebClientHttpClient(30)),
+    JDK(() -> new JdkHttpClient(30));
+
+    private final Supplier<HttpClient> factory;
+
+    Adapter(Supplier<HttpClient> factory) {
+        this.factory = factory;
+    }
+
+    HttpClient create() {
+        return factory.get();
+    }
+}
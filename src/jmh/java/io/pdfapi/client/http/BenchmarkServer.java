@@ -0,0 +1,127 @@
+package io.pdfapi.client.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the API on the loopback interface, so benchmarks measure the client
+ * adapters without a network or an account. Responses are fixed and PDF bodies are generated from a
+ * constant seed, which makes runs reproducible offline.
+ * <ul>
+ *     <li>{@code POST /json}: answers {@code 201} with a small JSON body</li>
+ *     <li>{@code POST /upload}: discards the request body and answers {@code 201}</li>
+ *     <li>{@code GET /pdf/<bytes>}: answers a PDF of the given size</li>
+ * </ul>
+ */
+final class BenchmarkServer implements AutoCloseable {
+    private static final byte[] JSON_RESPONSE = "{\"id\":\"benchmark-conversion\"}".getBytes(StandardCharsets.UTF_8);
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Integer, byte[]> pdfs = new ConcurrentHashMap<>();
+
+    private BenchmarkServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    static BenchmarkServer start() throws IOException {
+        // Without TCP_NODELAY, separately written headers and small bodies wait for delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "benchmark-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        BenchmarkServer benchmarkServer = new BenchmarkServer(server, executor);
+        server.createContext("/json", benchmarkServer::json);
+        server.createContext("/upload", benchmarkServer::upload);
+        server.createContext("/pdf/", benchmarkServer::pdf);
+        server.start();
+        return benchmarkServer;
+    }
+
+    String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Generates the PDF served at {@code /pdf/<size>} ahead of the measurement.
+     */
+    void preparePdf(int size) {
+        pdfs.computeIfAbsent(size, BenchmarkServer::pdf);
+    }
+
+    private void json(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(201, JSON_RESPONSE.length);
+            exchange.getResponseBody().write(JSON_RESPONSE);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody());
+            exchange.getResponseHeaders().set("Location", url("/assets/benchmark"));
+            exchange.sendResponseHeaders(201, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void pdf(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody());
+            int size = Integer.parseInt(exchange.getRequestURI().getPath().substring("/pdf/".length()));
+            byte[] pdf = pdfs.computeIfAbsent(size, BenchmarkServer::pdf);
+            exchange.getResponseHeaders().set("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, pdf.length);
+            OutputStream body = exchange.getResponseBody();
+            for (int offset = 0; offset < pdf.length; offset += CHUNK_SIZE) {
+                body.write(pdf, offset, Math.min(CHUNK_SIZE, pdf.length - offset));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (body.read(buffer) >= 0) {
+            // discard
+        }
+    }
+
+    private static byte[] pdf(int size) {
+        byte[] pdf = new byte[size];
+        new Random(size).nextBytes(pdf);
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, pdf, 0, Math.min(header.length, size));
+        return pdf;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,51 @@
+package io.pdfapi.client.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Small JSON request and response, as sent to initialize a conversion.
+ */
+@State(Scope.Benchmark)
+public class JsonPostBenchmark {
+    private static final Map<String, String> HEADERS = Map.of("Api-Key", "benchmark");
+    private static final String BODY = "{\"format\":\"A4\",\"orientation\":\"portrait\",\"scale\":1.0,"
+            + "\"margins\":{\"top\":10,\"right\":10,\"bottom\":10,\"left\":10}}";
+
+    @Param({"OKHTTP", "APACHE", "APACHE_ASYNC", "REST_TEMPLATE", "WEB_CLIENT", "JDK"})
+    public Adapter adapter;
+
+    private BenchmarkServer server;
+    private HttpClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = BenchmarkServer.start();
+        client = adapter.create();
+        url = server.url("/json");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int postJson() throws IOException {
+        try (HttpResponse response = client.post(url, HEADERS, BODY).join();
+             InputStream body = response.getBodyAsStream()) {
+            return body.readAllBytes().length;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.pdfapi.client.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Multipart upload of an in-memory asset, as sent for every asset of a conversion.
+ */
+@State(Scope.Benchmark)
+public class MultipartUploadBenchmark {
+    private static final Map<String, String> HEADERS = Map.of("Api-Key", "benchmark");
+
+    @Param({"OKHTTP", "APACHE", "APACHE_ASYNC", "REST_TEMPLATE", "WEB_CLIENT", "JDK"})
+    public Adapter adapter;
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    public int assetBytes;
+
+    private BenchmarkServer server;
+    private HttpClient client;
+    private String url;
+    private ContentSource asset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = BenchmarkServer.start();
+        client = adapter.create();
+        url = server.url("/upload");
+        byte[] content = new byte[assetBytes];
+        new Random(assetBytes).nextBytes(content);
+        asset = ContentSource.ofBytes(content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int upload() {
+        try (HttpResponse response = client.post(url, HEADERS, "asset.bin", asset,
+                "application/octet-stream", "asset").join()) {
+            return response.getStatusCode();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.pdfapi.client.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Streaming GET of a result PDF. The body is read into a reused buffer, so the allocation rate
+ * reported by the gc profiler is the adapter's own.
+ */
+@State(Scope.Benchmark)
+public class PdfDownloadBenchmark {
+    private static final Map<String, String> HEADERS = Map.of("Api-Key", "benchmark");
+
+    @Param({"OKHTTP", "APACHE", "APACHE_ASYNC", "REST_TEMPLATE", "WEB_CLIENT", "JDK"})
+    public Adapter adapter;
+
+    @Param({"10240", "1048576", "10485760", "52428800"})
+    public int pdfBytes;
+
+    private BenchmarkServer server;
+    private HttpClient client;
+    private String url;
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final byte[] bytes = new byte[64 * 1024];
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = BenchmarkServer.start();
+        server.preparePdf(pdfBytes);
+        client = adapter.create();
+        url = server.url("/pdf/" + pdfBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long download(Buffer buffer) throws IOException {
+        long total = 0;
+        try (HttpResponse response = client.get(url, HEADERS).join();
+             InputStream body = response.getBodyAsStream()) {
+            int n;
+            while ((n = body.read(buffer.bytes)) >= 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,138 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the files under a resource root that the HTML of a conversion references, following the
+ * references of CSS files in turn. The HTML is taken to be at the root, so that the file name of each
+ * asset, its path relative to the root, is what the document refers to it by.
+ * <p>
+ * References with a scheme, such as {@code https:} or {@code data:}, fragments and references that
+ * don't resolve to a regular file are ignored. Files outside the root, also through symbolic links,
+ * are never attached.
+ */
+final class AssetDiscovery {
+    private static final Logger logger = LoggerFactory.getLogger(AssetDiscovery.class);
+    private static final Pattern SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+    private final Path root;
+    private final Path realRoot;
+    private final Map<String, Path> found = new LinkedHashMap<>();
+    private final Deque<Path> stylesheets = new ArrayDeque<>();
+
+    private AssetDiscovery(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.realRoot = root.toRealPath();
+    }
+
+    /**
+     * @return the referenced files, in the order they were first referenced
+     */
+    static List<ConversionRequest.AssetInput> discover(ContentSource html, Path root) throws IOException {
+        AssetDiscovery discovery = new AssetDiscovery(root);
+        ReferenceScanner.scanHtml(html.openStream(), reference -> discovery.resolve(reference, discovery.root));
+        while (!discovery.stylesheets.isEmpty()) {
+            Path stylesheet = discovery.stylesheets.poll();
+            Path base = stylesheet.getParent();
+            ReferenceScanner.scanCss(Files.newInputStream(stylesheet), reference -> discovery.resolve(reference, base));
+        }
+
+        List<ConversionRequest.AssetInput> assets = new ArrayList<>(discovery.found.size());
+        discovery.found.forEach((fileName, file) -> assets.add(ConversionRequest.AssetInput.of(file, fileName)));
+        return assets;
+    }
+
+    private void resolve(String reference, Path base) {
+        if (reference.isEmpty() || reference.startsWith("#") || reference.startsWith("//")
+                || SCHEME.matcher(reference).find()) {
+            return;
+        }
+        String path = stripSuffix(stripSuffix(reference, '#'), '?');
+        Path file;
+        try {
+            String decoded = percentDecode(path);
+            file = decoded.startsWith("/")
+                    ? root.resolve(decoded.substring(1)).normalize()
+                    : base.resolve(decoded).normalize();
+        } catch (IllegalArgumentException e) {
+            // Also thrown as InvalidPathException for names the file system doesn't allow
+            logger.debug("Ignoring invalid reference {}", reference);
+            return;
+        }
+        if (!file.startsWith(root) || file.equals(root)) {
+            logger.warn("Ignoring reference {} outside of the resource root", reference);
+            return;
+        }
+        String fileName = fileName(file);
+        if (found.containsKey(fileName) || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            if (!file.toRealPath().startsWith(realRoot)) {
+                logger.warn("Ignoring reference {} linking outside of the resource root", reference);
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        found.put(fileName, file);
+        if (fileName.toLowerCase(Locale.ROOT).endsWith(".css")) {
+            stylesheets.add(file);
+        }
+    }
+
+    private String fileName(Path file) {
+        StringBuilder fileName = new StringBuilder();
+        for (Path element : root.relativize(file)) {
+            if (fileName.length() > 0) {
+                fileName.append('/');
+            }
+            fileName.append(element);
+        }
+        return fileName.toString();
+    }
+
+    private static String stripSuffix(String reference, char separator) {
+        int index = reference.indexOf(separator);
+        return index < 0 ? reference : reference.substring(0, index);
+    }
+
+    /**
+     * Decodes {@code %XX} escapes as UTF-8, leaving {@code +} as it is, as in a URL path.
+     */
+    private static String percentDecode(String path) {
+        if (path.indexOf('%') < 0) {
+            return path;
+        }
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '%') {
+                if (i + 2 >= bytes.length) {
+                    throw new IllegalArgumentException("Incomplete escape");
+                }
+                decoded.write(Integer.parseInt(new String(bytes, i + 1, 2, StandardCharsets.US_ASCII), 16));
+                i += 2;
+            } else {
+                decoded.write(bytes[i]);
+            }
+        }
+        return decoded.toString(StandardCharsets.UTF_8);
+    }
+}
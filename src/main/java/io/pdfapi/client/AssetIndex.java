@@ -0,0 +1,41 @@
+package io.pdfapi.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, least-recently-used index of asset content digests to the server-side reference
+ * returned when the asset was first uploaded.
+ */
+final class AssetIndex {
+    private final Map<String, String> references;
+
+    AssetIndex(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Asset index size must be positive");
+        }
+        this.references = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized Optional<String> lookup(String digest) {
+        return Optional.ofNullable(references.get(digest));
+    }
+
+    synchronized void register(String digest, String reference) {
+        references.put(digest, reference);
+    }
+
+    synchronized void evict(String digest) {
+        references.remove(digest);
+    }
+
+    synchronized int size() {
+        return references.size();
+    }
+}
@@ -0,0 +1,335 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import io.pdfapi.client.model.PageFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shrinks the HTML and assets of a conversion before they are uploaded: CSS, and HTML if enabled,
+ * is minified and JPEG and PNG images larger than needed for the page are downscaled. Set it with
+ * {@link ConversionRequest.Builder#assetOptimizer(AssetOptimizer)}; one optimizer is meant to be
+ * shared by all requests, so that its cache of optimized content, keyed by the SHA-256 digest of the
+ * input, lets repeated assets skip the work.
+ * <p>
+ * Minification removes comments and redundant whitespace, leaving tags, attributes, strings and the
+ * content of {@code pre}, {@code textarea}, {@code script} and {@code style} elements as they are.
+ * Images are only downscaled when {@link Builder#imageDpi(int)} is set. The shorter side of an image is then limited
+ * to the longer side of the page at that resolution, so an image has at least the configured
+ * resolution however it is placed on the page. This assumes the document sizes its images, as an
+ * image shown at its natural size would shrink with it.
+ * <p>
+ * Assets are identified by the extension of their file name; other assets, content that doesn't get
+ * smaller and content above {@link Builder#maxInputBytes(long)} are uploaded as they are.
+ */
+public final class AssetOptimizer {
+    private static final Logger logger = LoggerFactory.getLogger(AssetOptimizer.class);
+    /**
+     * Cached for content that optimization doesn't make smaller.
+     */
+    private static final byte[] UNCHANGED = new byte[0];
+
+    private final boolean minifyHtml;
+    private final boolean minifyCss;
+    private final int imageDpi;
+    private final float jpegQuality;
+    private final long maxInputBytes;
+    private final int cacheSize;
+    private final long maxCachedBytes;
+    private final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private AssetOptimizer(Builder builder) {
+        this.minifyHtml = builder.minifyHtml;
+        this.minifyCss = builder.minifyCss;
+        this.imageDpi = builder.imageDpi;
+        this.jpegQuality = builder.jpegQuality;
+        this.maxInputBytes = builder.maxInputBytes;
+        this.cacheSize = builder.cacheSize;
+        this.maxCachedBytes = builder.maxCachedBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private enum Kind {
+        HTML,
+        CSS,
+        IMAGE
+    }
+
+    /**
+     * Optimizes the HTML and all assets of the request in parallel on the executor.
+     *
+     * @return request with the optimized content, completed exceptionally with a
+     * {@link PdfApiClientException} if content could not be read
+     */
+    CompletableFuture<Optimization> optimize(ConversionRequest request, Executor executor) {
+        PageFormat format = request.getProperties().getFormat() != null ? request.getProperties().getFormat() : PageFormat.A4;
+        int maxShortSide = (int) Math.ceil(Math.max(format.getWidthInches(), format.getHeightInches()) * imageDpi);
+        AtomicLong originalBytes = new AtomicLong();
+        AtomicLong optimizedBytes = new AtomicLong();
+
+        CompletableFuture<ContentSource> html = optimizeAsync(request.getHtmlSource(), "index.html", maxShortSide,
+                originalBytes, optimizedBytes, executor);
+        List<CompletableFuture<ContentSource>> assets = new ArrayList<>(request.getAssets().size());
+        for (ConversionRequest.AssetInput asset : request.getAssets()) {
+            assets.add(optimizeAsync(asset.getSource(), asset.getFileName(), maxShortSide,
+                    originalBytes, optimizedBytes, executor));
+        }
+
+        List<CompletableFuture<?>> all = new ArrayList<>(assets);
+        all.add(html);
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<ConversionRequest.AssetInput> optimized = new ArrayList<>(assets.size());
+            for (int i = 0; i < assets.size(); i++) {
+                ConversionRequest.AssetInput asset = request.getAssets().get(i);
+                ContentSource source = assets.get(i).join();
+                optimized.add(source == asset.getSource() ? asset : new ConversionRequest.AssetInput(source, asset.getFileName()));
+            }
+            return new Optimization(request.withContent(html.join(), optimized),
+                    originalBytes.get(), optimizedBytes.get());
+        });
+    }
+
+    private CompletableFuture<ContentSource> optimizeAsync(ContentSource source, String fileName, int maxShortSide,
+                                                           AtomicLong originalBytes, AtomicLong optimizedBytes,
+                                                           Executor executor) {
+        Kind kind = kind(fileName);
+        if (kind == null || source.contentLength() > maxInputBytes) {
+            return CompletableFuture.completedFuture(source);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return optimize(source, kind, maxShortSide, originalBytes, optimizedBytes);
+            } catch (IOException e) {
+                throw new CompletionException(new PdfApiClientException("Failed to read asset " + fileName, e));
+            }
+        }, executor);
+    }
+
+    private ContentSource optimize(ContentSource source, Kind kind, int maxShortSide,
+                                   AtomicLong originalBytes, AtomicLong optimizedBytes) throws IOException {
+        DigestedContent content = DigestedContent.read(source.openStream(), maxInputBytes);
+        if (!content.isDigested()) {
+            if (source.isReplayable()) {
+                content.openStream().close();
+                return source;
+            }
+            return content.toSource();
+        }
+        String key = kind == Kind.IMAGE
+                ? kind + ":" + maxShortSide + ":" + content.getDigest()
+                : kind + ":" + content.getDigest();
+        byte[] optimized = cached(key);
+        if (optimized == null) {
+            optimized = transform(kind, content.toByteArray(), maxShortSide);
+            cache(key, optimized);
+        }
+        originalBytes.addAndGet(content.length());
+        if (optimized == UNCHANGED) {
+            optimizedBytes.addAndGet(content.length());
+            return source.isReplayable() ? source : content.toSource();
+        }
+        optimizedBytes.addAndGet(optimized.length);
+        return ContentSource.ofByteBuffer(ByteBuffer.wrap(optimized));
+    }
+
+    /**
+     * @return the optimized content, or {@link #UNCHANGED} if it didn't get smaller
+     */
+    private byte[] transform(Kind kind, byte[] content, int maxShortSide) throws IOException {
+        if (kind != Kind.IMAGE && isUtf16(content)) {
+            return UNCHANGED;
+        }
+        byte[] optimized;
+        switch (kind) {
+            case HTML:
+                optimized = HtmlMinifier.minify(content);
+                break;
+            case CSS:
+                optimized = CssMinifier.minify(content);
+                break;
+            default:
+                try {
+                    optimized = ImageDownscaler.downscale(content, maxShortSide, jpegQuality);
+                } catch (IOException | RuntimeException e) {
+                    // ImageIO fails on some malformed or unusual images that the server may still render
+                    logger.debug("Uploading image as it is, downscaling failed", e);
+                    return UNCHANGED;
+                }
+        }
+        return optimized == null || optimized.length >= content.length ? UNCHANGED : optimized;
+    }
+
+    /**
+     * The minifiers work on ASCII-compatible encodings only.
+     */
+    private static boolean isUtf16(byte[] content) {
+        return content.length >= 2 && ((content[0] & 0xff) == 0xfe && (content[1] & 0xff) == 0xff
+                || (content[0] & 0xff) == 0xff && (content[1] & 0xff) == 0xfe);
+    }
+
+    private Kind kind(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        switch (extension) {
+            case "html":
+            case "htm":
+                return minifyHtml ? Kind.HTML : null;
+            case "css":
+                return minifyCss ? Kind.CSS : null;
+            case "jpg":
+            case "jpeg":
+            case "png":
+                return imageDpi > 0 ? Kind.IMAGE : null;
+            default:
+                return null;
+        }
+    }
+
+    private synchronized byte[] cached(String key) {
+        return cache.get(key);
+    }
+
+    private synchronized void cache(String key, byte[] optimized) {
+        if (optimized.length > maxCachedBytes) {
+            return;
+        }
+        byte[] previous = cache.put(key, optimized);
+        cachedBytes += optimized.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> eldest = cache.values().iterator();
+        while (cache.size() > cacheSize || cachedBytes > maxCachedBytes) {
+            cachedBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return the settings that affect the optimized content, to tell results of differently optimized
+     * requests apart
+     */
+    String fingerprint() {
+        return "html=" + minifyHtml + ",css=" + minifyCss + ",dpi=" + imageDpi + ",quality=" + jpegQuality;
+    }
+
+    synchronized int cachedEntries() {
+        return cache.size();
+    }
+
+    /**
+     * A request with optimized content and the size of the content before and after optimization.
+     * Content that wasn't examined, such as assets of other types, is not counted.
+     */
+    static final class Optimization {
+        final ConversionRequest request;
+        final long originalBytes;
+        final long optimizedBytes;
+
+        Optimization(ConversionRequest request, long originalBytes, long optimizedBytes) {
+            this.request = request;
+            this.originalBytes = originalBytes;
+            this.optimizedBytes = optimizedBytes;
+        }
+    }
+
+    public static class Builder {
+        private boolean minifyHtml;
+        private boolean minifyCss = true;
+        private int imageDpi;
+        private float jpegQuality = 0.9f;
+        private long maxInputBytes = 32 * 1024 * 1024;
+        private int cacheSize = 256;
+        private long maxCachedBytes = 64 * 1024 * 1024;
+
+        /**
+         * Whether HTML, including the document itself, is minified. Disabled by default: whitespace
+         * kept by {@code white-space: pre}, {@code pre-wrap} or {@code break-spaces} styles would be
+         * collapsed, so only enable it for documents that use none of them.
+         */
+        public Builder minifyHtml(boolean minifyHtml) {
+            this.minifyHtml = minifyHtml;
+            return this;
+        }
+
+        /**
+         * Whether CSS assets are minified. Enabled by default.
+         */
+        public Builder minifyCss(boolean minifyCss) {
+            this.minifyCss = minifyCss;
+            return this;
+        }
+
+        /**
+         * Resolution images keep on the page of the request's format, in dots per inch, for example
+         * 150 or 300 for print. Disabled by default.
+         */
+        public Builder imageDpi(int imageDpi) {
+            this.imageDpi = imageDpi;
+            return this;
+        }
+
+        /**
+         * Quality of downscaled JPEGs, between 0 and 1. Defaults to 0.9.
+         */
+        public Builder jpegQuality(float jpegQuality) {
+            this.jpegQuality = jpegQuality;
+            return this;
+        }
+
+        /**
+         * Larger content is uploaded as it is, as it would have to be held in memory to be optimized.
+         * Defaults to 32 MiB.
+         */
+        public Builder maxInputBytes(long maxInputBytes) {
+            this.maxInputBytes = maxInputBytes;
+            return this;
+        }
+
+        /**
+         * Number of optimized inputs remembered. Defaults to 256.
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Total size of the remembered optimized content. Defaults to 64 MiB.
+         */
+        public Builder maxCachedBytes(long maxCachedBytes) {
+            this.maxCachedBytes = maxCachedBytes;
+            return this;
+        }
+
+        public AssetOptimizer build() {
+            if (imageDpi < 0) {
+                throw new IllegalStateException("Image DPI must not be negative");
+            }
+            if (jpegQuality <= 0 || jpegQuality > 1) {
+                throw new IllegalStateException("JPEG quality must be in (0, 1]");
+            }
+            if (maxInputBytes <= 0 || maxInputBytes > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Maximum input size must be positive and fit into an array");
+            }
+            if (cacheSize < 0 || maxCachedBytes < 0) {
+                throw new IllegalStateException("Cache limits must not be negative");
+            }
+            return new AssetOptimizer(this);
+        }
+    }
+}
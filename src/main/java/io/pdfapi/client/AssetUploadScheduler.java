@@ -0,0 +1,106 @@
+package io.pdfapi.client;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Schedules asset uploads of all conversions sharing a client. Every conversion runs at most
+ * {@code perConversionLimit} uploads at once and all conversions together share {@code globalLimit}
+ * permits. Assets are started largest first, which keeps the longest upload from being the last one
+ * to start. The first failed upload fails the whole set and the uploads still waiting are dropped.
+ */
+final class AssetUploadScheduler {
+    private static final Comparator<ConversionRequest.AssetInput> LARGEST_FIRST = Comparator.comparingLong(
+            (ConversionRequest.AssetInput asset) -> asset.getContentLength() < 0 ? Long.MAX_VALUE : asset.getContentLength())
+            .reversed();
+
+    private final AsyncLimiter globalLimiter;
+    private final int perConversionLimit;
+
+    AssetUploadScheduler(int globalLimit, int perConversionLimit) {
+        if (perConversionLimit <= 0) {
+            throw new IllegalArgumentException("Per conversion upload limit must be positive");
+        }
+        this.globalLimiter = new AsyncLimiter(globalLimit);
+        this.perConversionLimit = perConversionLimit;
+    }
+
+    CompletableFuture<Void> uploadAll(List<ConversionRequest.AssetInput> assets,
+                                      Function<ConversionRequest.AssetInput, CompletableFuture<Void>> upload) {
+        if (assets.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        UploadSet set = new UploadSet(assets.stream().sorted(LARGEST_FIRST).collect(Collectors.toList()), upload);
+        for (int i = 0; i < Math.min(perConversionLimit, assets.size()); i++) {
+            startNext(set);
+        }
+        return set.result;
+    }
+
+    int uploadsInFlight() {
+        return globalLimiter.inUse();
+    }
+
+    private void startNext(UploadSet set) {
+        ConversionRequest.AssetInput asset = set.poll();
+        if (asset == null) {
+            return;
+        }
+        globalLimiter.acquire().thenRun(() -> {
+            if (set.result.isDone()) {
+                globalLimiter.release();
+                return;
+            }
+            CompletableFuture<Void> upload;
+            try {
+                upload = set.upload.apply(asset);
+            } catch (RuntimeException e) {
+                upload = CompletableFuture.failedFuture(e);
+            }
+            upload.whenComplete((ignored, error) -> {
+                globalLimiter.release();
+                if (error != null) {
+                    set.fail(error);
+                } else if (set.remaining.decrementAndGet() == 0) {
+                    set.result.complete(null);
+                } else {
+                    startNext(set);
+                }
+            });
+        });
+    }
+
+    private static final class UploadSet {
+        private final Queue<ConversionRequest.AssetInput> pending;
+        private final Function<ConversionRequest.AssetInput, CompletableFuture<Void>> upload;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        UploadSet(List<ConversionRequest.AssetInput> assets,
+                  Function<ConversionRequest.AssetInput, CompletableFuture<Void>> upload) {
+            this.pending = new ArrayDeque<>(assets);
+            this.upload = upload;
+            this.remaining = new AtomicInteger(assets.size());
+        }
+
+        synchronized ConversionRequest.AssetInput poll() {
+            return result.isDone() ? null : pending.poll();
+        }
+
+        void fail(Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (result.completeExceptionally(cause)) {
+                synchronized (this) {
+                    pending.clear();
+                }
+            }
+        }
+    }
+}
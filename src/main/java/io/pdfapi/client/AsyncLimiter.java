@@ -0,0 +1,55 @@
+package io.pdfapi.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counting semaphore: permits are handed out as futures, so waiting for a permit
+ * never parks a thread. Waiters are served in FIFO order.
+ */
+final class AsyncLimiter {
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final int maxPermits;
+    private int available;
+
+    AsyncLimiter(int maxPermits) {
+        if (maxPermits <= 0) {
+            throw new IllegalArgumentException("Number of permits must be positive");
+        }
+        this.maxPermits = maxPermits;
+        this.available = maxPermits;
+    }
+
+    /**
+     * @return future completed once a permit has been granted, it must be returned with {@link #release()}
+     */
+    CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                available = Math.min(available + 1, maxPermits);
+                return;
+            }
+        }
+        // hand the permit over outside the lock, the waiter's continuation may run synchronously
+        next.complete(null);
+    }
+
+    synchronized int inUse() {
+        return maxPermits - available;
+    }
+}
@@ -0,0 +1,313 @@
+package io.pdfapi.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Converts large batches of requests with a bounded amount of work in flight. Every stage of a
+ * conversion (initialize, asset upload, convert and waiting for the result) has its own window, so
+ * the stages of different documents overlap while none of them can flood the server. Requests are
+ * pulled from the source only when there is room for them, and a failed document is reported to the
+ * sink without affecting the rest of the batch.
+ *
+ * <pre>{@code
+ * BatchConverter converter = BatchConverter.builder(client)
+ *         .maxInitializing(4)
+ *         .maxPolling(200)
+ *         .build();
+ * converter.convertAll(requests, sink).join();
+ * }</pre>
+ */
+public class BatchConverter {
+    private static final Logger logger = LoggerFactory.getLogger(BatchConverter.class);
+
+    private final PdfApiClient client;
+    private final int maxInFlight;
+    private final AsyncLimiter initializing;
+    private final AsyncLimiter uploading;
+    private final AsyncLimiter converting;
+    private final AsyncLimiter polling;
+
+    private BatchConverter(Builder builder) {
+        this.client = builder.client;
+        this.initializing = new AsyncLimiter(builder.maxInitializing);
+        this.uploading = new AsyncLimiter(builder.maxUploading);
+        this.converting = new AsyncLimiter(builder.maxConverting);
+        this.polling = new AsyncLimiter(builder.maxPolling);
+        this.maxInFlight = builder.maxInFlight > 0 ? builder.maxInFlight
+                : builder.maxInitializing + builder.maxUploading + builder.maxConverting + builder.maxPolling;
+    }
+
+    public static Builder builder(PdfApiClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Converts all requests of the stream, see {@link #convertAll(Iterator, BatchResultSink)}.
+     */
+    public CompletableFuture<Summary> convertAll(Stream<ConversionRequest> requests, BatchResultSink sink) {
+        return convertAll(requests.iterator(), sink);
+    }
+
+    /**
+     * Converts all requests of the iterator. The iterator is only advanced while fewer than the
+     * configured number of conversions are in flight.
+     *
+     * @param requests requests to convert
+     * @param sink     receives every result or failure as soon as it is available
+     * @return summary completed when all requests have been delivered to the sink; completed
+     * exceptionally if the iterator itself failed, after the conversions already started have finished
+     */
+    public CompletableFuture<Summary> convertAll(Iterator<ConversionRequest> requests, BatchResultSink sink) {
+        Batch batch = new Batch(Objects.requireNonNull(requests, "Requests must not be null"),
+                Objects.requireNonNull(sink, "Sink must not be null"));
+        batch.fill();
+        return batch.completion;
+    }
+
+    private CompletableFuture<InputStream> convert(ConversionRequest request) {
+        return client.cached(request, this::convertInStages);
+    }
+
+    private CompletableFuture<InputStream> convertInStages(ConversionRequest request) {
+        CompletableFuture<ConversionRequest> optimized = client.optimizeAssets(request);
+        return inStage(initializing, () -> client.initializeConversion(request.getProperties()))
+                .thenCompose(conversionId -> optimized.thenCompose(prepared -> inStage(uploading,
+                        () -> client.uploadAssetsInParallel(conversionId, prepared.getAssets()))
+                        .thenCompose(v -> inStage(converting,
+                                () -> client.performConversion(conversionId, prepared.getHtmlSource())))
+                        .thenCompose(resultLocation -> inStage(polling,
+                                () -> client.waitForResult(conversionId, resultLocation, prepared)))));
+    }
+
+    private static <T> CompletableFuture<T> inStage(AsyncLimiter window, Supplier<CompletableFuture<T>> stage) {
+        return window.acquire().thenCompose(v -> {
+            CompletableFuture<T> result;
+            try {
+                result = stage.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, error) -> window.release());
+        });
+    }
+
+    private final class Batch {
+        private final Iterator<ConversionRequest> requests;
+        private final BatchResultSink sink;
+        private final CompletableFuture<Summary> completion = new CompletableFuture<>();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private long submitted;
+        private int inFlight;
+        private boolean exhausted;
+        private boolean filling;
+        private boolean refill;
+        private RuntimeException sourceFailure;
+
+        Batch(Iterator<ConversionRequest> requests, BatchResultSink sink) {
+            this.requests = requests;
+            this.sink = sink;
+        }
+
+        /**
+         * Pulls requests while there is room. Completions that happen while a fill is running only
+         * flag a refill, so synchronously completing conversions don't recurse.
+         */
+        void fill() {
+            synchronized (this) {
+                if (filling) {
+                    refill = true;
+                    return;
+                }
+                filling = true;
+            }
+            while (true) {
+                ConversionRequest request;
+                long index;
+                synchronized (this) {
+                    request = exhausted || inFlight >= maxInFlight ? null : next();
+                    if (request == null) {
+                        if (refill) {
+                            refill = false;
+                            continue;
+                        }
+                        filling = false;
+                        break;
+                    }
+                    index = submitted++;
+                    inFlight++;
+                }
+                start(index, request);
+            }
+            completeIfDone();
+        }
+
+        private ConversionRequest next() {
+            try {
+                if (requests.hasNext()) {
+                    return Objects.requireNonNull(requests.next(), "Batch request must not be null");
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to read next batch request", e);
+                sourceFailure = e;
+            }
+            exhausted = true;
+            return null;
+        }
+
+        private void start(long index, ConversionRequest request) {
+            CompletableFuture<InputStream> conversion;
+            try {
+                conversion = convert(request);
+            } catch (RuntimeException e) {
+                conversion = CompletableFuture.failedFuture(e);
+            }
+            conversion.whenComplete((pdf, error) -> {
+                deliver(index, request, pdf, error);
+                synchronized (this) {
+                    inFlight--;
+                }
+                fill();
+            });
+        }
+
+        private void deliver(long index, ConversionRequest request, InputStream pdf, Throwable error) {
+            if (error == null) {
+                try (InputStream in = pdf) {
+                    sink.onSuccess(index, request, in);
+                    succeeded.incrementAndGet();
+                    return;
+                } catch (Exception e) {
+                    error = e;
+                }
+            }
+            failed.incrementAndGet();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            logger.debug("Batch request {} failed", index, cause);
+            try {
+                sink.onFailure(index, request, cause);
+            } catch (RuntimeException e) {
+                logger.error("Batch sink failed to handle failure of request {}", index, e);
+            }
+        }
+
+        private void completeIfDone() {
+            Summary summary;
+            synchronized (this) {
+                if (!exhausted || inFlight > 0 || completion.isDone()) {
+                    return;
+                }
+                summary = new Summary(submitted, succeeded.get(), failed.get());
+            }
+            if (sourceFailure != null) {
+                completion.completeExceptionally(sourceFailure);
+            } else {
+                logger.info("Batch finished: {} converted, {} failed", summary.getSucceeded(), summary.getFailed());
+                completion.complete(summary);
+            }
+        }
+    }
+
+    /**
+     * Outcome counts of a finished batch.
+     */
+    public static final class Summary {
+        private final long submitted;
+        private final long succeeded;
+        private final long failed;
+
+        Summary(long submitted, long succeeded, long failed) {
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+
+    public static class Builder {
+        private final PdfApiClient client;
+        private int maxInitializing = 8;
+        private int maxUploading = 8;
+        private int maxConverting = 8;
+        private int maxPolling = 64;
+        private int maxInFlight;
+
+        private Builder(PdfApiClient client) {
+            this.client = Objects.requireNonNull(client, "Client must not be null");
+        }
+
+        /**
+         * Conversions being initialized at the same time, defaults to 8.
+         */
+        public Builder maxInitializing(int maxInitializing) {
+            this.maxInitializing = maxInitializing;
+            return this;
+        }
+
+        /**
+         * Conversions uploading their assets at the same time, defaults to 8. Uploads within a
+         * conversion are further limited by {@link PdfApiClientConfig}.
+         */
+        public Builder maxUploading(int maxUploading) {
+            this.maxUploading = maxUploading;
+            return this;
+        }
+
+        /**
+         * Conversions submitting their HTML at the same time, defaults to 8.
+         */
+        public Builder maxConverting(int maxConverting) {
+            this.maxConverting = maxConverting;
+            return this;
+        }
+
+        /**
+         * Conversions waiting for their result at the same time, defaults to 64.
+         */
+        public Builder maxPolling(int maxPolling) {
+            this.maxPolling = maxPolling;
+            return this;
+        }
+
+        /**
+         * Requests pulled from the source but not yet delivered to the sink, defaults to the sum of
+         * all stage windows.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public BatchConverter build() {
+            if (maxInitializing <= 0 || maxUploading <= 0 || maxConverting <= 0 || maxPolling <= 0) {
+                throw new IllegalStateException("Stage windows must be positive");
+            }
+            if (maxInFlight < 0) {
+                throw new IllegalStateException("Maximum in-flight conversions must not be negative");
+            }
+            return new BatchConverter(this);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.pdfapi.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the outcome of every request of a batch conversion as soon as it is available.
+ * Callbacks may be invoked concurrently from different threads.
+ */
+public interface BatchResultSink {
+    /**
+     * Called with the converted PDF. The stream is closed once this method returns.
+     *
+     * @param index   position of the request in the batch
+     * @param request converted request
+     * @param pdf     PDF content
+     */
+    void onSuccess(long index, ConversionRequest request, InputStream pdf) throws IOException;
+
+    /**
+     * Called when the request could not be converted or {@link #onSuccess} failed. Other requests of
+     * the batch are not affected.
+     *
+     * @param index   position of the request in the batch
+     * @param request failed request
+     * @param error   cause of the failure
+     */
+    void onFailure(long index, ConversionRequest request, Throwable error);
+}
@@ -0,0 +1,124 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.callback.CallbackListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Pairs completion callbacks with the conversions waiting for them. A callback may arrive before
+ * the client starts waiting, in which case it is kept until the conversion asks for it, but no longer
+ * than the retention time: callbacks for conversions nobody waits for, duplicates and forged ids
+ * would otherwise fill the registry. Callbacks for conversions that just finished are ignored.
+ */
+final class CallbackRegistry implements CallbackListener {
+    private static final Logger logger = LoggerFactory.getLogger(CallbackRegistry.class);
+    private static final int MAX_PENDING_NOTIFICATIONS = 65536;
+
+    private final long retentionNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, Notification> notifications = new ConcurrentHashMap<>();
+    /**
+     * Conversions no longer waited for, by the time until which their callbacks are ignored.
+     */
+    private final Map<String, Long> forgotten = new ConcurrentHashMap<>();
+    private volatile long nextPurgeNanos;
+
+    /**
+     * @param retentionMs how long callbacks nobody waits for yet are kept, and callbacks for
+     *                    forgotten conversions ignored
+     */
+    CallbackRegistry(long retentionMs) {
+        this(retentionMs, System::nanoTime);
+    }
+
+    CallbackRegistry(long retentionMs, LongSupplier nanoClock) {
+        this.retentionNanos = TimeUnit.MILLISECONDS.toNanos(retentionMs);
+        this.nanoClock = nanoClock;
+        this.nextPurgeNanos = nanoClock.getAsLong() + retentionNanos;
+    }
+
+    /**
+     * @return future completed when the callback for the conversion arrives
+     */
+    CompletableFuture<Void> expect(String conversionId) {
+        long now = nanoClock.getAsLong();
+        forgotten.remove(conversionId);
+        return notifications.compute(conversionId, (id, notification) ->
+                notification == null || notification.isExpired(now) ? new Notification(Long.MAX_VALUE)
+                        : notification.expected()).future;
+    }
+
+    void forget(String conversionId) {
+        notifications.remove(conversionId);
+        purgeIfDue(nanoClock.getAsLong());
+        if (forgotten.size() < MAX_PENDING_NOTIFICATIONS) {
+            forgotten.put(conversionId, nanoClock.getAsLong() + retentionNanos);
+        }
+    }
+
+    @Override
+    public void onConversionFinished(String conversionId) {
+        long now = nanoClock.getAsLong();
+        Notification notification = notifications.get(conversionId);
+        if (notification == null) {
+            Long ignoredUntil = forgotten.get(conversionId);
+            if (ignoredUntil != null && ignoredUntil - now > 0) {
+                logger.debug("Ignoring late callback for conversion {}", conversionId);
+                return;
+            }
+            purgeIfDue(now);
+            if (notifications.size() >= MAX_PENDING_NOTIFICATIONS) {
+                purge(now);
+                if (notifications.size() >= MAX_PENDING_NOTIFICATIONS) {
+                    logger.warn("Dropping callback for unknown conversion {}", conversionId);
+                    return;
+                }
+            }
+            notification = notifications.computeIfAbsent(conversionId, id -> new Notification(now + retentionNanos));
+        }
+        notification.future.complete(null);
+    }
+
+    private void purgeIfDue(long now) {
+        if (now - nextPurgeNanos >= 0) {
+            purge(now);
+        }
+    }
+
+    private void purge(long now) {
+        nextPurgeNanos = now + retentionNanos;
+        notifications.values().removeIf(notification -> notification.isExpired(now));
+        forgotten.values().removeIf(ignoredUntil -> ignoredUntil - now <= 0);
+    }
+
+    int pending() {
+        return notifications.size();
+    }
+
+    private static final class Notification {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        /**
+         * Until when an unclaimed callback is kept, {@link Long#MAX_VALUE} once a conversion waits for it.
+         */
+        volatile long expiresNanos;
+
+        Notification(long expiresNanos) {
+            this.expiresNanos = expiresNanos;
+        }
+
+        Notification expected() {
+            expiresNanos = Long.MAX_VALUE;
+            return this;
+        }
+
+        boolean isExpired(long now) {
+            return expiresNanos != Long.MAX_VALUE && expiresNanos - now <= 0;
+        }
+    }
+}
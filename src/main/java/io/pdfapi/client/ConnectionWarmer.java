@@ -0,0 +1,140 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.HttpClient;
+import io.pdfapi.client.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens connections to the API before they are needed and keeps them from expiring while the client
+ * is idle. A connection is opened by a lightweight unauthenticated request whose response is
+ * discarded; concurrent requests make the HTTP client open as many connections.
+ * <p>
+ * Also tracks when the pool was last used, so that requests can be classified as hitting a warm or a
+ * cold pool.
+ */
+final class ConnectionWarmer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final HttpClient httpClient;
+    private final String url;
+    private final long keepAliveNanos;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong lastUse = new AtomicLong(NEVER);
+    private ScheduledFuture<?> keepWarm;
+    private CompletableFuture<Void> warmUp;
+
+    /**
+     * @param scheduler the client's scheduler, which runs the keep-warm checks
+     */
+    ConnectionWarmer(HttpClient httpClient, String url, long keepAliveSeconds, ScheduledExecutorService scheduler) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.keepAliveNanos = TimeUnit.SECONDS.toNanos(keepAliveSeconds);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sends the given number of concurrent requests. A warm-up still in progress is returned instead
+     * of starting another one.
+     *
+     * @return completed when all requests have been answered, exceptionally if none succeeded
+     */
+    synchronized CompletableFuture<Void> warmUp(int connections) {
+        if (warmUp != null && !warmUp.isDone()) {
+            return warmUp;
+        }
+        long start = System.nanoTime();
+        AtomicInteger succeeded = new AtomicInteger();
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            requests[i] = httpClient.get(url, Collections.emptyMap())
+                    .thenAccept(response -> {
+                        drain(response);
+                        succeeded.incrementAndGet();
+                        lastUse.set(System.nanoTime());
+                    });
+        }
+        warmUp = CompletableFuture.allOf(requests)
+                .handle((ignored, error) -> {
+                    if (succeeded.get() == 0 && error != null) {
+                        logger.debug("Connection warm-up failed", error);
+                        throw new PdfApiClientException("Connection warm-up failed", RetryExecutor.unwrap(error));
+                    }
+                    logger.debug("Warmed up {} of {} connections in {} ms", succeeded.get(), connections,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return null;
+                });
+        return warmUp;
+    }
+
+    /**
+     * Reuses the given number of connections whenever the pool has been idle for half the keep-alive
+     * period, so they are never closed for being idle. The pool is checked twice as often, which keeps
+     * the longest idle time below three quarters of the keep-alive period.
+     */
+    synchronized void keepWarm(int connections) {
+        if (keepWarm != null) {
+            return;
+        }
+        long maxIdle = keepAliveNanos / 2;
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(500), maxIdle / 2);
+        try {
+            keepWarm = scheduler.scheduleWithFixedDelay(() -> {
+                long previous = lastUse.get();
+                if (previous == NEVER || System.nanoTime() - previous >= maxIdle) {
+                    warmUp(connections);
+                }
+            }, period, period, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Client is closed, not keeping connections warm");
+        }
+    }
+
+    /**
+     * Records a request about to be sent.
+     *
+     * @return {@code true} if the pool was used within the keep-alive period, so the request will
+     * likely find an open connection
+     */
+    boolean markUsed() {
+        long now = System.nanoTime();
+        long previous = lastUse.getAndSet(now);
+        return previous != NEVER && now - previous < keepAliveNanos;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (keepWarm != null) {
+            keepWarm.cancel(false);
+        }
+    }
+
+    /**
+     * Reads the short body before closing the response, since some clients don't return connections
+     * with unread content to the pool.
+     */
+    private static void drain(HttpResponse response) {
+        try (response; InputStream body = response.getBodyAsStream()) {
+            if (body != null) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers used to address content (assets, rendered results) by what it contains.
+ */
+final class ContentDigest {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentDigest() {
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Hashes a replayable source by writing it through a digesting channel, so file-backed content
+     * is read straight from its file channel and never buffered as a whole.
+     */
+    static String digest(ContentSource source) throws IOException {
+        MessageDigest digest = newDigest();
+        source.writeTo(new DigestChannel(digest));
+        return toHex(digest.digest());
+    }
+
+    static String toHex(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static final class DigestChannel implements WritableByteChannel {
+        private final MessageDigest digest;
+
+        DigestChannel(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int remaining = src.remaining();
+            digest.update(src);
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
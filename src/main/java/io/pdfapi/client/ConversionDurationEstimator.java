@@ -0,0 +1,112 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import io.pdfapi.client.model.ConversionProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Online estimate of how long the server takes to convert a document, kept as an exponentially
+ * weighted moving average of duration and deviation per bucket of similar conversions. A bucket is
+ * defined by the power-of-two size class of the uploaded bytes and the page format, scale and
+ * orientation. Buckets without samples fall back to the estimate over all conversions.
+ */
+final class ConversionDurationEstimator {
+    private static final double ALPHA = 0.2;
+    private static final int MAX_BUCKETS = 1024;
+    private static final String UNKNOWN_SIZE = "?";
+
+    private final Map<String, Estimate> buckets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Estimate> eldest) {
+            return size() > MAX_BUCKETS;
+        }
+    };
+    private final Estimate overall = new Estimate();
+    private final AtomicLong predictions = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    static String bucket(ConversionRequest request) {
+        long bytes = request.getHtmlSource().contentLength();
+        for (ConversionRequest.AssetInput asset : request.getAssets()) {
+            long length = asset.getContentLength();
+            bytes = bytes == ContentSource.UNKNOWN_LENGTH || length == ContentSource.UNKNOWN_LENGTH
+                    ? ContentSource.UNKNOWN_LENGTH : bytes + length;
+        }
+        ConversionProperties properties = request.getProperties();
+        String sizeClass = bytes == ContentSource.UNKNOWN_LENGTH ? UNKNOWN_SIZE
+                : String.valueOf(64 - Long.numberOfLeadingZeros(bytes));
+        return sizeClass + '/' + properties.getFormat() + '/' + Math.round(properties.getScale() * 10)
+                + (properties.isLandscape() ? "/L" : "/P");
+    }
+
+    /**
+     * @return predicted duration in milliseconds and its expected deviation, or {@code null} before
+     * any conversion has completed
+     */
+    synchronized Prediction predict(String bucket) {
+        Estimate estimate = bucket == null ? null : buckets.get(bucket);
+        if (estimate == null) {
+            estimate = overall;
+        }
+        if (estimate.samples == 0) {
+            return null;
+        }
+        return new Prediction((long) estimate.mean, (long) estimate.deviation);
+    }
+
+    synchronized void record(String bucket, long durationMs) {
+        overall.add(durationMs);
+        if (bucket != null) {
+            buckets.computeIfAbsent(bucket, b -> new Estimate()).add(durationMs);
+        }
+    }
+
+    /**
+     * Counts a conversion that was scheduled from a prediction.
+     *
+     * @param hit whether the first check after the predicted completion found the result
+     */
+    void recordOutcome(boolean hit) {
+        predictions.incrementAndGet();
+        if (hit) {
+            hits.incrementAndGet();
+        }
+    }
+
+    long getPredictions() {
+        return predictions.get();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    static final class Prediction {
+        final long durationMs;
+        final long deviationMs;
+
+        Prediction(long durationMs, long deviationMs) {
+            this.durationMs = durationMs;
+            this.deviationMs = deviationMs;
+        }
+    }
+
+    private static final class Estimate {
+        private double mean;
+        private double deviation;
+        private long samples;
+
+        void add(long durationMs) {
+            if (samples++ == 0) {
+                mean = durationMs;
+                deviation = durationMs / 2.0;
+                return;
+            }
+            deviation += ALPHA * (Math.abs(durationMs - mean) - deviation);
+            mean += ALPHA * (durationMs - mean);
+        }
+    }
+}
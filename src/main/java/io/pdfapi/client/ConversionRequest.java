@@ -1,19 +1,33 @@
 package io.pdfapi.client;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 
+import io.pdfapi.client.http.ContentSource;
 import io.pdfapi.client.model.ConversionProperties;
 import io.pdfapi.client.model.PageFormat;
+import io.pdfapi.client.template.HtmlTemplate;
 
 public class ConversionRequest {
     private final ConversionProperties properties;
-    private final InputStream htmlContent;
+    private final ContentSource htmlContent;
     private final List<AssetInput> assets;
     private final AssetInput headerFile;
     private final AssetInput footerFile;
+    private final AssetOptimizer assetOptimizer;
 
     private ConversionRequest(Builder builder) {
         this.properties = Objects.requireNonNull(builder.properties, "Properties must not be null");
@@ -21,13 +35,49 @@ public class ConversionRequest {
         this.assets = List.copyOf(builder.assets);
         this.headerFile = builder.headerFile;
         this.footerFile = builder.footerFile;
+        this.assetOptimizer = builder.assetOptimizer;
+    }
+
+    private ConversionRequest(ConversionRequest request, ContentSource htmlContent, List<AssetInput> assets,
+                              AssetOptimizer assetOptimizer) {
+        this.properties = request.properties;
+        this.htmlContent = htmlContent;
+        this.assets = List.copyOf(assets);
+        this.headerFile = request.headerFile == null ? null : assets.get(request.assets.indexOf(request.headerFile));
+        this.footerFile = request.footerFile == null ? null : assets.get(request.assets.indexOf(request.footerFile));
+        this.assetOptimizer = assetOptimizer;
+    }
+
+    /**
+     * @param assets replacements of the assets, in the same order
+     * @return request with the same properties and replaced content, without an optimizer as its
+     * content has already been optimized
+     */
+    ConversionRequest withContent(ContentSource htmlContent, List<AssetInput> assets) {
+        return new ConversionRequest(this, htmlContent, assets, null);
+    }
+
+    /**
+     * @param assets replacements of the assets, in the same order
+     * @return request with the same properties and optimizer and the content read from other sources
+     */
+    ConversionRequest withSources(ContentSource htmlContent, List<AssetInput> assets) {
+        return new ConversionRequest(this, htmlContent, assets, assetOptimizer);
     }
 
     public ConversionProperties getProperties() {
         return properties;
     }
 
+    /**
+     * Stream over the HTML content, opened from {@link #getHtmlSource()} only when it is first read.
+     * Reading it consumes content given as a stream or publisher, which can then no longer be uploaded.
+     */
     public InputStream getHtmlContent() {
+        return new DeferredStream(htmlContent);
+    }
+
+    public ContentSource getHtmlSource() {
         return htmlContent;
     }
 
@@ -43,16 +93,22 @@ public class ConversionRequest {
         return footerFile;
     }
 
+    public AssetOptimizer getAssetOptimizer() {
+        return assetOptimizer;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
     public static class Builder {
         private ConversionProperties properties;
-        private InputStream htmlContent;
+        private ContentSource htmlContent;
         private final List<AssetInput> assets = new ArrayList<>();
         private AssetInput headerFile;
         private AssetInput footerFile;
+        private AssetOptimizer assetOptimizer;
+        private Path resourceRoot;
 
         public Builder properties(ConversionProperties properties) {
             this.properties = Objects.requireNonNull(properties, "Properties must not be null");
@@ -60,6 +116,42 @@ public class ConversionRequest {
         }
 
         public Builder htmlContent(InputStream htmlContent) {
+            Objects.requireNonNull(htmlContent, "HTML content must not be null");
+            return htmlContent(ContentSource.ofStream(htmlContent));
+        }
+
+        public Builder htmlContent(Path htmlFile) {
+            Objects.requireNonNull(htmlFile, "HTML content must not be null");
+            return htmlContent(ContentSource.ofPath(htmlFile));
+        }
+
+        public Builder htmlContent(byte[] htmlContent) {
+            Objects.requireNonNull(htmlContent, "HTML content must not be null");
+            return htmlContent(ContentSource.ofBytes(htmlContent));
+        }
+
+        /**
+         * HTML emitted by a publisher, subscribed when the conversion uploads it.
+         *
+         * @param contentLength total length of the emitted buffers or {@link ContentSource#UNKNOWN_LENGTH}
+         */
+        public Builder htmlContent(Flow.Publisher<? extends ByteBuffer> htmlContent, long contentLength) {
+            Objects.requireNonNull(htmlContent, "HTML content must not be null");
+            return htmlContent(ContentSource.ofPublisher(htmlContent, contentLength));
+        }
+
+        /**
+         * HTML rendered from a compiled template while it is uploaded.
+         *
+         * @param model values referenced by the template, which must not change until the conversion
+         *              has completed
+         */
+        public Builder htmlContent(HtmlTemplate template, Map<String, ?> model) {
+            Objects.requireNonNull(template, "HTML template must not be null");
+            return htmlContent(template.render(model));
+        }
+
+        public Builder htmlContent(ContentSource htmlContent) {
             this.htmlContent = Objects.requireNonNull(htmlContent, "HTML content must not be null");
             return this;
         }
@@ -91,7 +183,32 @@ public class ConversionRequest {
             return this;
         }
 
+        /**
+         * Optimizes the HTML and assets before they are uploaded. Not set by default.
+         */
+        public Builder assetOptimizer(AssetOptimizer assetOptimizer) {
+            this.assetOptimizer = Objects.requireNonNull(assetOptimizer, "Asset optimizer must not be null");
+            return this;
+        }
+
+        /**
+         * Attaches the files under the directory that the HTML, and CSS it references, refer to in
+         * {@code src}, {@code href} and {@code url()} references, in addition to the assets added
+         * explicitly. The HTML is taken to be at the root of the directory, and each file is attached
+         * under its path relative to it. Files are only opened when they are uploaded; references
+         * that lead outside the directory are ignored. The HTML must be replayable, as it is read
+         * once when the request is built.
+         */
+        public Builder resourceRoot(Path resourceRoot) {
+            this.resourceRoot = Objects.requireNonNull(resourceRoot, "Resource root must not be null");
+            return this;
+        }
+
         public ConversionRequest build() {
+            if (resourceRoot != null) {
+                discoverAssets();
+            }
+
             if (properties == null) {
                 properties = ConversionProperties.builder()
                     .format(PageFormat.A4)  // Set a default format since it's required
@@ -114,21 +231,118 @@ public class ConversionRequest {
 
             return new ConversionRequest(this);
         }
+
+        private void discoverAssets() {
+            if (!Files.isDirectory(resourceRoot)) {
+                throw new IllegalStateException("Resource root " + resourceRoot + " is not a directory");
+            }
+            if (htmlContent == null || !htmlContent.isReplayable()) {
+                throw new IllegalStateException("HTML content must be replayable to discover its assets");
+            }
+            Set<String> fileNames = new HashSet<>();
+            for (AssetInput asset : assets) {
+                fileNames.add(asset.getFileName());
+            }
+            try {
+                for (AssetInput asset : AssetDiscovery.discover(htmlContent, resourceRoot)) {
+                    if (fileNames.add(asset.getFileName())) {
+                        assets.add(asset);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Opens its source on the first read, so that handing out a stream neither consumes single-use
+     * content nor opens a file that may never be closed.
+     */
+    private static final class DeferredStream extends InputStream {
+        private final ContentSource source;
+        private InputStream stream;
+        private boolean closed;
+
+        DeferredStream(ContentSource source) {
+            this.source = source;
+        }
+
+        private InputStream stream() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (stream == null) {
+                try {
+                    stream = source.openStream();
+                } catch (IllegalStateException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            return stream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return stream().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return stream == null || closed ? 0 : stream.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (stream != null) {
+                stream.close();
+            }
+        }
     }
 
     public static class AssetInput {
-        private final InputStream content;
+        private final ContentSource content;
         private final String fileName;
 
         public AssetInput(InputStream content, String fileName) {
-            this.content = content;
-            this.fileName = fileName;
+            this(ContentSource.ofStream(content), fileName);
+        }
+
+        public AssetInput(ContentSource content, String fileName) {
+            this.content = Objects.requireNonNull(content, "Asset content must not be null");
+            this.fileName = Objects.requireNonNull(fileName, "File name must not be null");
         }
 
+        /**
+         * Stream over the asset content, opened from {@link #getSource()} only when it is first read.
+         * Reading it consumes content given as a stream, which can then no longer be uploaded.
+         */
         public InputStream getContent() {
+            return new DeferredStream(content);
+        }
+
+        public ContentSource getSource() {
             return content;
         }
 
+        /**
+         * @return content length in bytes or {@link ContentSource#UNKNOWN_LENGTH}
+         */
+        public long getContentLength() {
+            return content.contentLength();
+        }
+
         public String getFileName() {
             return fileName;
         }
@@ -136,5 +350,37 @@ public class ConversionRequest {
         public static AssetInput of(InputStream content, String fileName) {
             return new AssetInput(content, fileName);
         }
+
+        public static AssetInput of(ContentSource content, String fileName) {
+            return new AssetInput(content, fileName);
+        }
+
+        public static AssetInput of(Path file) {
+            return of(file, file.getFileName().toString());
+        }
+
+        public static AssetInput of(Path file, String fileName) {
+            return new AssetInput(ContentSource.ofPath(file), fileName);
+        }
+
+        public static AssetInput of(FileChannel channel, String fileName) {
+            return new AssetInput(ContentSource.ofChannel(channel), fileName);
+        }
+
+        public static AssetInput of(byte[] content, String fileName) {
+            return new AssetInput(ContentSource.ofBytes(content), fileName);
+        }
+
+        public static AssetInput of(ByteBuffer content, String fileName) {
+            return new AssetInput(ContentSource.ofByteBuffer(content), fileName);
+        }
+
+        public static AssetInput of(Supplier<? extends InputStream> content, long contentLength, String fileName) {
+            return new AssetInput(ContentSource.ofSupplier(content, contentLength), fileName);
+        }
+
+        public static AssetInput of(Flow.Publisher<? extends ByteBuffer> content, long contentLength, String fileName) {
+            return new AssetInput(ContentSource.ofPublisher(content, contentLength), fileName);
+        }
     }
 }
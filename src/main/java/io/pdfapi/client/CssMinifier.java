@@ -0,0 +1,101 @@
+package io.pdfapi.client;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Removes comments from CSS, collapses whitespace and drops it around {@code { } ; ,} and before
+ * {@code }}, together with the last semicolon of a block. Strings are copied as they are. Whitespace
+ * around other characters is kept, as it is significant in selectors ({@code a :hover}) and
+ * {@code calc()} expressions.
+ * <p>
+ * Works on the encoded bytes, which is safe for UTF-8 and all other ASCII-compatible encodings.
+ */
+final class CssMinifier {
+    private CssMinifier() {
+    }
+
+    static byte[] minify(byte[] css) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(css.length);
+        // Whitespace or a comment was skipped since the last written byte
+        boolean separated = false;
+        boolean pendingSemicolon = false;
+        byte last = 0;
+        int i = 0;
+        while (i < css.length) {
+            byte b = css[i];
+            if (b == '/' && i + 1 < css.length && css[i + 1] == '*') {
+                int end = HtmlMinifier.indexOf(css, i + 2, "*/");
+                i = end < 0 ? css.length : end + 2;
+                if (!separated && last != 0 && !isPunctuation(last) && i < css.length
+                        && !HtmlMinifier.isWhitespace(css[i]) && !isPunctuation(css[i])) {
+                    // Keeps the tokens on both sides apart without turning them into a combinator
+                    out.write('/');
+                    out.write('*');
+                    out.write('*');
+                    out.write('/');
+                }
+                continue;
+            }
+            if (HtmlMinifier.isWhitespace(b)) {
+                separated = true;
+                i++;
+                continue;
+            }
+            if (b == ';') {
+                if (pendingSemicolon) {
+                    out.write(';');
+                }
+                pendingSemicolon = true;
+                separated = false;
+                last = b;
+                i++;
+                continue;
+            }
+            if (pendingSemicolon && b != '}') {
+                out.write(';');
+            }
+            pendingSemicolon = false;
+            if (separated && last != 0 && !isPunctuation(last) && !isPunctuation(b)) {
+                out.write(' ');
+            }
+            separated = false;
+            if (b == '"' || b == '\'') {
+                int end = stringEnd(css, i);
+                out.write(css, i, end - i);
+                i = end;
+            } else if (b == '\\') {
+                // Escapes can make the next character, even whitespace, part of an identifier
+                int end = Math.min(i + 2, css.length);
+                out.write(css, i, end - i);
+                i = end;
+            } else {
+                out.write(b);
+                i++;
+            }
+            last = b;
+        }
+        if (pendingSemicolon) {
+            out.write(';');
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isPunctuation(byte b) {
+        return b == '{' || b == '}' || b == ';' || b == ',';
+    }
+
+    /**
+     * @return index after the quote closing the string starting at {@code start}
+     */
+    private static int stringEnd(byte[] css, int start) {
+        byte quote = css[start];
+        for (int i = start + 1; i < css.length; i++) {
+            if (css[i] == '\\') {
+                i++;
+            } else if (css[i] == quote || css[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return css.length;
+    }
+}
@@ -0,0 +1,92 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Content read from a single-use stream while being hashed, so it can be uploaded once its digest
+ * is known. Streams longer than the configured limit are not hashed; the already read prefix is
+ * stitched back in front of the remainder.
+ */
+final class DigestedContent {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final byte[] bytes;
+    private final int length;
+    private final String digest;
+    private final InputStream remainder;
+
+    private DigestedContent(byte[] bytes, int length, String digest, InputStream remainder) {
+        this.bytes = bytes;
+        this.length = length;
+        this.digest = digest;
+        this.remainder = remainder;
+    }
+
+    static DigestedContent read(InputStream content, long maxBytes) throws IOException {
+        MessageDigest messageDigest = ContentDigest.newDigest();
+        int limit = (int) Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        byte[] buffer = new byte[Math.min(limit + 1, CHUNK_SIZE)];
+        int length = 0;
+        int read;
+        while ((read = content.read(buffer, length, Math.min(buffer.length - length, limit + 1 - length))) != -1) {
+            messageDigest.update(buffer, length, read);
+            length += read;
+            if (length > limit) {
+                return new DigestedContent(buffer, length, null, content);
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, limit + 1));
+            }
+        }
+        content.close();
+        return new DigestedContent(buffer, length, ContentDigest.toHex(messageDigest.digest()), null);
+    }
+
+    /**
+     * @return hex encoded SHA-256 of the content, or {@code null} when the content exceeded the limit
+     */
+    String getDigest() {
+        return digest;
+    }
+
+    boolean isDigested() {
+        return digest != null;
+    }
+
+    /**
+     * @return number of bytes read, all of the content if it was digested
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return the read content, without copying it if the buffer is filled exactly
+     */
+    byte[] toByteArray() {
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * @return replayable source over the buffered content, or a single-use one if it exceeded the limit
+     */
+    ContentSource toSource() {
+        if (remainder == null) {
+            return ContentSource.ofByteBuffer(ByteBuffer.wrap(bytes, 0, length));
+        }
+        return ContentSource.ofStream(openStream());
+    }
+
+    InputStream openStream() {
+        InputStream prefix = new ByteArrayInputStream(bytes, 0, length);
+        return remainder == null ? prefix : new SequenceInputStream(prefix, remainder);
+    }
+}
@@ -0,0 +1,55 @@
+package io.pdfapi.client;
+
+/**
+ * Snapshot of the hedged status checks sent by a client.
+ */
+public final class HedgingStatistics {
+    private final long hedges;
+    private final long hedgeWins;
+    private final long budgetRejections;
+    private final long thresholdMillis;
+
+    HedgingStatistics(long hedges, long hedgeWins, long budgetRejections, long thresholdMillis) {
+        this.hedges = hedges;
+        this.hedgeWins = hedgeWins;
+        this.budgetRejections = budgetRejections;
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * Second requests sent because the first one was slow.
+     */
+    public long getHedges() {
+        return hedges;
+    }
+
+    /**
+     * Hedged requests that answered before the original.
+     */
+    public long getHedgeWins() {
+        return hedgeWins;
+    }
+
+    /**
+     * Hedges not sent because the hedge budget was used up.
+     */
+    public long getBudgetRejections() {
+        return budgetRejections;
+    }
+
+    /**
+     * Current delay after which a request is hedged, or -1 while too few latencies have been observed
+     * or hedging is disabled.
+     */
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingStatistics{hedges=" + hedges
+                + ", hedgeWins=" + hedgeWins
+                + ", budgetRejections=" + budgetRejections
+                + ", thresholdMillis=" + thresholdMillis + '}';
+    }
+}
@@ -0,0 +1,164 @@
+package io.pdfapi.client;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Removes comments from HTML and collapses whitespace in its text, without changing how it renders
+ * with the default {@code white-space} handling. Tags, attribute values and the content of
+ * {@code pre}, {@code textarea}, {@code script} and {@code style} elements are copied as they are,
+ * and so are conditional comments. Each whitespace run keeps one character, a line break if it had
+ * one, so text of {@code white-space: pre-line} elements renders the same as well.
+ * <p>
+ * Works on the encoded bytes, which is safe for UTF-8 and all other ASCII-compatible encodings.
+ */
+final class HtmlMinifier {
+    private static final String[] RAW_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+    private HtmlMinifier() {
+    }
+
+    static byte[] minify(byte[] html) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(html.length);
+        // Collapsed whitespace not written yet, so that runs on both sides of a comment become one
+        byte whitespace = 0;
+        int i = 0;
+        while (i < html.length) {
+            byte b = html[i];
+            if (b == '<' && isTagStart(html, i + 1) && startsWith(html, i, "<!--") && !startsWith(html, i, "<!--[")) {
+                int end = indexOf(html, i + 4, "-->");
+                i = end < 0 ? html.length : end + 3;
+                continue;
+            }
+            if (isWhitespace(b)) {
+                while (i < html.length && isWhitespace(html[i])) {
+                    if (html[i] == '\n' || whitespace == 0) {
+                        whitespace = html[i] == '\n' ? (byte) '\n' : (byte) ' ';
+                    }
+                    i++;
+                }
+                continue;
+            }
+            if (whitespace != 0) {
+                out.write(whitespace);
+                whitespace = 0;
+            }
+            if (b == '<' && isTagStart(html, i + 1)) {
+                int tagEnd = tagEnd(html, i);
+                out.write(html, i, tagEnd - i);
+                String raw = rawElement(html, i);
+                i = tagEnd;
+                if (raw != null) {
+                    int close = indexOfIgnoreCase(html, i, "</" + raw);
+                    int end = close < 0 ? html.length : close;
+                    out.write(html, i, end - i);
+                    i = end;
+                }
+            } else {
+                out.write(b);
+                i++;
+            }
+        }
+        if (whitespace != 0) {
+            out.write(whitespace);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return index after the {@code >} closing the tag starting at {@code start}, skipping quoted
+     * attribute values
+     */
+    private static int tagEnd(byte[] html, int start) {
+        byte quote = 0;
+        for (int i = start + 1; i < html.length; i++) {
+            byte b = html[i];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i + 1;
+            }
+        }
+        return html.length;
+    }
+
+    /**
+     * @return name of the element whose content must not be changed if the tag at {@code start}
+     * opens one, otherwise {@code null}
+     */
+    private static String rawElement(byte[] html, int start) {
+        for (String name : RAW_ELEMENTS) {
+            int after = start + 1 + name.length();
+            if (after < html.length && regionMatchesIgnoreCase(html, start + 1, name)
+                    && (isWhitespace(html[after]) || html[after] == '>' || html[after] == '/')) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A {@code <} only opens a tag or comment if followed by a letter, {@code /} or {@code !}; otherwise
+     * it is text.
+     */
+    private static boolean isTagStart(byte[] html, int next) {
+        if (next >= html.length) {
+            return false;
+        }
+        byte b = html[next];
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b == '/' || b == '!';
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+    }
+
+    static boolean startsWith(byte[] bytes, int offset, String prefix) {
+        if (offset + prefix.length() > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int indexOf(byte[] bytes, int from, String ascii) {
+        for (int i = from; i + ascii.length() <= bytes.length; i++) {
+            if (startsWith(bytes, i, ascii)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(byte[] bytes, int from, String ascii) {
+        for (int i = from; i + ascii.length() <= bytes.length; i++) {
+            if (regionMatchesIgnoreCase(bytes, i, ascii)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatchesIgnoreCase(byte[] bytes, int offset, String lowerCase) {
+        if (offset + lowerCase.length() > bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            byte b = bytes[offset + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
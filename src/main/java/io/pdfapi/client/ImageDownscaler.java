@@ -0,0 +1,252 @@
+package io.pdfapi.client;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Downscales JPEG and PNG images with ImageIO, keeping their format so references to them stay valid.
+ * <p>
+ * Images are only changed where the result renders the same apart from resolution: images with an
+ * EXIF orientation, a colour profile, gamma or chromaticity information or animation are left alone,
+ * as ImageIO would drop these. JPEGs are re-encoded at the given quality and PNGs losslessly.
+ */
+final class ImageDownscaler {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    enum Format {
+        JPEG("jpeg"),
+        PNG("png");
+
+        final String name;
+
+        Format(String name) {
+            this.name = name;
+        }
+    }
+
+    private ImageDownscaler() {
+    }
+
+    /**
+     * @return format of the image, or {@code null} if it is neither a JPEG nor a PNG
+     */
+    static Format detect(byte[] image) {
+        if (image.length > 3 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8 && (image[2] & 0xff) == 0xff) {
+            return Format.JPEG;
+        }
+        if (image.length > PNG_SIGNATURE.length) {
+            for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+                if (image[i] != PNG_SIGNATURE[i]) {
+                    return null;
+                }
+            }
+            return Format.PNG;
+        }
+        return null;
+    }
+
+    /**
+     * Scales the image down so that its shorter side has at most {@code maxShortSide} pixels.
+     *
+     * @return the downscaled image, or {@code null} if it is small enough, can't be changed safely or
+     * would not get smaller
+     */
+    static byte[] downscale(byte[] image, int maxShortSide, float jpegQuality) throws IOException {
+        Format format = detect(image);
+        if (format == null || !(format == Format.JPEG ? isPlainJpeg(image) : isPlainPng(image))) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(format.name);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        BufferedImage source;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (Math.min(width, height) <= maxShortSide) {
+                return null;
+            }
+            source = reader.read(0);
+        } catch (IOException | RuntimeException e) {
+            // Variants ImageIO can't decode, such as CMYK JPEGs, are uploaded as they are
+            return null;
+        } finally {
+            reader.dispose();
+        }
+
+        double factor = (double) maxShortSide / Math.min(source.getWidth(), source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        byte[] scaled = write(resize(source, width, height, format), format, jpegQuality);
+        return scaled != null && scaled.length < image.length ? scaled : null;
+    }
+
+    /**
+     * Halves the image while it is more than twice the target size, so every step samples all
+     * source pixels, then scales it to the target with bicubic interpolation.
+     */
+    private static BufferedImage resize(BufferedImage source, int width, int height, Format format) {
+        int type;
+        if (format == Format.JPEG) {
+            type = source.getColorModel().getNumColorComponents() == 1
+                    ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        } else {
+            type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        }
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2 >= width ? currentWidth / 2 : width);
+            currentHeight = Math.max(height, currentHeight / 2 >= height ? currentHeight / 2 : height);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static byte[] write(BufferedImage image, Format format, float jpegQuality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.name);
+        if (!writers.hasNext()) {
+            return null;
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == Format.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return {@code false} if the JPEG has an EXIF orientation other than upright, an ICC profile or
+     * an Adobe segment, which marks CMYK and YCCK images
+     */
+    private static boolean isPlainJpeg(byte[] jpeg) {
+        int i = 2;
+        while (i + 4 <= jpeg.length) {
+            if ((jpeg[i] & 0xff) != 0xff) {
+                return false;
+            }
+            int marker = jpeg[i + 1] & 0xff;
+            if (marker == 0xff) {
+                i++;
+                continue;
+            }
+            if (marker == 0xda || marker == 0xd9) {
+                return true;
+            }
+            if (marker >= 0xd0 && marker <= 0xd7 || marker == 0x01) {
+                i += 2;
+                continue;
+            }
+            int length = (jpeg[i + 2] & 0xff) << 8 | jpeg[i + 3] & 0xff;
+            int data = i + 4;
+            int end = i + 2 + length;
+            if (length < 2 || end > jpeg.length) {
+                return false;
+            }
+            if (marker == 0xe1 && startsWith(jpeg, data, "Exif\0\0") && exifOrientation(jpeg, data + 6, end) != 1
+                    || marker == 0xe2 && startsWith(jpeg, data, "ICC_PROFILE\0")
+                    || marker == 0xee && startsWith(jpeg, data, "Adobe")) {
+                return false;
+            }
+            i = end;
+        }
+        return false;
+    }
+
+    /**
+     * @return orientation tag of the first IFD of the TIFF structure in {@code [start, end)}, 1 if it
+     * has none and 0 if it is malformed
+     */
+    private static int exifOrientation(byte[] b, int start, int end) {
+        if (end - start < 8) {
+            return 0;
+        }
+        boolean littleEndian = b[start] == 'I';
+        int ifd = start + read(b, start + 4, 4, littleEndian);
+        if (ifd < start || ifd + 2 > end) {
+            return 0;
+        }
+        int entries = read(b, ifd, 2, littleEndian);
+        for (int e = 0; e < entries; e++) {
+            int entry = ifd + 2 + e * 12;
+            if (entry + 12 > end) {
+                return 0;
+            }
+            if (read(b, entry, 2, littleEndian) == 0x0112) {
+                return read(b, entry + 8, 2, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int read(byte[] b, int offset, int length, boolean littleEndian) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int shift = littleEndian ? 8 * i : 8 * (length - 1 - i);
+            value |= (b[offset + i] & 0xff) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * @return {@code false} if the PNG has a colour profile, gamma or chromaticity chunk, which
+     * ImageIO doesn't carry over, or is animated
+     */
+    private static boolean isPlainPng(byte[] png) {
+        int i = PNG_SIGNATURE.length;
+        while (i + 8 <= png.length) {
+            int length = read(png, i, 4, false);
+            if (length < 0 || length > png.length - i - 12) {
+                return false;
+            }
+            String type = new String(png, i + 4, 4, StandardCharsets.US_ASCII);
+            if (type.equals("iCCP") || type.equals("gAMA") || type.equals("cHRM") || type.equals("acTL")) {
+                return false;
+            }
+            if (type.equals("IDAT")) {
+                return true;
+            }
+            i += 12 + length;
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, String ascii) {
+        return HtmlMinifier.startsWith(bytes, offset, ascii);
+    }
+}
@@ -1,45 +1,146 @@
 package io.pdfapi.client;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.pdfapi.client.callback.CallbackReceiver;
+import io.pdfapi.client.http.ContentSource;
 import io.pdfapi.client.http.HttpClient;
 import io.pdfapi.client.http.HttpResponse;
+import io.pdfapi.client.metrics.ConversionMetrics;
 import io.pdfapi.client.model.ConversionProperties;
+import io.pdfapi.client.template.TemplateContent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Collections;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class PdfApiClient implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(PdfApiClient.class);
-    private static final String HEADER_API_KEY = "Api-Key";
-    private static final long INITIAL_POLLING_DELAY_MS = 500;
-    private static final long MAX_POLLING_DELAY_MS = 5000;
-    private static final float BACKOFF_MULTIPLIER = 1.5f;
-
-    private static final String PATH_CONVERSIONS = "/api/conversions";
-    private static final String PATH_ASSETS = "/assets";
-    private static final String PATH_CONVERT = "/convert";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    /**
+     * Consecutive rejected asset references after which the client uploads every asset again.
+     */
+    static final int MAX_REJECTED_ASSET_REFERENCES = 3;
 
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final PropertiesJsonCache propertiesJson;
+    private final RequestTemplates templates;
+    private final AssetIndex assetIndex;
+    private final long maxDeduplicatedAssetBytes;
+    private final AssetUploadScheduler uploadScheduler;
+    private final PollingEngine pollingEngine;
+    private final RetryExecutor retries;
+    private final RequestHedger hedger;
+    private final CallbackReceiver callbackReceiver;
+    private final CallbackRegistry callbacks;
+    private final String callbackUrl;
+    private final long callbackTimeoutMs;
+    private final ConversionMetrics metrics;
+    private final Executor resultExecutor;
+    private final ExecutorService ownedResultExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final ConnectionWarmer warmer;
+    private final int warmUpConnections;
+    private final ResultCache resultCache;
     private final String baseUrl;
     private final String apiKey;
+    private final AtomicInteger rejectedAssetReferences = new AtomicInteger();
+    private volatile boolean assetReferencesSupported = true;
 
     protected PdfApiClient(PdfApiClientConfig config, HttpClient httpClient) {
-        this.baseUrl = config.getBaseUrl();
-        this.apiKey = config.getApiKey();
         this.httpClient = httpClient;
         this.objectMapper = new ObjectMapper();
+        this.propertiesJson = new PropertiesJsonCache(objectMapper);
+        this.metrics = config.getMetrics();
+        if (config.getBlockingIoExecutor() != null) {
+            this.ownedResultExecutor = null;
+            this.resultExecutor = config.getBlockingIoExecutor();
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            this.ownedResultExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "pdfapi-result-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.resultExecutor = ownedResultExecutor;
+        }
+        this.assetIndex = config.isAssetDeduplication() ? new AssetIndex(config.getAssetIndexSize()) : null;
+        this.callbackReceiver = config.getCallbackReceiver();
+        this.callbackTimeoutMs = TimeUnit.SECONDS.toMillis(config.getCallbackTimeoutSeconds());
+        if (callbackReceiver != null) {
+            this.callbacks = new CallbackRegistry(callbackTimeoutMs);
+            try {
+                this.callbackUrl = callbackReceiver.start(callbacks);
+            } catch (IOException e) {
+                if (ownedResultExecutor != null) {
+                    ownedResultExecutor.shutdown();
+                }
+                throw new PdfApiClientException("Failed to start callback receiver", e);
+            }
+            logger.debug("Conversion callbacks registered at {}", callbackUrl);
+        } else {
+            this.callbacks = null;
+            this.callbackUrl = null;
+        }
+        this.templates = new RequestTemplates(config, callbackUrl);
+        this.maxDeduplicatedAssetBytes = config.getMaxDeduplicatedAssetBytes();
+        this.uploadScheduler = new AssetUploadScheduler(config.getMaxConcurrentUploads(),
+                config.getMaxConcurrentUploadsPerConversion());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pdfapi-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retries = new RetryExecutor(config.getMaxRetries(), config.getRetryBaseDelayMillis(),
+                config.getRetryMaxDelayMillis(), config.getMaxRetryAfterMillis(), config.getRetryBudgetRatio(),
+                scheduler);
+        this.hedger = config.getHedgingPercentile() > 0
+                ? new RequestHedger(config.getHedgingPercentile(), config.getHedgeBudgetRatio(), scheduler) : null;
+        this.pollingEngine = new PollingEngine(this::getConversionResult,
+                templates.batchStatusUrl() == null ? null : this::getBatchStatus,
+                config.getMaxConcurrentPolls(), config.getMaxRetryAfterMillis());
+        this.warmer = new ConnectionWarmer(httpClient, templates.conversionsUrl(),
+                config.getConnectionSettings().getKeepAliveSeconds(), scheduler);
+        this.warmUpConnections = config.getWarmUpConnections();
+        this.resultCache = config.getResultCache();
+        this.baseUrl = config.getBaseUrl();
+        this.apiKey = config.getApiKey();
+        if (warmUpConnections > 0) {
+            warmUp();
+        }
+        if (config.getKeepWarmConnections() > 0) {
+            warmer.keepWarm(config.getKeepWarmConnections());
+        }
     }
 
     /**
@@ -50,21 +151,101 @@ public class PdfApiClient implements AutoCloseable {
      */
     public CompletableFuture<InputStream> convert(ConversionRequest request) {
         logger.info("Starting PDF conversion");
+        return cached(request, this::convertRemotely);
+    }
+
+    private CompletableFuture<InputStream> convertRemotely(ConversionRequest request) {
+        CompletableFuture<ConversionRequest> optimized = optimizeAssets(request);
         return initializeConversion(request.getProperties())
                 .thenCompose(conversionId -> {
                     logger.debug("Conversion initialized with ID: {}", conversionId);
-                    return uploadAssetsInParallel(conversionId, request.getAssets())
+                    return optimized.thenCompose(prepared -> uploadAssetsInParallel(conversionId, prepared.getAssets())
                             .thenCompose(v -> {
                                 logger.debug("Assets uploaded for conversion {}", conversionId);
-                                return performConversion(conversionId, request.getHtmlContent());
+                                return performConversion(conversionId, prepared.getHtmlSource());
                             })
                             .thenCompose(resultLocation -> {
                                 logger.debug("Starting to wait for conversion result {}", conversionId);
-                                return waitForResult(conversionId, resultLocation);
-                            });
+                                return waitForResult(conversionId, resultLocation, prepared);
+                            }));
                 });
     }
 
+    /**
+     * Looks the request up in the configured {@link ResultCache} on the blocking I/O executor, as its
+     * content has to be read to compute the key. Misses are converted and their result stored as it is
+     * read.
+     *
+     * @param conversion converts the request on a miss, or if there is no cache
+     */
+    CompletableFuture<InputStream> cached(ConversionRequest request,
+                                          Function<ConversionRequest, CompletableFuture<InputStream>> conversion) {
+        if (resultCache == null) {
+            return conversion.apply(request);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return resultCache.key(baseUrl, apiKey, request, propertiesJson.serialize(request.getProperties()));
+            } catch (IOException e) {
+                throw new CompletionException(new PdfApiClientException("Failed to read conversion content", e));
+            }
+        }, resultExecutor).thenCompose(keyed -> {
+            if (keyed.key == null) {
+                logger.debug("Content exceeds the result cache buffering limit, converting without cache");
+                return conversion.apply(keyed.request);
+            }
+            InputStream cached = resultCache.get(keyed.key);
+            metrics.resultCacheChecked(cached != null);
+            if (cached != null) {
+                logger.debug("Answered conversion {} from result cache", keyed.key);
+                return CompletableFuture.completedFuture(cached);
+            }
+            return conversion.apply(keyed.request).thenApply(pdf -> resultCache.store(keyed.key, pdf));
+        });
+    }
+
+    /**
+     * Applies the request's {@link AssetOptimizer} on the blocking I/O executor, while the conversion
+     * is being initialized.
+     *
+     * @return the request with optimized content, or the request itself if it has no optimizer
+     */
+    CompletableFuture<ConversionRequest> optimizeAssets(ConversionRequest request) {
+        AssetOptimizer optimizer = request.getAssetOptimizer();
+        if (optimizer == null) {
+            return CompletableFuture.completedFuture(request);
+        }
+        return optimizer.optimize(request, resultExecutor).thenApply(optimization -> {
+            logger.debug("Optimized content from {} to {} bytes", optimization.originalBytes, optimization.optimizedBytes);
+            metrics.assetsOptimized(optimization.originalBytes, optimization.optimizedBytes);
+            return optimization.request;
+        });
+    }
+
+    /**
+     * Opens the configured number of warm-up connections to the API, at least one. The client starts a
+     * warm-up when it is created if {@link PdfApiClientConfig.Builder#warmUpConnections(int)} is set; this
+     * method returns that warm-up while it is in progress, for example to delay a readiness probe.
+     *
+     * @return completed when the connections are open, exceptionally if none could be opened
+     */
+    public CompletableFuture<Void> warmUp() {
+        return warmer.warmUp(Math.max(1, warmUpConnections));
+    }
+
+    /**
+     * Convert HTML to PDF and publish the result as byte buffers, for example to forward it to an HTTP
+     * response or an object store as it arrives. The conversion starts when the single subscriber first
+     * requests data, and the result is only read as far as the subscriber has requested it. Cancelling
+     * the subscription releases the connection.
+     *
+     * @param request conversion request containing all necessary data
+     * @return publisher of the PDF content
+     */
+    public Flow.Publisher<ByteBuffer> convertToPublisher(ConversionRequest request) {
+        return new ResultPublisher(() -> convert(request), resultExecutor);
+    }
+
     /**
      * Convert HTML to PDF and write the result to the provided output stream.
      *
@@ -91,12 +272,37 @@ public class PdfApiClient implements AutoCloseable {
         convert(request, output).join();
     }
 
-    private CompletableFuture<String> initializeConversion(ConversionProperties properties) {
+    /**
+     * Convert a batch of requests with the default stage windows of {@link BatchConverter}.
+     *
+     * @param requests requests to convert, pulled lazily as capacity frees up
+     * @param sink     receives every result or failure as soon as it is available
+     * @return summary completed when all requests have been delivered to the sink
+     */
+    public CompletableFuture<BatchConverter.Summary> convertAll(Iterator<ConversionRequest> requests, BatchResultSink sink) {
+        return BatchConverter.builder(this).build().convertAll(requests, sink);
+    }
+
+    CompletableFuture<String> initializeConversion(ConversionProperties properties) {
         try {
-            String json = objectMapper.writeValueAsString(properties);
-            logger.debug("Initializing conversion with properties: {}", json);
-            return httpClient.post(baseUrl + PATH_CONVERSIONS, getHeaders(), json)
-                    .thenApply(response -> parseJsonResponse(response, "id"));
+            byte[] json = propertiesJson.serialize(properties);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Initializing conversion with properties: {}", new String(json, StandardCharsets.UTF_8));
+            }
+            boolean warm = warmer.markUsed();
+            long start = startStage(ConversionMetrics.Stage.INITIALIZE);
+            CompletableFuture<String> id = endStage(ConversionMetrics.Stage.INITIALIZE, start,
+                    retries.execute(RetryExecutor.Stage.INITIALIZE, "Conversion initialization", true,
+                            () -> httpClient.post(templates.conversionsUrl(), templates.initializationHeaders(), json)
+                                    .thenApply(response -> parseJsonField(response, "id"))));
+            if (metrics == ConversionMetrics.NOOP) {
+                return id;
+            }
+            return id.whenComplete((value, error) -> {
+                if (error == null) {
+                    metrics.firstRequestCompleted(warm, System.nanoTime() - start);
+                }
+            });
         } catch (JsonProcessingException e) {
             logger.error("Failed to serialize conversion properties", e);
             return CompletableFuture.failedFuture(
@@ -104,104 +310,465 @@ public class PdfApiClient implements AutoCloseable {
         }
     }
 
-    private CompletableFuture<Void> uploadAssetsInParallel(String conversionId, List<ConversionRequest.AssetInput> assets) {
+    CompletableFuture<Void> uploadAssetsInParallel(String conversionId, List<ConversionRequest.AssetInput> assets) {
         logger.debug("Uploading {} assets for conversion {}", assets.size(), conversionId);
-        List<CompletableFuture<Void>> uploads = assets.stream()
-                .map(asset -> attachAsset(conversionId, asset.getContent(), asset.getFileName()))
-                .collect(Collectors.toList());
-
-        return CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new));
-    }
-
-    private CompletableFuture<Void> attachAsset(String conversionId, InputStream assetStream, String fileName) {
-        logger.debug("Attaching asset {} to conversion {}", fileName, conversionId);
-        return httpClient.post(
-                baseUrl + PATH_CONVERSIONS + "/" + conversionId + PATH_ASSETS,
-                getHeaders(),
-                fileName,
-                assetStream,
-                "application/octet-stream",
-                "asset"
-        ).thenApply(response -> {
-            handleResponse(response);
-            return null;
-        });
+        String assetsUrl = templates.assetsUrl(conversionId);
+        return uploadScheduler.uploadAll(assets, asset -> attachAsset(assetsUrl, asset));
     }
 
-    private CompletableFuture<String> performConversion(String conversionId, InputStream htmlContent) {
-        logger.debug("Starting conversion for ID: {}", conversionId);
-        return httpClient.post(
-                baseUrl + PATH_CONVERSIONS + "/" + conversionId + PATH_CONVERT,
-                getHeaders(),
-                "index.html",
-                htmlContent,
-                "text/html",
-                "index"
-        ).thenApply(response -> {
-            final var r = handleResponse(response);
-            logger.debug("Conversion started successfully for ID: {}", conversionId);
-            return r.getLocationHeader().orElseThrow(() -> new PdfApiClientException("Result location not returned during conversion"));
+    private CompletableFuture<Void> attachAsset(String assetsUrl, ConversionRequest.AssetInput asset) {
+        ContentSource source = asset.getSource();
+        if (assetIndex == null || !assetReferencesSupported) {
+            return uploadAsset(assetsUrl, source, asset.getFileName())
+                    .thenApply(location -> null);
+        }
+
+        // Hashing reads the whole asset, which must not hold up the HTTP client's threads
+        if (source.isReplayable()) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ContentDigest.digest(source);
+                } catch (IOException e) {
+                    throw new CompletionException(
+                            new PdfApiClientException("Failed to read asset " + asset.getFileName(), e));
+                }
+            }, resultExecutor).thenCompose(digest -> attachDeduplicatedAsset(assetsUrl, asset.getFileName(), digest, source));
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return DigestedContent.read(source.openStream(), maxDeduplicatedAssetBytes);
+            } catch (IOException e) {
+                throw new CompletionException(
+                        new PdfApiClientException("Failed to read asset " + asset.getFileName(), e));
+            }
+        }, resultExecutor).thenCompose(content -> {
+            if (!content.isDigested()) {
+                logger.debug("Asset {} exceeds deduplication limit, uploading without digest", asset.getFileName());
+                return uploadAsset(assetsUrl, content.toSource(), asset.getFileName())
+                        .thenApply(location -> null);
+            }
+            return attachDeduplicatedAsset(assetsUrl, asset.getFileName(), content.getDigest(), content.toSource());
         });
     }
 
-    private CompletableFuture<InputStream> waitForResult(String conversionId, String resultLocation) {
-        return waitForResultWithBackoff(conversionId, resultLocation, INITIAL_POLLING_DELAY_MS);
+    private CompletableFuture<Void> attachDeduplicatedAsset(String assetsUrl, String fileName, String digest,
+                                                            ContentSource source) {
+        return assetIndex.lookup(digest)
+                .map(reference -> attachAssetReference(assetsUrl, fileName, reference)
+                        .thenCompose(attached -> {
+                            if (attached) {
+                                return CompletableFuture.<Void>completedFuture(null);
+                            }
+                            assetIndex.evict(digest);
+                            return uploadAndIndexAsset(assetsUrl, fileName, digest, source);
+                        }))
+                .orElseGet(() -> uploadAndIndexAsset(assetsUrl, fileName, digest, source));
     }
 
-    private CompletableFuture<InputStream> waitForResultWithBackoff(String conversionId, String resultLocation, long currentDelay) {
-        logger.trace("Checking conversion status for {} with delay {}ms", conversionId, currentDelay);
-        return getConversionResult(resultLocation)
-                .thenCompose(result -> {
-                    if (result == null) {
-                        logger.trace("Conversion {} still in progress, next check in {}ms", conversionId,
-                                Math.min((long) (currentDelay * BACKOFF_MULTIPLIER), MAX_POLLING_DELAY_MS));
-                        CompletableFuture<Void> delay = new CompletableFuture<>();
-                        CompletableFuture.delayedExecutor(currentDelay, TimeUnit.MILLISECONDS)
-                                .execute(() -> delay.complete(null));
-                        return delay.thenCompose(v -> waitForResultWithBackoff(conversionId,
-                                resultLocation, Math.min((long) (currentDelay * BACKOFF_MULTIPLIER), MAX_POLLING_DELAY_MS)));
-                    }
-                    logger.info("Conversion {} completed successfully", conversionId);
-                    return CompletableFuture.completedFuture(result);
+    private CompletableFuture<Void> uploadAndIndexAsset(String assetsUrl, String fileName, String digest,
+                                                        ContentSource source) {
+        return uploadAsset(assetsUrl, source, fileName)
+                .thenApply(location -> {
+                    location.ifPresent(reference -> {
+                        logger.trace("Indexed asset {} with digest {} as {}", fileName, digest, reference);
+                        assetIndex.register(digest, reference);
+                    });
+                    return null;
                 });
     }
 
-    private CompletableFuture<InputStream> getConversionResult(String resultLocation) {
-        return httpClient.get(resultLocation, getHeaders())
+    /**
+     * @return location of the uploaded asset, if the server returned one
+     */
+    private CompletableFuture<Optional<String>> uploadAsset(String assetsUrl, ContentSource source, String fileName) {
+        logger.debug("Uploading asset {} to {}", fileName, assetsUrl);
+        long start = startStage(ConversionMetrics.Stage.UPLOAD);
+        return endStage(ConversionMetrics.Stage.UPLOAD, start,
+                retries.execute(RetryExecutor.Stage.UPLOAD, "Upload of asset " + fileName, source.isReplayable(),
+                        () -> httpClient.post(
+                                assetsUrl,
+                                templates.uploadHeaders(fileName, source.contentLength()),
+                                fileName,
+                                source,
+                                "application/octet-stream",
+                                "asset"
+                        ).thenApply(response -> {
+                            try (response) {
+                                Optional<String> location = handleResponse(response).getLocationHeader();
+                                recordUpload(source);
+                                return location;
+                            }
+                        })));
+    }
+
+    /**
+     * Attaches an already uploaded asset by its server-side reference. References are turned off for
+     * the client when the server rejects the request itself, or after several consecutive rejections of
+     * any kind, as each one costs a request on top of the upload.
+     *
+     * @return {@code false} when the server did not accept the reference and the asset has to be uploaded
+     */
+    private CompletableFuture<Boolean> attachAssetReference(String assetsUrl, String fileName, String reference) {
+        logger.debug("Attaching asset {} to {} by reference {}", fileName, assetsUrl, reference);
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("fileName", fileName)
+                .put("reference", reference);
+        long start = startStage(ConversionMetrics.Stage.UPLOAD);
+        return endStage(ConversionMetrics.Stage.UPLOAD, start,
+                retries.execute(RetryExecutor.Stage.UPLOAD, "Attaching asset " + fileName, true,
+                        () -> httpClient.post(
+                                assetsUrl,
+                                templates.headers(),
+                                body.toString()
+                        ))).thenApply(response -> {
+            response.close();
+            int status = response.getStatusCode();
+            if (status == 200 || status == 201 || status == 204) {
+                rejectedAssetReferences.set(0);
+                return true;
+            }
+            int rejected = rejectedAssetReferences.incrementAndGet();
+            if (status == 400 || status == 405 || status == 415 || status == 422 || status == 501
+                    || rejected >= MAX_REJECTED_ASSET_REFERENCES) {
+                logger.info("Server does not accept asset references (status {}), disabling deduplication", status);
+                assetReferencesSupported = false;
+            } else {
+                logger.debug("Asset reference {} rejected with status {}, uploading {}", reference, status, fileName);
+            }
+            return false;
+        });
+    }
+
+    CompletableFuture<String> performConversion(String conversionId, ContentSource htmlContent) {
+        logger.debug("Starting conversion for ID: {}", conversionId);
+        String convertUrl = templates.convertUrl(conversionId);
+        long start = startStage(ConversionMetrics.Stage.CONVERT);
+        return endStage(ConversionMetrics.Stage.CONVERT, start,
+                retries.execute(RetryExecutor.Stage.CONVERT, "Conversion " + conversionId, htmlContent.isReplayable(),
+                        () -> httpClient.post(
+                                convertUrl,
+                                templates.uploadHeaders("index.html", htmlContent.contentLength()),
+                                "index.html",
+                                htmlContent,
+                                "text/html",
+                                "index"
+                        ).thenApply(response -> {
+                            try (response) {
+                                final var r = handleResponse(response);
+                                logger.debug("Conversion started successfully for ID: {}", conversionId);
+                                recordUpload(htmlContent);
+                                return r.getLocationHeader().orElseThrow(() -> new PdfApiClientException("Result location not returned during conversion"));
+                            }
+                        })));
+    }
+
+    CompletableFuture<InputStream> waitForResult(String conversionId, String resultLocation, ConversionRequest request) {
+        String bucket = ConversionDurationEstimator.bucket(request);
+        long start = startStage(ConversionMetrics.Stage.POLLING);
+        if (callbacks == null) {
+            return endStage(ConversionMetrics.Stage.POLLING, start,
+                    pollingEngine.await(conversionId, resultLocation, bucket));
+        }
+        return endStage(ConversionMetrics.Stage.POLLING, start,
+                pollingEngine.await(conversionId, resultLocation, bucket, callbacks.expect(conversionId), callbackTimeoutMs)
+                        .whenComplete((result, error) -> callbacks.forget(conversionId)));
+    }
+
+    /**
+     * @return start of the stage, or 0 when no metrics are recorded
+     */
+    private long startStage(ConversionMetrics.Stage stage) {
+        if (metrics == ConversionMetrics.NOOP) {
+            return 0;
+        }
+        metrics.stageStarted(stage);
+        return System.nanoTime();
+    }
+
+    /**
+     * Reports the stage when the future completes. Without metrics the future is returned as is, so
+     * the default configuration adds no callbacks to the hot path.
+     */
+    private <T> CompletableFuture<T> endStage(ConversionMetrics.Stage stage, long start, CompletableFuture<T> future) {
+        if (metrics == ConversionMetrics.NOOP) {
+            return future;
+        }
+        return future.whenComplete((value, error) ->
+                metrics.stageCompleted(stage, System.nanoTime() - start, error == null ? null : RetryExecutor.unwrap(error)));
+    }
+
+    private void recordUpload(ContentSource source) {
+        long length = source.contentLength();
+        if (length == ContentSource.UNKNOWN_LENGTH && source instanceof TemplateContent) {
+            // Rendered while it was uploaded, so its length is known now
+            length = ((TemplateContent) source).getRenderedBytes();
+        }
+        if (length != ContentSource.UNKNOWN_LENGTH) {
+            metrics.bytesUploaded(length);
+        }
+    }
+
+    /**
+     * @return how many status checks were needed to detect completed conversions and how well their
+     * completion was predicted
+     */
+    public PollingStatistics getPollingStatistics() {
+        return pollingEngine.statistics();
+    }
+
+    /**
+     * @return how many requests were repeated after transient failures and how many gave up
+     */
+    public RetryStatistics getRetryStatistics() {
+        return retries.statistics();
+    }
+
+    /**
+     * @return how many status checks were hedged and how often the hedge answered first
+     */
+    public HedgingStatistics getHedgingStatistics() {
+        return hedger != null ? hedger.statistics() : new HedgingStatistics(0, 0, 0, -1);
+    }
+
+    private CompletableFuture<PollingEngine.PollResult> getConversionResult(String resultLocation) {
+        return retries.execute(RetryExecutor.Stage.RESULT, "Status check of " + resultLocation, true,
+                () -> getHedged(resultLocation)
+                        .thenApply(response -> {
+                            warmer.markUsed();
+                            if (response.getStatusCode() == 204) {
+                                response.close();
+                                metrics.statusChecked(false);
+                                return PollingEngine.PollResult.pending(response.getHeader(HEADER_RETRY_AFTER)
+                                        .map(PdfApiClient::parseRetryAfter)
+                                        .orElse(-1L));
+                            }
+                            handleResponse(response);
+                            metrics.statusChecked(true);
+                            return PollingEngine.PollResult.completed(openBody(response));
+                        }));
+    }
+
+    private CompletableFuture<HttpResponse> getHedged(String url) {
+        if (hedger == null) {
+            return httpClient.get(url, templates.headers());
+        }
+        return hedger.execute(() -> httpClient.get(url, templates.headers()), HttpResponse::close);
+    }
+
+    /**
+     * @return delay in milliseconds given as delta-seconds or HTTP date, or -1 if the value is invalid
+     */
+    static long parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(Instant.now(), date.toInstant()).toMillis());
+            } catch (DateTimeParseException ignored) {
+                logger.debug("Ignoring invalid Retry-After header: {}", value);
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return ids of the given conversions that are no longer in progress
+     */
+    private CompletableFuture<Set<String>> getBatchStatus(Collection<String> conversionIds) {
+        ObjectNode body = objectMapper.createObjectNode();
+        conversionIds.forEach(body.putArray("ids")::add);
+        return httpClient.post(templates.batchStatusUrl(), templates.headers(), body.toString())
                 .thenApply(response -> {
-                    if (response.getStatusCode() == 204) {
-                        return null;
+                    try (response) {
+                        handleResponse(response);
+                        Set<String> completed = new HashSet<>();
+                        objectMapper.readTree(response.getBodyAsStream()).path("completed")
+                                .forEach(id -> completed.add(id.asText()));
+                        return completed;
+                    } catch (IOException e) {
+                        throw new PdfApiClientException("Failed to parse batch status response", e);
                     }
-                    return handleResponse(response).getBodyAsStream();
                 });
     }
 
-    private String parseJsonResponse(HttpResponse response, String field) {
-        handleResponse(response);
-        try {
-            return objectMapper.readTree(response.getBodyAsStream()).get(field).asText();
+    /**
+     * Hands the still open response body to the caller; closing the returned stream releases the connection.
+     */
+    private InputStream openBody(HttpResponse response) {
+        return new ResultBody(response);
+    }
+
+    /**
+     * Result body, read either as a stream or, by {@link ResultPublisher}, as the buffers the HTTP
+     * client receives. The stream is only opened on the first read. Reports the download stage and
+     * the bytes read once it is closed or its publisher ends.
+     */
+    private final class ResultBody extends InputStream implements ResultPublisher.Publishable {
+        private final HttpResponse response;
+        private final long start;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private InputStream body;
+        private volatile long bytes;
+        private volatile Throwable error;
+
+        ResultBody(HttpResponse response) {
+            this.response = response;
+            this.start = startStage(ConversionMetrics.Stage.DOWNLOAD);
+        }
+
+        private InputStream body() {
+            if (body == null) {
+                InputStream stream = response.getBodyAsStream();
+                body = stream != null ? stream : InputStream.nullInputStream();
+            }
+            return body;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int b = body().read();
+                if (b >= 0) {
+                    bytes++;
+                }
+                return b;
+            } catch (IOException e) {
+                error = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int n = body().read(b, off, len);
+                if (n > 0) {
+                    bytes += n;
+                }
+                return n;
+            } catch (IOException e) {
+                error = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = body().skip(n);
+            bytes += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return body().available();
+        }
+
+        @Override
+        public Flow.Publisher<ByteBuffer> publisher() {
+            Flow.Publisher<ByteBuffer> published = body == null ? response.getBodyAsPublisher() : null;
+            if (published == null) {
+                return null;
+            }
+            return subscriber -> published.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(new Flow.Subscription() {
+                        @Override
+                        public void request(long n) {
+                            subscription.request(n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            subscription.cancel();
+                            close();
+                        }
+                    });
+                }
+
+                @Override
+                public void onNext(ByteBuffer buffer) {
+                    bytes += buffer.remaining();
+                    subscriber.onNext(buffer);
+                }
+
+                @Override
+                public void onError(Throwable failure) {
+                    error = failure;
+                    close();
+                    subscriber.onError(new PdfApiClientException("Failed to read PDF content", failure));
+                }
+
+                @Override
+                public void onComplete() {
+                    close();
+                    subscriber.onComplete();
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true) && metrics != ConversionMetrics.NOOP) {
+                metrics.bytesDownloaded(bytes);
+                metrics.stageCompleted(ConversionMetrics.Stage.DOWNLOAD, System.nanoTime() - start, error);
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Reads the response up to the given top-level field without building a tree of the document.
+     */
+    private String parseJsonField(HttpResponse response, String field) {
+        try (response) {
+            handleResponse(response);
+            try (JsonParser parser = objectMapper.getFactory().createParser(response.getBodyAsStream())) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if (field.equals(name) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                            return parser.getText();
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            }
         } catch (IOException e) {
             throw new PdfApiClientException("Failed to parse JSON response", e);
         }
+        throw new PdfApiClientException("JSON response has no " + field);
     }
 
     private HttpResponse handleResponse(HttpResponse response) {
-        if (response.getStatusCode() != 200 && response.getStatusCode() != 201 && response.getStatusCode() != 204) {
-            logger.error("Request failed with status {}", response.getStatusCode());
-            throw new PdfApiClientException("Request failed with status " + response.getStatusCode());
+        int status = response.getStatusCode();
+        if (status != 200 && status != 201 && status != 204) {
+            logger.error("Request failed with status {}", status);
+            response.close();
+            throw new PdfApiClientException("Request failed with status " + status, status,
+                    response.getHeader(HEADER_RETRY_AFTER).map(PdfApiClient::parseRetryAfter).orElse(-1L));
         }
         return response;
     }
 
-    private Map<String, String> getHeaders() {
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HEADER_API_KEY, apiKey);
-        return Collections.unmodifiableMap(headers);
-    }
-
     @Override
     public void close() {
         logger.debug("Closing PDF API client");
+        pollingEngine.close();
+        warmer.close();
+        if (callbackReceiver != null) {
+            callbackReceiver.close();
+        }
         httpClient.close();
+        // Delayed retries still run, and fail on the closed HTTP client instead of being left pending
+        scheduler.shutdown();
+        if (ownedResultExecutor != null) {
+            ownedResultExecutor.shutdown();
+        }
     }
 } 
@@ -1,14 +1,75 @@
 package io.pdfapi.client;
 
+import io.pdfapi.client.callback.CallbackReceiver;
+import io.pdfapi.client.http.ConnectionSettings;
+import io.pdfapi.client.http.ContentEncoding;
+import io.pdfapi.client.metrics.ConversionMetrics;
+
+import java.util.concurrent.Executor;
+
 public class PdfApiClientConfig {
     private final String baseUrl;
     private final String apiKey;
     private final int timeoutSeconds;
+    private final boolean assetDeduplication;
+    private final int assetIndexSize;
+    private final long maxDeduplicatedAssetBytes;
+    private final int maxConcurrentUploads;
+    private final int maxConcurrentUploadsPerConversion;
+    private final int maxConcurrentPolls;
+    private final String batchStatusPath;
+    private final CallbackReceiver callbackReceiver;
+    private final int callbackTimeoutSeconds;
+    private final int maxRetries;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+    private final long maxRetryAfterMillis;
+    private final double retryBudgetRatio;
+    private final double hedgingPercentile;
+    private final double hedgeBudgetRatio;
+    private final ConversionMetrics metrics;
+    private final int blockingIoThreads;
+    private final int blockingIoQueueCapacity;
+    private final Executor blockingIoExecutor;
+    private final ConnectionSettings connectionSettings;
+    private final int warmUpConnections;
+    private final int keepWarmConnections;
+    private final ContentEncoding requestCompression;
+    private final long compressionThresholdBytes;
+    private final boolean acceptCompressedResponses;
+    private final ResultCache resultCache;
 
     private PdfApiClientConfig(Builder builder) {
         this.baseUrl = builder.baseUrl;
         this.apiKey = builder.apiKey;
         this.timeoutSeconds = builder.timeoutSeconds;
+        this.assetDeduplication = builder.assetDeduplication;
+        this.assetIndexSize = builder.assetIndexSize;
+        this.maxDeduplicatedAssetBytes = builder.maxDeduplicatedAssetBytes;
+        this.maxConcurrentUploads = builder.maxConcurrentUploads;
+        this.maxConcurrentUploadsPerConversion = builder.maxConcurrentUploadsPerConversion;
+        this.maxConcurrentPolls = builder.maxConcurrentPolls;
+        this.batchStatusPath = builder.batchStatusPath;
+        this.callbackReceiver = builder.callbackReceiver;
+        this.callbackTimeoutSeconds = builder.callbackTimeoutSeconds;
+        this.maxRetries = builder.maxRetries;
+        this.retryBaseDelayMillis = builder.retryBaseDelayMillis;
+        this.retryMaxDelayMillis = builder.retryMaxDelayMillis;
+        this.maxRetryAfterMillis = builder.maxRetryAfterMillis;
+        this.retryBudgetRatio = builder.retryBudgetRatio;
+        this.hedgingPercentile = builder.hedgingPercentile;
+        this.hedgeBudgetRatio = builder.hedgeBudgetRatio;
+        this.metrics = builder.metrics;
+        this.blockingIoThreads = builder.blockingIoThreads;
+        this.blockingIoQueueCapacity = builder.blockingIoQueueCapacity;
+        this.blockingIoExecutor = builder.blockingIoExecutor;
+        this.connectionSettings = builder.connectionSettings;
+        this.warmUpConnections = builder.warmUpConnections;
+        this.keepWarmConnections = builder.keepWarmConnections;
+        this.requestCompression = builder.requestCompression;
+        this.compressionThresholdBytes = builder.compressionThresholdBytes;
+        this.acceptCompressedResponses = builder.acceptCompressedResponses;
+        this.resultCache = builder.resultCache;
     }
 
     public String getBaseUrl() {
@@ -23,6 +84,114 @@ public class PdfApiClientConfig {
         return timeoutSeconds;
     }
 
+    public boolean isAssetDeduplication() {
+        return assetDeduplication;
+    }
+
+    public int getAssetIndexSize() {
+        return assetIndexSize;
+    }
+
+    public long getMaxDeduplicatedAssetBytes() {
+        return maxDeduplicatedAssetBytes;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    public int getMaxConcurrentUploadsPerConversion() {
+        return maxConcurrentUploadsPerConversion;
+    }
+
+    public int getMaxConcurrentPolls() {
+        return maxConcurrentPolls;
+    }
+
+    public String getBatchStatusPath() {
+        return batchStatusPath;
+    }
+
+    public CallbackReceiver getCallbackReceiver() {
+        return callbackReceiver;
+    }
+
+    public int getCallbackTimeoutSeconds() {
+        return callbackTimeoutSeconds;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public long getMaxRetryAfterMillis() {
+        return maxRetryAfterMillis;
+    }
+
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    public double getHedgingPercentile() {
+        return hedgingPercentile;
+    }
+
+    public double getHedgeBudgetRatio() {
+        return hedgeBudgetRatio;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getBlockingIoThreads() {
+        return blockingIoThreads;
+    }
+
+    public int getBlockingIoQueueCapacity() {
+        return blockingIoQueueCapacity;
+    }
+
+    public Executor getBlockingIoExecutor() {
+        return blockingIoExecutor;
+    }
+
+    public ConnectionSettings getConnectionSettings() {
+        return connectionSettings;
+    }
+
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    public int getKeepWarmConnections() {
+        return keepWarmConnections;
+    }
+
+    public ContentEncoding getRequestCompression() {
+        return requestCompression;
+    }
+
+    public long getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public boolean isAcceptCompressedResponses() {
+        return acceptCompressedResponses;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -31,6 +200,37 @@ public class PdfApiClientConfig {
         private String baseUrl = "https://api.pdfapi.io";
         private String apiKey;
         private int timeoutSeconds = 30;
+        private boolean assetDeduplication;
+        private int assetIndexSize = 1024;
+        private long maxDeduplicatedAssetBytes = 8 * 1024 * 1024;
+        private int maxConcurrentUploads = 16;
+        private int maxConcurrentUploadsPerConversion = 4;
+        private int maxConcurrentPolls = 32;
+        private String batchStatusPath;
+        private CallbackReceiver callbackReceiver;
+        private int callbackTimeoutSeconds = 60;
+        private int maxRetries = 3;
+        private long retryBaseDelayMillis = 200;
+        private long retryMaxDelayMillis = 5000;
+        private long maxRetryAfterMillis = 60_000;
+        private double retryBudgetRatio = 0.2;
+        private double hedgingPercentile;
+        private double hedgeBudgetRatio = 0.05;
+        private ConversionMetrics metrics = ConversionMetrics.NOOP;
+        private int blockingIoThreads = 64;
+        private int blockingIoQueueCapacity = Integer.MAX_VALUE;
+        private Executor blockingIoExecutor;
+        private int maxConnections = ConnectionSettings.DEFAULT_MAX_CONNECTIONS;
+        private int connectionKeepAliveSeconds = ConnectionSettings.DEFAULT_KEEP_ALIVE_SECONDS;
+        private int tlsSessionCacheSize = ConnectionSettings.DEFAULT_TLS_SESSION_CACHE_SIZE;
+        private int tlsSessionTimeoutSeconds = ConnectionSettings.DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+        private int warmUpConnections;
+        private int keepWarmConnections;
+        private ContentEncoding requestCompression;
+        private long compressionThresholdBytes = 1024;
+        private boolean acceptCompressedResponses;
+        private ResultCache resultCache;
+        private ConnectionSettings connectionSettings;
 
         public Builder baseUrl(String baseUrl) {
             this.baseUrl = baseUrl;
@@ -47,10 +247,312 @@ public class PdfApiClientConfig {
             return this;
         }
 
+        /**
+         * Enables content-addressed asset deduplication. Assets already uploaded by this client are
+         * attached by their server-side reference instead of being uploaded again.
+         */
+        public Builder assetDeduplication(boolean assetDeduplication) {
+            this.assetDeduplication = assetDeduplication;
+            return this;
+        }
+
+        /**
+         * Maximum number of asset digests remembered by the deduplication index, defaults to 1024.
+         */
+        public Builder assetIndexSize(int assetIndexSize) {
+            this.assetIndexSize = assetIndexSize;
+            return this;
+        }
+
+        /**
+         * Assets larger than this are uploaded without deduplication, defaults to 8 MiB.
+         */
+        public Builder maxDeduplicatedAssetBytes(long maxDeduplicatedAssetBytes) {
+            this.maxDeduplicatedAssetBytes = maxDeduplicatedAssetBytes;
+            return this;
+        }
+
+        /**
+         * Maximum number of asset uploads in flight across all conversions of a client, defaults to 16.
+         */
+        public Builder maxConcurrentUploads(int maxConcurrentUploads) {
+            this.maxConcurrentUploads = maxConcurrentUploads;
+            return this;
+        }
+
+        /**
+         * Maximum number of asset uploads in flight for a single conversion, defaults to 4.
+         */
+        public Builder maxConcurrentUploadsPerConversion(int maxConcurrentUploadsPerConversion) {
+            this.maxConcurrentUploadsPerConversion = maxConcurrentUploadsPerConversion;
+            return this;
+        }
+
+        /**
+         * Maximum number of result status checks in flight across all conversions of a client, defaults to 32.
+         */
+        public Builder maxConcurrentPolls(int maxConcurrentPolls) {
+            this.maxConcurrentPolls = maxConcurrentPolls;
+            return this;
+        }
+
+        /**
+         * Path of a batch status endpoint, relative to the base URL. When set, status checks that fall
+         * due together are sent as one {@code POST} of {@code {"ids":[...]}}, answered with
+         * {@code {"completed":[...]}}, and only finished conversions are fetched. Disabled by default,
+         * and for the lifetime of the client once the server answers 404, 405 or 501.
+         */
+        public Builder batchStatusPath(String batchStatusPath) {
+            this.batchStatusPath = batchStatusPath;
+            return this;
+        }
+
+        /**
+         * Enables callback completion. The receiver's URL is registered with every conversion and the
+         * result is fetched when the server calls it, instead of being polled. The receiver is started
+         * with the client and closed with it.
+         */
+        public Builder callbackReceiver(CallbackReceiver callbackReceiver) {
+            this.callbackReceiver = callbackReceiver;
+            return this;
+        }
+
+        /**
+         * Time to wait for a conversion's callback before falling back to polling, defaults to 60 seconds.
+         */
+        public Builder callbackTimeoutSeconds(int callbackTimeoutSeconds) {
+            this.callbackTimeoutSeconds = callbackTimeoutSeconds;
+            return this;
+        }
+
+        /**
+         * Maximum number of times a request is repeated after a transient failure, defaults to 3.
+         * Only the failed stage of a conversion is repeated; 0 disables retries.
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Initial and maximum backoff window between retries, defaults to 200 ms and 5 s. The actual
+         * delay is picked at random within the window, which doubles with every attempt.
+         */
+        public Builder retryBackoffMillis(long retryBaseDelayMillis, long retryMaxDelayMillis) {
+            this.retryBaseDelayMillis = retryBaseDelayMillis;
+            this.retryMaxDelayMillis = retryMaxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Longest {@code Retry-After} delay honoured before a retry or the next status check of a
+         * pending conversion, defaults to 60 s. Longer delays requested by the server are cut to this.
+         */
+        public Builder maxRetryAfterMillis(long maxRetryAfterMillis) {
+            this.maxRetryAfterMillis = maxRetryAfterMillis;
+            return this;
+        }
+
+        /**
+         * Retries allowed per request across the client, on top of a small reserve, defaults to 0.2.
+         * Limits the extra load retries can add while the service is failing.
+         */
+        public Builder retryBudgetRatio(double retryBudgetRatio) {
+            this.retryBudgetRatio = retryBudgetRatio;
+            return this;
+        }
+
+        /**
+         * Enables hedged status checks: a check still unanswered after this percentile of recent
+         * latencies, for example 0.95, is sent a second time and the first answer wins. Over HTTP/2
+         * the second request shares the first one's connection. Disabled by default.
+         */
+        public Builder hedgingPercentile(double hedgingPercentile) {
+            this.hedgingPercentile = hedgingPercentile;
+            return this;
+        }
+
+        /**
+         * Hedged checks allowed per status check, defaults to 0.05.
+         */
+        public Builder hedgeBudgetRatio(double hedgeBudgetRatio) {
+            this.hedgeBudgetRatio = hedgeBudgetRatio;
+            return this;
+        }
+
+        /**
+         * Receives stage timings, status checks and transferred bytes of every conversion, for example
+         * {@link io.pdfapi.client.metrics.MicrometerConversionMetrics}. Nothing is recorded by default.
+         */
+        public Builder metrics(ConversionMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Size of the thread pool that runs the requests of the blocking adapters (Apache HttpClient
+         * and RestTemplate) on Java 11 to 20, defaults to 64. On Java 21 and later every request runs
+         * on its own virtual thread instead.
+         */
+        public Builder blockingIoThreads(int blockingIoThreads) {
+            this.blockingIoThreads = blockingIoThreads;
+            return this;
+        }
+
+        /**
+         * Requests of the blocking adapters that may wait for a pool thread, unbounded by default.
+         * Requests beyond the capacity fail with a {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        public Builder blockingIoQueueCapacity(int blockingIoQueueCapacity) {
+            this.blockingIoQueueCapacity = blockingIoQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Executor for the requests of the blocking adapters and for reading the results published by
+         * {@link PdfApiClient#convertToPublisher}, replacing the ones created by the client. It is not
+         * shut down when the client is closed.
+         */
+        public Builder blockingIoExecutor(Executor blockingIoExecutor) {
+            this.blockingIoExecutor = blockingIoExecutor;
+            return this;
+        }
+
+        /**
+         * Connections the HTTP client keeps to the API, defaults to 64. Not applied to the JDK client,
+         * which doesn't limit its connections, nor to RestTemplate, whose connections are pooled JVM-wide.
+         */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Seconds an idle connection is kept open for reuse, defaults to 300. Not applied to the JDK
+         * client and RestTemplate, see {@link #maxConnections(int)}.
+         */
+        public Builder connectionKeepAliveSeconds(int connectionKeepAliveSeconds) {
+            this.connectionKeepAliveSeconds = connectionKeepAliveSeconds;
+            return this;
+        }
+
+        /**
+         * TLS sessions remembered for resumption, 0 for no limit. Defaults to the JVM's default of 20480,
+         * in which case the JVM's default TLS context is used.
+         */
+        public Builder tlsSessionCacheSize(int tlsSessionCacheSize) {
+            this.tlsSessionCacheSize = tlsSessionCacheSize;
+            return this;
+        }
+
+        /**
+         * Seconds a TLS session may be resumed, 0 for no limit. Defaults to the JVM's default of 86400.
+         */
+        public Builder tlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+            this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+            return this;
+        }
+
+        /**
+         * Connections opened to the API as soon as the client is created, so that the first conversion
+         * doesn't pay for DNS, TCP and TLS handshakes. Disabled by default.
+         */
+        public Builder warmUpConnections(int warmUpConnections) {
+            this.warmUpConnections = warmUpConnections;
+            return this;
+        }
+
+        /**
+         * Connections kept open while the client is idle, by reusing them before the keep-alive period
+         * expires. Disabled by default.
+         */
+        public Builder keepWarmConnections(int keepWarmConnections) {
+            this.keepWarmConnections = keepWarmConnections;
+            return this;
+        }
+
+        /**
+         * Coding applied to uploads of text assets (HTML, CSS, JavaScript, SVG, JSON, XML and plain
+         * text) as they are sent. Disabled by default; other assets are usually compressed already.
+         */
+        public Builder requestCompression(ContentEncoding requestCompression) {
+            this.requestCompression = requestCompression;
+            return this;
+        }
+
+        /**
+         * Text assets smaller than this are sent uncompressed, as the saving doesn't pay for the
+         * encoding. Assets of unknown length are always compressed. Defaults to 1 KiB.
+         */
+        public Builder compressionThresholdBytes(long compressionThresholdBytes) {
+            this.compressionThresholdBytes = compressionThresholdBytes;
+            return this;
+        }
+
+        /**
+         * Whether the API may send gzip or deflate encoded responses, which are decoded as they are
+         * read. Disabled by default.
+         */
+        public Builder acceptCompressedResponses(boolean acceptCompressedResponses) {
+            this.acceptCompressedResponses = acceptCompressedResponses;
+            return this;
+        }
+
+        /**
+         * Answers conversions of content converted before from the cache instead of the API, and stores
+         * the results of the others. Disabled by default.
+         */
+        public Builder resultCache(ResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
         public PdfApiClientConfig build() {
             if (apiKey == null || apiKey.isEmpty()) {
                 throw new IllegalStateException("API key must be provided");
             }
+            if (assetIndexSize <= 0) {
+                throw new IllegalStateException("Asset index size must be positive");
+            }
+            if (maxConcurrentUploads <= 0 || maxConcurrentUploadsPerConversion <= 0) {
+                throw new IllegalStateException("Upload concurrency limits must be positive");
+            }
+            if (maxConcurrentPolls <= 0) {
+                throw new IllegalStateException("Polling concurrency limit must be positive");
+            }
+            if (maxRetries < 0 || retryBudgetRatio < 0) {
+                throw new IllegalStateException("Retry limits must not be negative");
+            }
+            if (retryBaseDelayMillis <= 0 || retryMaxDelayMillis < retryBaseDelayMillis) {
+                throw new IllegalStateException("Retry backoff must be positive and not exceed its maximum");
+            }
+            if (maxRetryAfterMillis < 0) {
+                throw new IllegalStateException("Retry-After limit must not be negative");
+            }
+            if (hedgingPercentile < 0 || hedgingPercentile >= 1 || hedgeBudgetRatio < 0) {
+                throw new IllegalStateException("Hedging percentile must be in [0, 1) and its budget not negative");
+            }
+            if (callbackTimeoutSeconds < 0) {
+                throw new IllegalStateException("Callback timeout must not be negative");
+            }
+            if (blockingIoThreads <= 0 || blockingIoQueueCapacity <= 0) {
+                throw new IllegalStateException("Blocking I/O pool size and queue capacity must be positive");
+            }
+            if (warmUpConnections < 0 || keepWarmConnections < 0) {
+                throw new IllegalStateException("Warm connections must not be negative");
+            }
+            if (compressionThresholdBytes < 0) {
+                throw new IllegalStateException("Compression threshold must not be negative");
+            }
+            connectionSettings = ConnectionSettings.builder()
+                    .maxConnections(maxConnections)
+                    .keepAliveSeconds(connectionKeepAliveSeconds)
+                    .tlsSessionCacheSize(tlsSessionCacheSize)
+                    .tlsSessionTimeoutSeconds(tlsSessionTimeoutSeconds)
+                    .build();
+            if (metrics == null) {
+                throw new IllegalStateException("Metrics must not be null, use ConversionMetrics.NOOP to disable them");
+            }
             return new PdfApiClientConfig(this);
         }
     }
@@ -1,11 +1,40 @@
 package io.pdfapi.client;
 
 public class PdfApiClientException extends RuntimeException {
+    private final int statusCode;
+    private final long retryAfterMillis;
+
     public PdfApiClientException(String message) {
-        super(message);
+        this(message, 0);
     }
 
     public PdfApiClientException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = 0;
+        this.retryAfterMillis = -1;
+    }
+
+    public PdfApiClientException(String message, int statusCode) {
+        this(message, statusCode, -1);
+    }
+
+    PdfApiClientException(String message, int statusCode, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * @return HTTP status of the failed request, or 0 if the failure was not caused by an error response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return delay requested by the server's {@code Retry-After} header, or -1 if none was sent
+     */
+    long getRetryAfterMillis() {
+        return retryAfterMillis;
     }
-} 
\ No newline at end of file
+}
@@ -1,12 +1,19 @@
 package io.pdfapi.client;
 
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
+import io.pdfapi.client.http.ApacheAsyncHttpClient;
 import io.pdfapi.client.http.ApacheHttpClient;
 import io.pdfapi.client.http.HttpClient;
+import io.pdfapi.client.http.JdkHttpClient;
 import io.pdfapi.client.http.OkHttpClient;
 import io.pdfapi.client.http.RestTemplateHttpClient;
+import io.pdfapi.client.http.WebClientHttpClient;
+
+import java.time.Duration;
 
 public class PdfApiClientFactory {
     /**
@@ -30,7 +37,7 @@ public class PdfApiClientFactory {
      * @return new client instance
      */
     public static PdfApiClient createWithOkHttp(PdfApiClientConfig config) {
-        return new PdfApiClient(config, new OkHttpClient(config.getTimeoutSeconds()));
+        return new PdfApiClient(config, new OkHttpClient(config.getTimeoutSeconds(), config.getConnectionSettings()));
     }
 
     /**
@@ -54,7 +61,8 @@ public class PdfApiClientFactory {
      * @return new client instance
      */
     public static PdfApiClient createWithApacheHttpClient(PdfApiClientConfig config) {
-        return new PdfApiClient(config, new ApacheHttpClient());
+        return createWithApacheHttpClient(config,
+                ApacheHttpClient.createHttpClient(config.getTimeoutSeconds(), config.getConnectionSettings()));
     }
 
     /**
@@ -66,7 +74,34 @@ public class PdfApiClientFactory {
      * @return new client instance
      */
     public static PdfApiClient createWithApacheHttpClient(PdfApiClientConfig config, CloseableHttpClient httpClient) {
-        return new PdfApiClient(config, new ApacheHttpClient(httpClient));
+        ApacheHttpClient adapter = config.getBlockingIoExecutor() != null
+                ? new ApacheHttpClient(httpClient, config.getBlockingIoExecutor())
+                : new ApacheHttpClient(httpClient, config.getBlockingIoThreads(), config.getBlockingIoQueueCapacity());
+        return new PdfApiClient(config, adapter);
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using the non-blocking Apache HttpAsyncClient 5 with default configuration.
+     * Requests don't hold a thread while in flight, which suits many concurrent conversions,
+     * and HTTP/2 is negotiated over TLS.
+     *
+     * @param config client configuration
+     * @return new client instance
+     */
+    public static PdfApiClient createWithApacheAsyncHttpClient(PdfApiClientConfig config) {
+        return new PdfApiClient(config, new ApacheAsyncHttpClient(config.getTimeoutSeconds(), config.getConnectionSettings()));
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using a pre-configured Apache HttpAsyncClient 5.
+     * The client is started if necessary and closed together with the returned client.
+     *
+     * @param config client configuration
+     * @param httpClient pre-configured Apache async HTTP client instance
+     * @return new client instance
+     */
+    public static PdfApiClient createWithApacheAsyncHttpClient(PdfApiClientConfig config, CloseableHttpAsyncClient httpClient) {
+        return new PdfApiClient(config, new ApacheAsyncHttpClient(httpClient));
     }
 
     /**
@@ -77,19 +112,73 @@ public class PdfApiClientFactory {
      * @return new client instance
      */
     public static PdfApiClient createWithRestTemplate(PdfApiClientConfig config) {
-        return new PdfApiClient(config, new RestTemplateHttpClient());
+        return createWithRestTemplate(config,
+                RestTemplateHttpClient.createRestTemplate(config.getTimeoutSeconds(), config.getConnectionSettings()));
     }
 
     /**
      * Creates a new instance of PdfApiClient using a pre-configured RestTemplate.
      * Use this when you need to customize the RestTemplate configuration or share an existing instance.
+     * Its request factory must stream request bodies, or uploads are buffered on the heap; see
+     * {@link RestTemplateHttpClient}.
      * 
      * @param config client configuration
      * @param restTemplate pre-configured RestTemplate instance
      * @return new client instance
      */
     public static PdfApiClient createWithRestTemplate(PdfApiClientConfig config, RestTemplate restTemplate) {
-        return new PdfApiClient(config, new RestTemplateHttpClient(restTemplate));
+        RestTemplateHttpClient adapter = config.getBlockingIoExecutor() != null
+                ? new RestTemplateHttpClient(restTemplate, config.getBlockingIoExecutor())
+                : new RestTemplateHttpClient(restTemplate, config.getBlockingIoThreads(), config.getBlockingIoQueueCapacity());
+        return new PdfApiClient(config, adapter);
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using Spring's reactive WebClient on Reactor Netty with default configuration.
+     * Requests run on the Netty event loops and results are streamed buffer by buffer,
+     * which suits Spring WebFlux applications.
+     *
+     * @param config client configuration
+     * @return new client instance
+     */
+    public static PdfApiClient createWithWebClient(PdfApiClientConfig config) {
+        return new PdfApiClient(config, new WebClientHttpClient(config.getTimeoutSeconds(), config.getConnectionSettings()));
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using a pre-configured WebClient.
+     * Use this to share the connection pool and event loops of an existing WebFlux application.
+     *
+     * @param config client configuration
+     * @param webClient pre-configured WebClient instance
+     * @return new client instance
+     */
+    public static PdfApiClient createWithWebClient(PdfApiClientConfig config, WebClient webClient) {
+        return new PdfApiClient(config, new WebClientHttpClient(webClient));
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using the JDK's built-in HTTP client with default configuration.
+     * This implementation needs no additional dependencies and multiplexes concurrent requests
+     * over HTTP/2 when the server supports it.
+     *
+     * @param config client configuration
+     * @return new client instance
+     */
+    public static PdfApiClient createWithJdkHttpClient(PdfApiClientConfig config) {
+        return new PdfApiClient(config, new JdkHttpClient(config.getTimeoutSeconds(), config.getConnectionSettings()));
+    }
+
+    /**
+     * Creates a new instance of PdfApiClient using a pre-configured JDK HTTP client.
+     * Use this when you need to customize the client, for example its executor, proxy or SSL context.
+     *
+     * @param config client configuration
+     * @param httpClient pre-configured JDK HTTP client instance
+     * @return new client instance
+     */
+    public static PdfApiClient createWithJdkHttpClient(PdfApiClientConfig config, java.net.http.HttpClient httpClient) {
+        return new PdfApiClient(config, new JdkHttpClient(httpClient, Duration.ofSeconds(config.getTimeoutSeconds())));
     }
 
     /**
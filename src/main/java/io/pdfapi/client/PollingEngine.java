@@ -0,0 +1,467 @@
+package io.pdfapi.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Polls the result locations of all conversions of a client from a single thread driving a hashed
+ * timing wheel. Status checks that fall due in the same tick are dispatched together, optionally
+ * answered by a single batch status request, and the GETs themselves are limited by a shared window.
+ * The thread only schedules work; all requests are asynchronous. While no conversion is awaited the
+ * thread parks until the next one is scheduled instead of ticking.
+ * <p>
+ * Once conversions of a similar kind have completed, the first check is scheduled at their predicted
+ * duration and later checks follow in steps of the expected deviation, growing by
+ * {@link #BACKOFF_MULTIPLIER}. Without a prediction the result is checked right away and then with
+ * the fixed backoff. A {@code Retry-After} sent with a pending answer takes precedence, up to the
+ * configured limit.
+ * <p>
+ * A conversion that expects a completion callback is checked only when the callback arrives, or at
+ * its deadline, after which it is polled like any other.
+ */
+final class PollingEngine implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PollingEngine.class);
+
+    static final long INITIAL_POLLING_DELAY_MS = 500;
+    static final long MAX_POLLING_DELAY_MS = 5000;
+    static final float BACKOFF_MULTIPLIER = 1.5f;
+    static final long MIN_POLLING_STEP_MS = 100;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SIZE = 512;
+    /**
+     * Longest delay placed on the wheel, so that deadlines compared against {@link System#nanoTime()}
+     * cannot overflow.
+     */
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 4;
+
+    private final Function<String, CompletableFuture<PollResult>> resultFetcher;
+    private final Function<Collection<String>, CompletableFuture<Set<String>>> batchStatusFetcher;
+    private final AsyncLimiter dispatchWindow;
+    private final long maxRetryAfterMs;
+    private final ConcurrentLinkedQueue<PollTask> incoming = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PollTask> expedited = new ConcurrentLinkedQueue<>();
+    private final List<List<Slot>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final ConversionDurationEstimator estimator = new ConversionDurationEstimator();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong detectionWindows = new AtomicLong();
+    private final AtomicLong detectionWindowMillis = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Thread worker;
+
+    private volatile boolean closed;
+    private volatile boolean idle;
+    private volatile boolean batchStatusSupported;
+    private long startNanos;
+    private long tick;
+
+    /**
+     * @param resultFetcher      GETs a result location
+     * @param batchStatusFetcher returns the ids of the given conversions that are no longer in progress, or
+     *                           {@code null} if the server offers no batch status endpoint; completing with
+     *                           a {@link PdfApiClientException} for a status that means the endpoint doesn't
+     *                           exist disables batch status checks
+     * @param maxConcurrentPolls maximum number of status requests in flight
+     * @param maxRetryAfterMs    longest {@code Retry-After} delay of a pending answer waited for
+     */
+    PollingEngine(Function<String, CompletableFuture<PollResult>> resultFetcher,
+                  Function<Collection<String>, CompletableFuture<Set<String>>> batchStatusFetcher,
+                  int maxConcurrentPolls, long maxRetryAfterMs) {
+        this.resultFetcher = resultFetcher;
+        this.maxRetryAfterMs = maxRetryAfterMs;
+        this.batchStatusFetcher = batchStatusFetcher;
+        this.batchStatusSupported = batchStatusFetcher != null;
+        this.dispatchWindow = new AsyncLimiter(maxConcurrentPolls);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.worker = new Thread(this::run, "pdfapi-poller");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Starts polling a conversion's result location.
+     *
+     * @param bucket kind of conversion as defined by {@link ConversionDurationEstimator#bucket}, or
+     *               {@code null} if unknown
+     */
+    CompletableFuture<InputStream> await(String conversionId, String resultLocation, String bucket) {
+        return await(conversionId, resultLocation, bucket, null, 0);
+    }
+
+    /**
+     * Starts waiting for a conversion whose completion is announced by a callback. The result is
+     * checked as soon as the notification completes, or polled from the deadline on if it doesn't.
+     *
+     * @param notification completed when the callback for the conversion arrives, may be {@code null}
+     * @param deadlineMs   time to wait for the notification before polling
+     */
+    CompletableFuture<InputStream> await(String conversionId, String resultLocation, String bucket,
+                                         CompletableFuture<?> notification, long deadlineMs) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new PdfApiClientException("Client is closed"));
+        }
+        PollTask task = new PollTask(conversionId, resultLocation, bucket);
+        outstanding.incrementAndGet();
+        task.future.whenComplete((result, error) -> outstanding.decrementAndGet());
+        if (started.compareAndSet(false, true)) {
+            worker.start();
+        }
+        if (notification != null) {
+            schedule(task, task.startNanos, deadlineMs);
+            notification.thenRun(() -> {
+                task.notifiedNanos = System.nanoTime();
+                expedited.add(task);
+            });
+            return task.future;
+        }
+        ConversionDurationEstimator.Prediction prediction = estimator.predict(bucket);
+        if (prediction == null) {
+            schedule(task, task.startNanos, 0);
+        } else {
+            task.predicted = true;
+            task.deviationMs = prediction.deviationMs;
+            task.nextDelayMs = Math.max(MIN_POLLING_STEP_MS, Math.min(prediction.deviationMs / 2, MAX_POLLING_DELAY_MS));
+            logger.trace("Conversion {} predicted to complete in {}ms", conversionId, prediction.durationMs);
+            schedule(task, task.startNanos, prediction.durationMs);
+        }
+        return task.future;
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    PollingStatistics statistics() {
+        return new PollingStatistics(completed.get(), checks.get(), estimator.getPredictions(), estimator.getHits(),
+                detectionWindows.get(), detectionWindowMillis.get());
+    }
+
+    private void schedule(PollTask task, long fromNanos, long delayMs) {
+        task.deadlineNanos = fromNanos + Math.min(TimeUnit.MILLISECONDS.toNanos(delayMs), MAX_DELAY_NANOS);
+        incoming.add(task);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+        // Closing may have drained the queue since the caller checked; a task the drain took is failed by it
+        if (closed && incoming.remove(task)) {
+            task.future.completeExceptionally(new PdfApiClientException("Client is closed"));
+        }
+    }
+
+    private void run() {
+        startNanos = System.nanoTime();
+        while (!closed) {
+            if (outstanding.get() == 0) {
+                awaitWork();
+                continue;
+            }
+            long nextTickNanos = startNanos + (tick + 1) * TICK_NANOS;
+            long sleep;
+            while ((sleep = nextTickNanos - System.nanoTime()) > 0 && !closed) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (closed) {
+                break;
+            }
+            tick++;
+            try {
+                transferIncoming();
+                dispatch(expire(wheel.get((int) (tick % WHEEL_SIZE))));
+            } catch (RuntimeException e) {
+                logger.error("Polling tick failed", e);
+            }
+        }
+        failOutstanding();
+    }
+
+    /**
+     * Parks until a task is scheduled or the engine closes, then moves the wheel on to the current
+     * time. The ticks passed meanwhile only hold slots of finished tasks, which are dropped later.
+     */
+    private void awaitWork() {
+        idle = true;
+        // Checked again after announcing that the thread parks, so a task scheduled meanwhile unparks it
+        while (outstanding.get() == 0 && incoming.isEmpty() && !closed) {
+            LockSupport.park(this);
+        }
+        idle = false;
+        tick = Math.max(tick, (System.nanoTime() - startNanos) / TICK_NANOS);
+    }
+
+    /**
+     * Places newly scheduled tasks on the wheel, then moves expedited tasks that are still waiting to
+     * the current tick. The slot they leave behind is skipped when its bucket comes round.
+     */
+    private void transferIncoming() {
+        PollTask task;
+        while ((task = incoming.poll()) != null) {
+            if (!task.future.isDone()) {
+                place(task, Math.max(tick, (task.deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS));
+            }
+        }
+        while ((task = expedited.poll()) != null) {
+            if (!task.future.isDone() && task.slot != null && task.slot.dueTick > tick) {
+                place(task, tick);
+            }
+        }
+    }
+
+    private void place(PollTask task, long dueTick) {
+        Slot slot = new Slot(task, dueTick);
+        task.slot = slot;
+        wheel.get((int) (dueTick % WHEEL_SIZE)).add(slot);
+    }
+
+    private List<PollTask> expire(List<Slot> bucket) {
+        List<PollTask> due = new ArrayList<>();
+        for (Iterator<Slot> it = bucket.iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            PollTask task = slot.task;
+            if (task.future.isDone() || task.slot != slot) {
+                it.remove();
+            } else if (slot.dueTick <= tick) {
+                it.remove();
+                task.slot = null;
+                due.add(task);
+            }
+        }
+        return due;
+    }
+
+    private void dispatch(List<PollTask> due) {
+        if (due.isEmpty()) {
+            return;
+        }
+        logger.trace("Dispatching {} status checks", due.size());
+        if (due.size() > 1 && batchStatusSupported) {
+            dispatchBatch(due);
+        } else {
+            due.forEach(this::fetch);
+        }
+    }
+
+    private void dispatchBatch(List<PollTask> due) {
+        Map<String, PollTask> byId = due.stream()
+                .collect(Collectors.toMap(task -> task.conversionId, task -> task, (a, b) -> a));
+        CompletableFuture<Set<String>> status;
+        try {
+            status = batchStatusFetcher.apply(byId.keySet());
+        } catch (RuntimeException e) {
+            status = CompletableFuture.failedFuture(e);
+        }
+        status.whenComplete((finished, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (isUnsupported(cause)) {
+                    logger.info("Batch status checks are not supported by the server, polling individually");
+                    batchStatusSupported = false;
+                } else {
+                    logger.debug("Batch status check failed, polling individually", cause);
+                }
+                due.forEach(this::fetch);
+                return;
+            }
+            long now = System.nanoTime();
+            for (PollTask task : due) {
+                if (finished.contains(task.conversionId)) {
+                    fetch(task);
+                } else {
+                    checks.incrementAndGet();
+                    reschedule(task, -1, now);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return whether the failure is the server's answer that it has no batch status endpoint
+     */
+    private static boolean isUnsupported(Throwable failure) {
+        if (!(failure instanceof PdfApiClientException)) {
+            return false;
+        }
+        int status = ((PdfApiClientException) failure).getStatusCode();
+        return status == 404 || status == 405 || status == 501;
+    }
+
+    private void fetch(PollTask task) {
+        dispatchWindow.acquire().thenRun(() -> {
+            if (task.future.isDone()) {
+                dispatchWindow.release();
+                return;
+            }
+            CompletableFuture<PollResult> result;
+            try {
+                result = resultFetcher.apply(task.resultLocation);
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((poll, error) -> {
+                dispatchWindow.release();
+                checks.incrementAndGet();
+                if (error != null) {
+                    task.future.completeExceptionally(error);
+                } else if (poll.result != null) {
+                    complete(task, poll.result);
+                } else {
+                    reschedule(task, poll.retryAfterMs, System.nanoTime());
+                }
+            });
+        });
+    }
+
+    /**
+     * Feeds the completed conversion's duration to the estimator. The result became ready somewhere
+     * between the last pending check and now; the midpoint of that window is recorded. When the very
+     * first check succeeded the window is assumed to start one expected deviation earlier, which lets
+     * the estimate move down again when conversions get faster.
+     */
+    private void complete(PollTask task, InputStream pdf) {
+        long now = System.nanoTime();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(now - task.startNanos);
+        long windowStartMs;
+        if (task.pendingChecks > 0) {
+            windowStartMs = TimeUnit.NANOSECONDS.toMillis(task.lastPendingNanos - task.startNanos);
+            detectionWindows.incrementAndGet();
+            detectionWindowMillis.addAndGet(elapsedMs - windowStartMs);
+        } else if (task.notifiedNanos != 0) {
+            windowStartMs = TimeUnit.NANOSECONDS.toMillis(task.notifiedNanos - task.startNanos);
+        } else {
+            windowStartMs = task.predicted ? Math.max(0, elapsedMs - task.deviationMs) : 0;
+        }
+        if (task.predicted) {
+            estimator.recordOutcome(task.pendingChecks == 0);
+        }
+        estimator.record(task.bucket, (windowStartMs + elapsedMs) / 2);
+        completed.incrementAndGet();
+        logger.info("Conversion {} completed successfully", task.conversionId);
+        if (!task.future.complete(pdf)) {
+            try {
+                pdf.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close abandoned result of conversion {}", task.conversionId, e);
+            }
+        }
+    }
+
+    /**
+     * @param retryAfterMs delay requested by the server, or a negative value to follow the schedule
+     * @param nowNanos     time of the pending answer; checks answered together stay in the same tick
+     */
+    private void reschedule(PollTask task, long retryAfterMs, long nowNanos) {
+        task.pendingChecks++;
+        task.lastPendingNanos = nowNanos;
+        long delay = retryAfterMs >= 0 ? Math.min(retryAfterMs, maxRetryAfterMs) : task.nextDelayMs;
+        task.nextDelayMs = Math.min((long) (task.nextDelayMs * BACKOFF_MULTIPLIER), MAX_POLLING_DELAY_MS);
+        logger.trace("Conversion {} still in progress, next check in {}ms", task.conversionId, delay);
+        if (closed) {
+            task.future.completeExceptionally(new PdfApiClientException("Client is closed"));
+            return;
+        }
+        schedule(task, nowNanos, delay);
+    }
+
+    private void failOutstanding() {
+        PdfApiClientException closedException = new PdfApiClientException("Client is closed");
+        PollTask task;
+        while ((task = incoming.poll()) != null) {
+            task.future.completeExceptionally(closedException);
+        }
+        for (List<Slot> bucket : wheel) {
+            bucket.forEach(slot -> slot.task.future.completeExceptionally(closedException));
+            bucket.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (started.get()) {
+            LockSupport.unpark(worker);
+        } else {
+            failOutstanding();
+        }
+    }
+
+    private static final class PollTask {
+        private final String conversionId;
+        private final String resultLocation;
+        private final String bucket;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<InputStream> future = new CompletableFuture<>();
+        private long nextDelayMs = INITIAL_POLLING_DELAY_MS;
+        private boolean predicted;
+        private long deviationMs;
+        private int pendingChecks;
+        private long lastPendingNanos;
+        private volatile long notifiedNanos;
+        private long deadlineNanos;
+        private Slot slot;
+
+        PollTask(String conversionId, String resultLocation, String bucket) {
+            this.conversionId = conversionId;
+            this.resultLocation = resultLocation;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Position of a task on the wheel. A task has at most one current slot; slots it was moved away
+     * from are dropped lazily.
+     */
+    private static final class Slot {
+        private final PollTask task;
+        private final long dueTick;
+
+        Slot(PollTask task, long dueTick) {
+            this.task = task;
+            this.dueTick = dueTick;
+        }
+    }
+
+    /**
+     * Outcome of a single status check.
+     */
+    static final class PollResult {
+        private final InputStream result;
+        private final long retryAfterMs;
+
+        private PollResult(InputStream result, long retryAfterMs) {
+            this.result = result;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        static PollResult completed(InputStream result) {
+            return new PollResult(result, -1);
+        }
+
+        /**
+         * @param retryAfterMs delay requested by the server, or a negative value if none was sent
+         */
+        static PollResult pending(long retryAfterMs) {
+            return new PollResult(null, retryAfterMs);
+        }
+    }
+}
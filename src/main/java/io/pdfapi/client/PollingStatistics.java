@@ -0,0 +1,72 @@
+package io.pdfapi.client;
+
+/**
+ * Snapshot of how efficiently a client has been waiting for conversion results.
+ */
+public final class PollingStatistics {
+    private final long completedConversions;
+    private final long statusChecks;
+    private final long predictedConversions;
+    private final long predictionHits;
+    private final long detectionWindows;
+    private final long detectionWindowMillis;
+
+    PollingStatistics(long completedConversions, long statusChecks, long predictedConversions, long predictionHits,
+                      long detectionWindows, long detectionWindowMillis) {
+        this.completedConversions = completedConversions;
+        this.statusChecks = statusChecks;
+        this.predictedConversions = predictedConversions;
+        this.predictionHits = predictionHits;
+        this.detectionWindows = detectionWindows;
+        this.detectionWindowMillis = detectionWindowMillis;
+    }
+
+    public long getCompletedConversions() {
+        return completedConversions;
+    }
+
+    /**
+     * Status checks sent, including those answered as still in progress.
+     */
+    public long getStatusChecks() {
+        return statusChecks;
+    }
+
+    public double getChecksPerConversion() {
+        return completedConversions == 0 ? 0 : (double) statusChecks / completedConversions;
+    }
+
+    /**
+     * Conversions whose first check was scheduled at a predicted completion time.
+     */
+    public long getPredictedConversions() {
+        return predictedConversions;
+    }
+
+    /**
+     * Predicted conversions whose result was ready at the first check.
+     */
+    public long getPredictionHits() {
+        return predictionHits;
+    }
+
+    public double getPredictionHitRate() {
+        return predictedConversions == 0 ? 0 : (double) predictionHits / predictedConversions;
+    }
+
+    /**
+     * Average time between the last check that found a conversion in progress and the check that
+     * found its result, an upper bound of the completion-to-detection latency.
+     */
+    public double getAverageDetectionWindowMillis() {
+        return detectionWindows == 0 ? 0 : (double) detectionWindowMillis / detectionWindows;
+    }
+
+    @Override
+    public String toString() {
+        return "PollingStatistics{completedConversions=" + completedConversions
+                + ", statusChecks=" + statusChecks
+                + ", predictionHitRate=" + getPredictionHitRate()
+                + ", averageDetectionWindowMillis=" + getAverageDetectionWindowMillis() + '}';
+    }
+}
@@ -0,0 +1,51 @@
+package io.pdfapi.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pdfapi.client.model.ConversionProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of conversion properties to their JSON encoding. Applications
+ * typically convert with a handful of distinct property sets, which are then serialized once.
+ * <p>
+ * The cached arrays are shared by all requests with equal properties and must not be modified.
+ */
+final class PropertiesJsonCache {
+    static final int MAX_ENTRIES = 64;
+
+    private final ObjectMapper objectMapper;
+    private final Map<ConversionProperties, byte[]> encoded = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ConversionProperties, byte[]> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    PropertiesJsonCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return UTF-8 encoded JSON of the properties
+     */
+    byte[] serialize(ConversionProperties properties) throws JsonProcessingException {
+        synchronized (this) {
+            byte[] json = encoded.get(properties);
+            if (json != null) {
+                return json;
+            }
+        }
+        byte[] json = objectMapper.writeValueAsBytes(properties);
+        synchronized (this) {
+            encoded.put(properties, json);
+        }
+        return json;
+    }
+
+    synchronized int size() {
+        return encoded.size();
+    }
+}
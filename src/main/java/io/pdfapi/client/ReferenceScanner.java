@@ -0,0 +1,389 @@
+package io.pdfapi.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Finds the resources referenced by HTML or CSS in a single pass over its bytes, without building a
+ * document tree. In HTML these are the {@code src}, {@code srcset}, {@code poster} and {@code data}
+ * attributes, {@code href} of all elements but links to other documents ({@code a} and {@code area}),
+ * and {@code url()} and {@code @import} in {@code style} elements and attributes. The content of
+ * comments, scripts and text areas is skipped.
+ * <p>
+ * References are reported as written, apart from {@code &amp;} entities in attributes; resolving them
+ * is left to the caller. Works on the encoded bytes, which is safe for UTF-8 and all other
+ * ASCII-compatible encodings.
+ */
+final class ReferenceScanner {
+    private static final int BUFFER_SIZE = 8192;
+
+    private ReferenceScanner() {
+    }
+
+    static void scanHtml(InputStream html, Consumer<String> references) throws IOException {
+        scan(html, new HtmlTokenizer(references));
+    }
+
+    static void scanCss(InputStream css, Consumer<String> references) throws IOException {
+        scan(css, new CssTokenizer(references));
+    }
+
+    private static void scan(InputStream in, Tokenizer tokenizer) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (in) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                for (int i = 0; i < n; i++) {
+                    tokenizer.accept(buffer[i]);
+                }
+            }
+        }
+        tokenizer.finish();
+    }
+
+    private interface Tokenizer {
+        void accept(byte b);
+
+        default void finish() {
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+    }
+
+    private static boolean isLetter(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static String text(ByteArrayOutputStream bytes) {
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static final class HtmlTokenizer implements Tokenizer {
+        private enum State {
+            TEXT, TAG_OPEN, MARKUP, COMMENT, SKIP_TAG, TAG_NAME, BEFORE_ATTRIBUTE, ATTRIBUTE_NAME,
+            AFTER_ATTRIBUTE_NAME, BEFORE_VALUE, QUOTED_VALUE, UNQUOTED_VALUE, RAW_TEXT
+        }
+
+        private final Consumer<String> references;
+        private final StringBuilder tagName = new StringBuilder();
+        private final StringBuilder attributeName = new StringBuilder();
+        private final ByteArrayOutputStream value = new ByteArrayOutputStream();
+        private State state = State.TEXT;
+        private byte quote;
+        private int dashes;
+        // Closing tag that ends the raw text of the current script, style or textarea element
+        private String rawEnd;
+        private int rawMatched;
+        private CssTokenizer css;
+
+        HtmlTokenizer(Consumer<String> references) {
+            this.references = references;
+        }
+
+        @Override
+        public void accept(byte b) {
+            switch (state) {
+                case TEXT:
+                    if (b == '<') {
+                        state = State.TAG_OPEN;
+                    }
+                    break;
+                case TAG_OPEN:
+                    if (isLetter(b)) {
+                        tagName.setLength(0);
+                        tagName.append((char) toLowerCase(b));
+                        state = State.TAG_NAME;
+                    } else if (b == '!') {
+                        dashes = 0;
+                        state = State.MARKUP;
+                    } else if (b == '/' || b == '?') {
+                        state = State.SKIP_TAG;
+                    } else {
+                        state = b == '<' ? State.TAG_OPEN : State.TEXT;
+                    }
+                    break;
+                case MARKUP:
+                    if (b == '-' && ++dashes == 2) {
+                        dashes = 0;
+                        state = State.COMMENT;
+                    } else if (b != '-') {
+                        state = b == '>' ? State.TEXT : State.SKIP_TAG;
+                    }
+                    break;
+                case COMMENT:
+                    if (b == '>' && dashes >= 2) {
+                        state = State.TEXT;
+                    }
+                    dashes = b == '-' ? dashes + 1 : 0;
+                    break;
+                case SKIP_TAG:
+                    if (b == '>') {
+                        state = State.TEXT;
+                    }
+                    break;
+                case TAG_NAME:
+                    if (isWhitespace(b) || b == '/') {
+                        state = State.BEFORE_ATTRIBUTE;
+                    } else if (b == '>') {
+                        endTag();
+                    } else {
+                        tagName.append((char) toLowerCase(b));
+                    }
+                    break;
+                case BEFORE_ATTRIBUTE:
+                    if (b == '>') {
+                        endTag();
+                    } else if (!isWhitespace(b) && b != '/') {
+                        startAttribute(b);
+                    }
+                    break;
+                case ATTRIBUTE_NAME:
+                    if (b == '=') {
+                        state = State.BEFORE_VALUE;
+                    } else if (isWhitespace(b)) {
+                        state = State.AFTER_ATTRIBUTE_NAME;
+                    } else if (b == '>') {
+                        endTag();
+                    } else if (b == '/') {
+                        state = State.BEFORE_ATTRIBUTE;
+                    } else {
+                        attributeName.append((char) toLowerCase(b));
+                    }
+                    break;
+                case AFTER_ATTRIBUTE_NAME:
+                    if (b == '=') {
+                        state = State.BEFORE_VALUE;
+                    } else if (b == '>') {
+                        endTag();
+                    } else if (!isWhitespace(b) && b != '/') {
+                        startAttribute(b);
+                    }
+                    break;
+                case BEFORE_VALUE:
+                    value.reset();
+                    if (b == '"' || b == '\'') {
+                        quote = b;
+                        state = State.QUOTED_VALUE;
+                    } else if (b == '>') {
+                        endTag();
+                    } else if (!isWhitespace(b)) {
+                        value.write(b);
+                        state = State.UNQUOTED_VALUE;
+                    }
+                    break;
+                case QUOTED_VALUE:
+                    if (b == quote) {
+                        attribute();
+                        state = State.BEFORE_ATTRIBUTE;
+                    } else {
+                        value.write(b);
+                    }
+                    break;
+                case UNQUOTED_VALUE:
+                    if (isWhitespace(b)) {
+                        attribute();
+                        state = State.BEFORE_ATTRIBUTE;
+                    } else if (b == '>') {
+                        attribute();
+                        endTag();
+                    } else {
+                        value.write(b);
+                    }
+                    break;
+                default:
+                    rawText(b);
+            }
+        }
+
+        private void startAttribute(byte b) {
+            attributeName.setLength(0);
+            attributeName.append((char) toLowerCase(b));
+            state = State.ATTRIBUTE_NAME;
+        }
+
+        private void attribute() {
+            String name = attributeName.toString();
+            String tag = tagName.toString();
+            String text = text(value).replace("&amp;", "&");
+            switch (name) {
+                case "src":
+                case "poster":
+                case "data":
+                    references.accept(text.trim());
+                    break;
+                case "href":
+                case "xlink:href":
+                    if (!tag.equals("a") && !tag.equals("area")) {
+                        references.accept(text.trim());
+                    }
+                    break;
+                case "srcset":
+                    // Candidates are a URL, optionally followed by a descriptor, separated by commas
+                    for (String candidate : text.split(",")) {
+                        String trimmed = candidate.trim();
+                        if (!trimmed.isEmpty()) {
+                            references.accept(trimmed.split("\\s+", 2)[0]);
+                        }
+                    }
+                    break;
+                case "style":
+                    CssTokenizer inline = new CssTokenizer(references);
+                    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                    for (byte b : bytes) {
+                        inline.accept(b);
+                    }
+                    inline.finish();
+                    break;
+                default:
+            }
+        }
+
+        private void endTag() {
+            String tag = tagName.toString();
+            if (tag.equals("style") || tag.equals("script") || tag.equals("textarea")) {
+                rawEnd = "</" + tag;
+                rawMatched = 0;
+                css = tag.equals("style") ? new CssTokenizer(references) : null;
+                state = State.RAW_TEXT;
+            } else {
+                state = State.TEXT;
+            }
+        }
+
+        /**
+         * Passes the content of a style element to the CSS tokenizer, or skips that of a script or
+         * text area, until the closing tag.
+         */
+        private void rawText(byte b) {
+            if (toLowerCase(b) == rawEnd.charAt(rawMatched)) {
+                if (++rawMatched == rawEnd.length()) {
+                    if (css != null) {
+                        css.finish();
+                        css = null;
+                    }
+                    state = State.SKIP_TAG;
+                }
+                return;
+            }
+            if (css != null) {
+                for (int i = 0; i < rawMatched; i++) {
+                    css.accept((byte) rawEnd.charAt(i));
+                }
+            }
+            rawMatched = toLowerCase(b) == '<' ? 1 : 0;
+            if (css != null && rawMatched == 0) {
+                css.accept(b);
+            }
+        }
+    }
+
+    private static final class CssTokenizer implements Tokenizer {
+        private enum State {
+            NORMAL, COMMENT, STRING, URL, URL_STRING, IMPORT
+        }
+
+        private final Consumer<String> references;
+        private final StringBuilder identifier = new StringBuilder();
+        private final ByteArrayOutputStream url = new ByteArrayOutputStream();
+        private State state = State.NORMAL;
+        private byte quote;
+        private byte previous;
+
+        CssTokenizer(Consumer<String> references) {
+            this.references = references;
+        }
+
+        @Override
+        public void accept(byte b) {
+            byte before = previous;
+            previous = b;
+            switch (state) {
+                case NORMAL:
+                    normal(b, before);
+                    break;
+                case COMMENT:
+                    if (b == '/' && before == '*') {
+                        state = State.NORMAL;
+                        previous = 0;
+                    }
+                    break;
+                case STRING:
+                    if (b == quote && before != '\\') {
+                        state = State.NORMAL;
+                    } else if (b == '\\' && before == '\\') {
+                        previous = 0;
+                    }
+                    break;
+                case IMPORT:
+                    if (b == '"' || b == '\'') {
+                        quote = b;
+                        url.reset();
+                        state = State.URL_STRING;
+                    } else if (!isWhitespace(b)) {
+                        state = State.NORMAL;
+                        normal(b, before);
+                    }
+                    break;
+                case URL:
+                    if (b == '"' || b == '\'') {
+                        if (url.size() == 0) {
+                            quote = b;
+                            state = State.URL_STRING;
+                        }
+                    } else if (b == ')') {
+                        emit();
+                        state = State.NORMAL;
+                    } else if (!isWhitespace(b) || url.size() > 0) {
+                        url.write(b);
+                    }
+                    break;
+                default:
+                    if (b == quote) {
+                        emit();
+                        state = State.NORMAL;
+                    } else {
+                        url.write(b);
+                    }
+            }
+        }
+
+        private void normal(byte b, byte before) {
+            if (b == '*' && before == '/') {
+                state = State.COMMENT;
+                previous = 0;
+                identifier.setLength(0);
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+                state = State.STRING;
+                identifier.setLength(0);
+            } else if (b == '(' && identifier.toString().equals("url")) {
+                url.reset();
+                state = State.URL;
+                identifier.setLength(0);
+            } else if (isLetter(b) || b == '-' || b == '@' || b >= '0' && b <= '9') {
+                identifier.append((char) toLowerCase(b));
+            } else {
+                if (identifier.toString().equals("@import") && isWhitespace(b)) {
+                    state = State.IMPORT;
+                }
+                identifier.setLength(0);
+            }
+        }
+
+        private void emit() {
+            String reference = text(url).trim();
+            if (!reference.isEmpty()) {
+                references.accept(reference);
+            }
+            url.reset();
+        }
+    }
+}
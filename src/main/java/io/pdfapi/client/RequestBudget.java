@@ -0,0 +1,30 @@
+package io.pdfapi.client;
+
+/**
+ * Token bucket limiting extra requests (retries, hedges) to a fraction of the regular ones. Every
+ * regular request deposits {@code ratio} tokens, every extra request withdraws a whole token; a
+ * small reserve allows occasional extra requests on a quiet client.
+ */
+final class RequestBudget {
+    private final double ratio;
+    private final double reserve;
+    private double tokens;
+
+    RequestBudget(double ratio, double reserve) {
+        this.ratio = ratio;
+        this.reserve = reserve;
+        this.tokens = reserve;
+    }
+
+    synchronized void deposit() {
+        tokens = Math.min(reserve, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
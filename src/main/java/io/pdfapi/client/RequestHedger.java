@@ -0,0 +1,190 @@
+package io.pdfapi.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of an idempotent request when the first one takes longer than a percentile of
+ * recent latencies, and completes with whichever answers first. Over HTTP/1.1 the first request still
+ * occupies its connection, so the copy goes out on another one. Over HTTP/2, which the JDK, OkHttp and
+ * Apache async adapters negotiate over TLS, the copy is multiplexed onto the same connection: it gets
+ * past a slow server but not past a stalled connection. The answer that loses the race is discarded as
+ * soon as it arrives. Hedges are limited by a budget relative to the number of requests, and timed by
+ * the client's scheduler.
+ */
+final class RequestHedger {
+    private static final Logger logger = LoggerFactory.getLogger(RequestHedger.class);
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_INTERVAL = 16;
+    private static final long MIN_HEDGE_DELAY_MS = 5;
+    private static final double BUDGET_RESERVE = 5;
+
+    private final double percentile;
+    private final RequestBudget budget;
+    private final ScheduledExecutorService scheduler;
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    private int sinceRecompute;
+    private long thresholdMs = -1;
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetRejections = new AtomicLong();
+
+    /**
+     * @param percentile  latency percentile after which a request is hedged, between 0 and 1
+     * @param budgetRatio hedges allowed per request
+     * @param scheduler   sends the hedges once their delay has passed
+     */
+    RequestHedger(double percentile, double budgetRatio, ScheduledExecutorService scheduler) {
+        this.percentile = percentile;
+        this.budget = new RequestBudget(budgetRatio, BUDGET_RESERVE);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param request sends the request, called once or twice
+     * @param discard releases the answer that lost the race
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request, Consumer<? super T> discard) {
+        budget.deposit();
+        long delay = threshold();
+        if (delay < 0) {
+            return send(request);
+        }
+        Race<T> race = new Race<>(discard);
+        race.start(send(request), false);
+        Runnable hedge = () -> {
+            if (!race.shouldHedge()) {
+                return;
+            }
+            if (!budget.tryWithdraw()) {
+                budgetRejections.incrementAndGet();
+                return;
+            }
+            hedges.incrementAndGet();
+            logger.debug("No answer after {}ms, sending hedged request", delay);
+            race.start(send(request), true);
+        };
+        try {
+            ScheduledFuture<?> timer = scheduler.schedule(hedge, delay, TimeUnit.MILLISECONDS);
+            race.result.whenComplete((value, error) -> timer.cancel(false));
+        } catch (RejectedExecutionException e) {
+            // Closing client, the first request decides alone
+        }
+        return race.result;
+    }
+
+    private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((value, error) -> {
+            if (error == null) {
+                record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    private synchronized void record(long latencyMs) {
+        latencies[next] = latencyMs;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        sinceRecompute++;
+    }
+
+    /**
+     * @return current hedging delay, or -1 while there are too few samples
+     */
+    synchronized long threshold() {
+        if (samples < MIN_SAMPLES) {
+            return -1;
+        }
+        if (thresholdMs < 0 || sinceRecompute >= RECOMPUTE_INTERVAL) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(samples - 1, Math.ceil(percentile * samples) - 1);
+            thresholdMs = Math.max(MIN_HEDGE_DELAY_MS, sorted[Math.max(0, index)]);
+            sinceRecompute = 0;
+        }
+        return thresholdMs;
+    }
+
+    HedgingStatistics statistics() {
+        return new HedgingStatistics(hedges.get(), hedgeWins.get(), budgetRejections.get(), threshold());
+    }
+
+    /**
+     * Up to two attempts of the same request. The first success completes the result and any later
+     * success is discarded; the result fails only when every started attempt has failed.
+     */
+    private final class Race<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Consumer<? super T> discard;
+        private int running;
+        private boolean decided;
+        private boolean failed;
+        private Throwable firstError;
+
+        Race(Consumer<? super T> discard) {
+            this.discard = discard;
+        }
+
+        synchronized boolean shouldHedge() {
+            return !decided && !failed;
+        }
+
+        void start(CompletableFuture<T> attempt, boolean hedge) {
+            synchronized (this) {
+                running++;
+            }
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    boolean won;
+                    synchronized (this) {
+                        won = !decided;
+                        decided = true;
+                    }
+                    if (!won) {
+                        discard.accept(value);
+                        return;
+                    }
+                    if (hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    result.complete(value);
+                    return;
+                }
+                Throwable failure;
+                synchronized (this) {
+                    failed = true;
+                    if (firstError == null) {
+                        firstError = error;
+                    }
+                    if (--running > 0 || decided) {
+                        return;
+                    }
+                    decided = true;
+                    failure = firstError;
+                }
+                result.completeExceptionally(failure);
+            });
+        }
+    }
+}
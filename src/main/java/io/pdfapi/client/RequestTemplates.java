@@ -0,0 +1,112 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentEncoding;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parts of the API requests that are the same for every conversion, prepared once per client: the
+ * endpoint URLs and the immutable header maps. The URLs of a conversion's endpoints are built with a
+ * single concatenation of the prepared prefix, the id and the endpoint path.
+ * <p>
+ * Uploads to be compressed get headers with a {@code Content-Encoding}, which tells the HTTP client
+ * adapter to encode the body as it is sent.
+ */
+final class RequestTemplates {
+    static final String HEADER_API_KEY = "Api-Key";
+    static final String HEADER_CALLBACK_URL = "Callback-Url";
+
+    private static final String PATH_CONVERSIONS = "/api/conversions";
+    private static final String PATH_ASSETS = "/assets";
+    private static final String PATH_CONVERT = "/convert";
+
+    /**
+     * Extensions of text assets, which compress well; images, fonts and PDFs are compressed already.
+     */
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS =
+            Set.of("html", "htm", "css", "js", "mjs", "svg", "json", "xml", "txt", "csv");
+
+    private final String conversionsUrl;
+    private final String conversionUrlPrefix;
+    private final String batchStatusUrl;
+    private final Map<String, String> headers;
+    private final Map<String, String> initializationHeaders;
+    private final Map<String, String> compressedHeaders;
+    private final long compressionThresholdBytes;
+
+    /**
+     * @param callbackUrl URL sent with each initialization, {@code null} if callbacks are not used
+     */
+    RequestTemplates(PdfApiClientConfig config, String callbackUrl) {
+        String baseUrl = config.getBaseUrl();
+        this.conversionsUrl = baseUrl + PATH_CONVERSIONS;
+        this.conversionUrlPrefix = conversionsUrl + "/";
+        this.batchStatusUrl = config.getBatchStatusPath() == null ? null : baseUrl + config.getBatchStatusPath();
+
+        Map<String, String> common = new HashMap<>();
+        common.put(HEADER_API_KEY, config.getApiKey());
+        if (config.isAcceptCompressedResponses()) {
+            common.put(ContentEncoding.ACCEPT_HEADER, ContentEncoding.ACCEPTED);
+        }
+        this.headers = Map.copyOf(common);
+        this.initializationHeaders = callbackUrl == null ? headers : with(common, HEADER_CALLBACK_URL, callbackUrl);
+        ContentEncoding compression = config.getRequestCompression();
+        this.compressedHeaders = compression == null ? null : with(common, ContentEncoding.HEADER, compression.token());
+        this.compressionThresholdBytes = config.getCompressionThresholdBytes();
+    }
+
+    private static Map<String, String> with(Map<String, String> headers, String name, String value) {
+        Map<String, String> copy = new HashMap<>(headers);
+        copy.put(name, value);
+        return Map.copyOf(copy);
+    }
+
+    String conversionsUrl() {
+        return conversionsUrl;
+    }
+
+    String assetsUrl(String conversionId) {
+        return conversionUrlPrefix + conversionId + PATH_ASSETS;
+    }
+
+    String convertUrl(String conversionId) {
+        return conversionUrlPrefix + conversionId + PATH_CONVERT;
+    }
+
+    String batchStatusUrl() {
+        return batchStatusUrl;
+    }
+
+    /**
+     * @return headers sent with every request
+     */
+    Map<String, String> headers() {
+        return headers;
+    }
+
+    /**
+     * @param contentLength length of the upload or {@link io.pdfapi.client.http.ContentSource#UNKNOWN_LENGTH}
+     * @return headers of a file upload, which request compression for text files unless they are
+     * known to be smaller than the threshold
+     */
+    Map<String, String> uploadHeaders(String fileName, long contentLength) {
+        if (compressedHeaders == null || contentLength >= 0 && contentLength < compressionThresholdBytes) {
+            return headers;
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || !COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+            return headers;
+        }
+        return compressedHeaders;
+    }
+
+    /**
+     * @return headers sent when a conversion is initialized
+     */
+    Map<String, String> initializationHeaders() {
+        return initializationHeaders;
+    }
+}
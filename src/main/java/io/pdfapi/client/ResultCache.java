@@ -0,0 +1,543 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the PDFs of completed conversions, so that a conversion of the same content is answered
+ * without contacting the API. Set it with {@link PdfApiClientConfig.Builder#resultCache(ResultCache)};
+ * one cache may be shared by several clients.
+ * <p>
+ * Results are keyed by the SHA-256 digest of the API base URL and key of the client, the conversion
+ * properties, the HTML, the file names and contents of all assets and the settings of the request's
+ * {@link AssetOptimizer}, so clients of different accounts or endpoints never see each other's results.
+ * Content that can only be read once is buffered to compute the digest, up to
+ * {@link Builder#maxBufferedContentBytes(long)} per request; requests with more content are converted
+ * without the cache.
+ * <p>
+ * Results are stored as files in a directory, which is size-bounded and evicts the least recently used
+ * results first. Hits are read from memory-mapped files, and the most recently used small results are
+ * also kept on the heap. The directory survives restarts, which keep the order of use, as it is recorded in
+ * the modification time of the files. A result is written while the caller reads it and only stored once
+ * it has been read completely, so abandoned or failed downloads are never returned. Concurrent misses
+ * of the same content are all converted, and the first complete result is kept. The directory must
+ * not be shared by several processes.
+ */
+public final class ResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResultCache.class);
+    private static final String KEY_VERSION = "pdfapi-result/2";
+    private static final String SUFFIX = ".pdf";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern ENTRY = Pattern.compile("[0-9a-f]{64}\\.pdf");
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final long maxHeapBytes;
+    private final long maxHeapEntryBytes;
+    private final long maxBufferedContentBytes;
+    // Sizes of the stored results by key, in order of use
+    private final Map<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, byte[]> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long heapBytes;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ResultCache(Builder builder) {
+        this.directory = builder.directory;
+        this.maxDiskBytes = builder.maxDiskBytes;
+        this.maxHeapBytes = builder.maxHeapBytes;
+        this.maxHeapEntryBytes = builder.maxHeapEntryBytes;
+        this.maxBufferedContentBytes = builder.maxBufferedContentBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Loads the results stored by earlier runs, oldest first, and removes incomplete ones.
+     */
+    private void load() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> entries = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (ENTRY.matcher(name).matches()) {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.isRegularFile()) {
+                        entries.add(file);
+                        attributes.put(file, attrs);
+                    }
+                }
+            }
+        }
+        // Names break ties of coarse modification times, so the order doesn't depend on the directory listing
+        entries.sort(Comparator.comparing((Path file) -> attributes.get(file).lastModifiedTime())
+                .thenComparing(Path::getFileName));
+        synchronized (this) {
+            for (Path file : entries) {
+                String name = file.getFileName().toString();
+                long size = attributes.get(file).size();
+                disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                diskBytes += size;
+            }
+            evict();
+        }
+        logger.debug("Loaded {} cached results with {} bytes from {}", disk.size(), diskBytes, directory);
+    }
+
+    /**
+     * Computes the key of a request, buffering content that can only be read once.
+     *
+     * @param baseUrl base URL of the API the client converts with
+     * @param apiKey  API key of the client
+     * @return the key, {@code null} if content exceeded the buffering limit, and the request with
+     * content that can be read again
+     */
+    Keyed key(String baseUrl, String apiKey, ConversionRequest request, byte[] propertiesJson) throws IOException {
+        MessageDigest digest = ContentDigest.newDigest();
+        update(digest, KEY_VERSION);
+        update(digest, baseUrl);
+        update(digest, apiKey);
+        digest.update(propertiesJson);
+        digest.update((byte) 0);
+        if (request.getAssetOptimizer() != null) {
+            update(digest, request.getAssetOptimizer().fingerprint());
+        }
+
+        boolean complete = true;
+        long bufferable = maxBufferedContentBytes;
+        ContentSource html = request.getHtmlSource();
+        if (!html.isReplayable()) {
+            DigestedContent content = DigestedContent.read(html.openStream(), bufferable);
+            complete = content.isDigested();
+            bufferable -= content.length();
+            html = content.toSource();
+        }
+        List<ConversionRequest.AssetInput> assets = new ArrayList<>(request.getAssets().size());
+        for (ConversionRequest.AssetInput asset : request.getAssets()) {
+            if (asset.getSource().isReplayable() || !complete) {
+                assets.add(asset);
+            } else {
+                DigestedContent content = DigestedContent.read(asset.getSource().openStream(), bufferable);
+                complete = content.isDigested();
+                bufferable -= content.length();
+                assets.add(new ConversionRequest.AssetInput(content.toSource(), asset.getFileName()));
+            }
+        }
+        ConversionRequest replayable = html == request.getHtmlSource() && assets.equals(request.getAssets())
+                ? request : request.withSources(html, assets);
+        if (!complete) {
+            return new Keyed(null, replayable);
+        }
+
+        update(digest, ContentDigest.digest(html));
+        // Assets are uploaded in parallel, so their order doesn't affect the result
+        List<String> files = new ArrayList<>(assets.size());
+        for (ConversionRequest.AssetInput asset : assets) {
+            files.add(asset.getFileName() + '\0' + ContentDigest.digest(asset.getSource()));
+        }
+        files.sort(null);
+        for (String file : files) {
+            update(digest, file);
+        }
+        return new Keyed(ContentDigest.toHex(digest.digest()), replayable);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return the stored result, or {@code null} if there is none or it could not be read
+     */
+    InputStream get(String key) {
+        byte[] cached;
+        synchronized (this) {
+            cached = heap.get(key);
+            if (disk.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        Path file = file(key);
+        touch(file);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return new ByteArrayInputStream(cached);
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            if (!(e instanceof NoSuchFileException)) {
+                logger.warn("Failed to read cached result {}, converting again", file, e);
+            }
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        if (mapped.capacity() <= maxHeapEntryBytes) {
+            byte[] bytes = new byte[mapped.capacity()];
+            mapped.get(bytes);
+            putHeap(key, bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+        try {
+            return ContentSource.ofByteBuffer(mapped).openStream();
+        } catch (IOException e) {
+            throw new IllegalStateException("Buffers are always readable", e);
+        }
+    }
+
+    /**
+     * @return stream of the result that stores it once it has been read to the end and closed
+     */
+    InputStream store(String key, InputStream result) {
+        return new StoringInputStream(key, result);
+    }
+
+    /**
+     * Records the use of a result in its modification time, which orders the results after a restart.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.trace("Failed to update modification time of {}", file, e);
+        }
+    }
+
+    private void commit(String key, Path temp, long size) throws IOException {
+        synchronized (this) {
+            if (size <= maxDiskBytes && !disk.containsKey(key)) {
+                Files.move(temp, file(key), StandardCopyOption.ATOMIC_MOVE);
+                disk.put(key, size);
+                diskBytes += size;
+                evict();
+                return;
+            }
+        }
+        Files.deleteIfExists(temp);
+    }
+
+    private synchronized void putHeap(String key, byte[] bytes) {
+        if (bytes.length > maxHeapBytes || !disk.containsKey(key)) {
+            return;
+        }
+        byte[] previous = heap.put(key, bytes);
+        heapBytes += bytes.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> eldest = heap.values().iterator();
+        while (heapBytes > maxHeapBytes) {
+            heapBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long size = disk.remove(key);
+        if (size != null) {
+            diskBytes -= size;
+        }
+        byte[] bytes = heap.remove(key);
+        if (bytes != null) {
+            heapBytes -= bytes.length;
+        }
+    }
+
+    /**
+     * Deletes the least recently used results until the directory is within its limit. Results being
+     * read from a mapped file stay readable until they are closed.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            diskBytes -= entry.getValue();
+            byte[] bytes = heap.remove(entry.getKey());
+            if (bytes != null) {
+                heapBytes -= bytes.length;
+            }
+            try {
+                Files.deleteIfExists(file(entry.getKey()));
+            } catch (IOException e) {
+                // Deleted on the next start at the latest, as it is no longer counted
+                logger.warn("Failed to delete evicted result {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    synchronized int entries() {
+        return disk.size();
+    }
+
+    synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    long memoryHits() {
+        return memoryHits.get();
+    }
+
+    long diskHits() {
+        return diskHits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Key of a request, {@code null} if it can't be cached, and the request to convert on a miss.
+     */
+    static final class Keyed {
+        final String key;
+        final ConversionRequest request;
+
+        Keyed(String key, ConversionRequest request) {
+            this.key = key;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Copies the result to a temporary file in the cache directory as it is read, and moves it into
+     * place when it has been read completely. Failures to write the copy only cost the caching.
+     */
+    private final class StoringInputStream extends FilterInputStream {
+        private final String key;
+        private Path temp;
+        private OutputStream copy;
+        private long size;
+        private boolean complete;
+        private boolean abandoned;
+
+        StoringInputStream(String key, InputStream result) {
+            super(result);
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                complete = true;
+            } else if (open()) {
+                try {
+                    copy.write(b);
+                    if (++size > maxDiskBytes) {
+                        abandon(null);
+                    }
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                complete = true;
+            } else if (n > 0 && open()) {
+                try {
+                    copy.write(b, off, n);
+                    size += n;
+                    if (size > maxDiskBytes) {
+                        abandon(null);
+                    }
+                } catch (IOException e) {
+                    abandon(e);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes can't be copied
+            abandon(null);
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private boolean open() {
+            if (abandoned) {
+                return false;
+            }
+            if (copy == null) {
+                try {
+                    temp = Files.createTempFile(directory, key.substring(0, 16), TEMP_SUFFIX);
+                    copy = Files.newOutputStream(temp);
+                } catch (IOException e) {
+                    abandon(e);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void abandon(IOException error) {
+            if (abandoned) {
+                return;
+            }
+            abandoned = true;
+            if (error != null) {
+                logger.warn("Failed to cache result {}", key, error);
+            }
+            try {
+                if (copy != null) {
+                    copy.close();
+                }
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to delete incomplete result {}", temp, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (complete && open()) {
+                    try {
+                        copy.close();
+                        commit(key, temp, size);
+                        abandoned = true;
+                    } catch (IOException e) {
+                        abandon(e);
+                    }
+                } else {
+                    abandon(null);
+                }
+            }
+        }
+    }
+
+    public static class Builder {
+        private Path directory;
+        private long maxDiskBytes = 1024L * 1024 * 1024;
+        private long maxHeapBytes = 16 * 1024 * 1024;
+        private long maxHeapEntryBytes = 512 * 1024;
+        private long maxBufferedContentBytes = 32 * 1024 * 1024;
+
+        /**
+         * Directory the results are stored in, created if it doesn't exist. Required.
+         */
+        public Builder directory(Path directory) {
+            this.directory = Objects.requireNonNull(directory, "Directory must not be null");
+            return this;
+        }
+
+        /**
+         * Total size of the stored results. Defaults to 1 GiB.
+         */
+        public Builder maxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        /**
+         * Total size of the results kept on the heap, 0 to read all hits from disk. Defaults to 16 MiB.
+         */
+        public Builder maxHeapBytes(long maxHeapBytes) {
+            this.maxHeapBytes = maxHeapBytes;
+            return this;
+        }
+
+        /**
+         * Larger results are only read from disk. Defaults to 512 KiB.
+         */
+        public Builder maxHeapEntryBytes(long maxHeapEntryBytes) {
+            this.maxHeapEntryBytes = maxHeapEntryBytes;
+            return this;
+        }
+
+        /**
+         * HTML and assets that can only be read once are buffered up to this size in total per request
+         * to compute the key; requests with more content are converted without the cache. Defaults to
+         * 32 MiB.
+         */
+        public Builder maxBufferedContentBytes(long maxBufferedContentBytes) {
+            this.maxBufferedContentBytes = maxBufferedContentBytes;
+            return this;
+        }
+
+        /**
+         * Opens the directory and loads the results stored in it.
+         *
+         * @throws PdfApiClientException if the directory can't be created or read
+         */
+        public ResultCache build() {
+            if (directory == null) {
+                throw new IllegalStateException("Directory must be provided");
+            }
+            if (maxDiskBytes <= 0) {
+                throw new IllegalStateException("Maximum disk size must be positive");
+            }
+            if (maxHeapBytes < 0 || maxHeapEntryBytes < 0 || maxHeapEntryBytes > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Heap limits must not be negative and entries must fit into an array");
+            }
+            if (maxBufferedContentBytes <= 0 || maxBufferedContentBytes > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Maximum buffered content size must be positive and fit into an array");
+            }
+            ResultCache cache = new ResultCache(this);
+            try {
+                cache.load();
+            } catch (IOException e) {
+                throw new PdfApiClientException("Failed to open result cache in " + directory, e);
+            }
+            return cache;
+        }
+    }
+}
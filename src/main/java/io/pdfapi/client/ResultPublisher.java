@@ -0,0 +1,250 @@
+package io.pdfapi.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the result of one conversion as byte buffers. The conversion starts with the first
+ * request of its single subscriber, and the result is read only as far as the subscriber has
+ * signalled demand, so a slow consumer holds back the download instead of buffering it.
+ * <p>
+ * A result the HTTP client can publish, see {@link Publishable}, is passed on as the client
+ * receives it, with the subscriber's demand forwarded to the connection. Other results, such as those
+ * answered from the result cache, are read as streams on the given executor, never on the threads of
+ * the subscriber.
+ */
+final class ResultPublisher implements Flow.Publisher<ByteBuffer> {
+    private static final Logger logger = LoggerFactory.getLogger(ResultPublisher.class);
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Supplier<CompletableFuture<InputStream>> conversion;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Result stream that can instead be published as the buffers the HTTP client receives, so that no
+     * thread waits on the stream.
+     */
+    interface Publishable {
+        /**
+         * @return publisher of the unread result, which is then no longer read as a stream, or
+         * {@code null} if the result is only available as a stream
+         */
+        Flow.Publisher<ByteBuffer> publisher();
+    }
+
+    ResultPublisher(Supplier<CompletableFuture<InputStream>> conversion, Executor executor) {
+        this.conversion = conversion;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Conversion result can only be subscribed once"));
+            return;
+        }
+        subscriber.onSubscribe(new ResultSubscription(subscriber));
+    }
+
+    private final class ResultSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile InputStream result;
+        private volatile Flow.Subscription upstream;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean done;
+        private boolean released;
+
+        ResultSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription published = upstream;
+            if (published != null) {
+                published.request(n);
+                return;
+            }
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " buffers, demand must be positive");
+                drain();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (started.compareAndSet(false, true)) {
+                conversion.get().whenComplete((stream, failure) -> {
+                    Flow.Publisher<ByteBuffer> body = null;
+                    if (failure != null) {
+                        error = RetryExecutor.unwrap(failure);
+                    } else if (stream instanceof Publishable && !cancelled) {
+                        body = ((Publishable) stream).publisher();
+                    }
+                    if (body != null) {
+                        body.subscribe(new Forwarder());
+                        return;
+                    }
+                    result = stream;
+                    drain();
+                });
+            }
+            forwardDemand();
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Flow.Subscription published = upstream;
+            if (published != null) {
+                published.cancel();
+                return;
+            }
+            drain();
+        }
+
+        /**
+         * Hands demand signalled before the result was published on to its subscription; whichever of
+         * this and {@link Forwarder#onSubscribe} runs last takes it.
+         */
+        private void forwardDemand() {
+            Flow.Subscription published = upstream;
+            if (published != null) {
+                long n = demand.getAndSet(0);
+                if (n > 0) {
+                    published.request(n);
+                }
+            }
+        }
+
+        /**
+         * Schedules {@link #emit()} unless it is already scheduled; signals arriving meanwhile make it
+         * run again, so the subscriber is never called concurrently.
+         */
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    int missed = 1;
+                    do {
+                        emit();
+                        missed = pending.addAndGet(-missed);
+                    } while (missed != 0);
+                });
+            } catch (RejectedExecutionException e) {
+                pending.set(0);
+                if (!cancelled && !done) {
+                    done = true;
+                    subscriber.onError(e);
+                }
+                release(result);
+            }
+        }
+
+        private void emit() {
+            InputStream stream = result;
+            if (!done && !cancelled) {
+                if (error != null) {
+                    done = true;
+                    subscriber.onError(error);
+                } else if (stream != null) {
+                    read(stream);
+                }
+            }
+            if (done || cancelled) {
+                // Also releases a result that arrives after cancellation
+                release(stream);
+            }
+        }
+
+        private void read(InputStream stream) {
+            try {
+                while (demand.get() > 0 && !cancelled) {
+                    byte[] chunk = new byte[CHUNK_SIZE];
+                    int read = stream.read(chunk);
+                    if (read < 0) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(ByteBuffer.wrap(chunk, 0, read));
+                }
+            } catch (IOException e) {
+                done = true;
+                subscriber.onError(new PdfApiClientException("Failed to read PDF content", e));
+            }
+        }
+
+        /**
+         * Passes the published result on; the publisher signals it serially.
+         */
+        private final class Forwarder implements Flow.Subscriber<ByteBuffer> {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                upstream = subscription;
+                if (cancelled) {
+                    subscription.cancel();
+                    return;
+                }
+                forwardDemand();
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                subscriber.onNext(buffer);
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                subscriber.onError(failure);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        }
+
+        private void release(InputStream stream) {
+            if (stream == null || released) {
+                return;
+            }
+            released = true;
+            try {
+                stream.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close conversion result", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.RetryStatistics.FailureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries single stages of a conversion after transient failures. Which failures are retried
+ * depends on whether repeating the stage is safe: requests that create something on the server are
+ * only repeated when they certainly weren't processed (connection refused, 429), the others also
+ * after timeouts and 5xx answers. Uploads are only repeated when their content can be read again.
+ * <p>
+ * Retries wait with full jitter and are limited by a client-wide budget: every request adds a
+ * fraction of a token, every retry takes a whole one, so during an outage retries add at most that
+ * fraction of extra load. The delays are timed by the client's scheduler, which only starts the
+ * next attempt; retries pending when the client is closed fail with the closed HTTP client.
+ */
+final class RetryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RetryExecutor.class);
+    private static final double BUDGET_RESERVE = 10;
+
+    /**
+     * Stages of a conversion, by whether they may be repeated after an ambiguous failure.
+     */
+    enum Stage {
+        INITIALIZE(false),
+        UPLOAD(true),
+        CONVERT(false),
+        RESULT(true);
+
+        private final boolean idempotent;
+
+        Stage(boolean idempotent) {
+            this.idempotent = idempotent;
+        }
+
+        boolean allows(FailureType failure) {
+            return idempotent || failure == FailureType.CONNECT || failure == FailureType.THROTTLED;
+        }
+    }
+
+    private final int maxRetries;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final long maxRetryAfterMs;
+    private final RequestBudget budget;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong budgetRejections = new AtomicLong();
+    private final Map<FailureType, AtomicLong> retriesByType = new EnumMap<>(FailureType.class);
+
+    /**
+     * @param maxRetryAfterMs longest {@code Retry-After} delay waited for
+     * @param scheduler       times the delays between attempts
+     */
+    RetryExecutor(int maxRetries, long baseDelayMs, long maxDelayMs, long maxRetryAfterMs, double budgetRatio,
+                  ScheduledExecutorService scheduler) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.maxRetryAfterMs = maxRetryAfterMs;
+        this.budget = new RequestBudget(budgetRatio, BUDGET_RESERVE);
+        this.scheduler = scheduler;
+        for (FailureType type : FailureType.values()) {
+            retriesByType.put(type, new AtomicLong());
+        }
+    }
+
+    /**
+     * @param stage      stage performed by the request
+     * @param operation  description for log messages
+     * @param replayable whether the request body can be sent again
+     * @param request    sends the request, called once per attempt
+     */
+    <T> CompletableFuture<T> execute(Stage stage, String operation, boolean replayable,
+                                     Supplier<CompletableFuture<T>> request) {
+        budget.deposit();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(stage, operation, replayable, request, 0, result);
+        return result;
+    }
+
+    private <T> void attempt(Stage stage, String operation, boolean replayable, Supplier<CompletableFuture<T>> request,
+                             int attempt, CompletableFuture<T> result) {
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            FailureType failure = classify(cause);
+            if (failure == null || !stage.allows(failure) || !replayable) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (attempt >= maxRetries) {
+                if (maxRetries > 0) {
+                    exhausted.incrementAndGet();
+                    logger.warn("{} failed after {} attempts", operation, attempt + 1);
+                }
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (!budget.tryWithdraw()) {
+                budgetRejections.incrementAndGet();
+                logger.warn("{} failed ({}), retry budget exhausted", operation, failure);
+                result.completeExceptionally(cause);
+                return;
+            }
+            retries.incrementAndGet();
+            retriesByType.get(failure).incrementAndGet();
+            long delay = delay(attempt, cause);
+            logger.info("{} failed ({}), retrying in {}ms", operation, failure, delay);
+            try {
+                scheduler.schedule(() -> attempt(stage, operation, replayable, request, attempt + 1, result),
+                        delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new PdfApiClientException("Client is closed", cause));
+            }
+        });
+    }
+
+    /**
+     * Full jitter over an exponentially growing window; a {@code Retry-After} sent by the server,
+     * up to its limit, is the lower bound.
+     */
+    private long delay(int attempt, Throwable cause) {
+        long window = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20));
+        long delay = ThreadLocalRandom.current().nextLong(window + 1);
+        if (cause instanceof PdfApiClientException) {
+            delay = Math.max(delay, Math.min(maxRetryAfterMs, ((PdfApiClientException) cause).getRetryAfterMillis()));
+        }
+        return delay;
+    }
+
+    /**
+     * @return type of a transient failure, or {@code null} if the failure is not worth retrying
+     */
+    static FailureType classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof PdfApiClientException) {
+                int status = ((PdfApiClientException) t).getStatusCode();
+                if (status == 429) {
+                    return FailureType.THROTTLED;
+                }
+                if (status >= 500 && status < 600) {
+                    return FailureType.SERVER_ERROR;
+                }
+            }
+            if (t instanceof ConnectException || t instanceof UnknownHostException
+                    || t instanceof NoRouteToHostException || t instanceof HttpConnectTimeoutException) {
+                return FailureType.CONNECT;
+            }
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException
+                    || t instanceof InterruptedIOException || t instanceof HttpTimeoutException) {
+                return FailureType.TIMEOUT;
+            }
+        }
+        return null;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    RetryStatistics statistics() {
+        Map<FailureType, Long> byType = new EnumMap<>(FailureType.class);
+        retriesByType.forEach((type, count) -> byType.put(type, count.get()));
+        return new RetryStatistics(retries.get(), exhausted.get(), budgetRejections.get(), byType);
+    }
+}
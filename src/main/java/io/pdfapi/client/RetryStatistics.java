@@ -0,0 +1,69 @@
+package io.pdfapi.client;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Snapshot of the retries performed by a client.
+ */
+public final class RetryStatistics {
+    /**
+     * Transient failures the client retries.
+     */
+    public enum FailureType {
+        /** The connection could not be established, the request never reached the server. */
+        CONNECT,
+        /** The request timed out, it may or may not have been processed. */
+        TIMEOUT,
+        /** The server answered with a 5xx status. */
+        SERVER_ERROR,
+        /** The server answered 429 Too Many Requests. */
+        THROTTLED
+    }
+
+    private final long retries;
+    private final long exhausted;
+    private final long budgetRejections;
+    private final Map<FailureType, Long> retriesByType;
+
+    RetryStatistics(long retries, long exhausted, long budgetRejections, Map<FailureType, Long> retriesByType) {
+        this.retries = retries;
+        this.exhausted = exhausted;
+        this.budgetRejections = budgetRejections;
+        this.retriesByType = Collections.unmodifiableMap(new EnumMap<>(retriesByType));
+    }
+
+    /**
+     * Attempts repeated after a transient failure.
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Requests that failed after using up all their attempts.
+     */
+    public long getExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Retries not attempted because the client-wide retry budget was used up.
+     */
+    public long getBudgetRejections() {
+        return budgetRejections;
+    }
+
+    public Map<FailureType, Long> getRetriesByType() {
+        return retriesByType;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryStatistics{retries=" + retries
+                + ", exhausted=" + exhausted
+                + ", budgetRejections=" + budgetRejections
+                + ", retriesByType=" + retriesByType + '}';
+    }
+}
@@ -0,0 +1,15 @@
+package io.pdfapi.client.callback;
+
+/**
+ * Receives completion notifications from a {@link CallbackReceiver}.
+ */
+@FunctionalInterface
+public interface CallbackListener {
+    /**
+     * Called when the server reports that a conversion is no longer in progress, whether it
+     * succeeded or failed. The client fetches the result as usual.
+     *
+     * @param conversionId id of the finished conversion
+     */
+    void onConversionFinished(String conversionId);
+}
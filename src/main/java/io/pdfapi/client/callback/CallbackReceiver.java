@@ -0,0 +1,26 @@
+package io.pdfapi.client.callback;
+
+import java.io.IOException;
+
+/**
+ * Endpoint on which the client receives conversion completion callbacks from the server. The URL
+ * returned by {@link #start(CallbackListener)} is registered with every conversion; it must be
+ * reachable from the pdfapi.dev servers.
+ *
+ * @see HttpServerCallbackReceiver
+ */
+public interface CallbackReceiver extends AutoCloseable {
+    /**
+     * Starts accepting callbacks. Called once when the client is created.
+     *
+     * @param listener notified for every callback received
+     * @return URL the server should send callbacks to
+     */
+    String start(CallbackListener listener) throws IOException;
+
+    /**
+     * Stops accepting callbacks. Called when the client is closed.
+     */
+    @Override
+    void close();
+}
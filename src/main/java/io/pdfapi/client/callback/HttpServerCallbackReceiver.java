@@ -0,0 +1,131 @@
+package io.pdfapi.client.callback;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+
+/**
+ * {@link CallbackReceiver} backed by the JDK's embedded HTTP server. Callbacks are accepted as
+ * {@code POST} requests with a JSON body {@code {"id":"<conversion id>"}} on a path containing a
+ * random token, so notifications can't be forged by anyone who doesn't know the registered URL.
+ */
+public class HttpServerCallbackReceiver implements CallbackReceiver {
+    private static final Logger logger = LoggerFactory.getLogger(HttpServerCallbackReceiver.class);
+    private static final String PATH_PREFIX = "/pdfapi-callback/";
+
+    private final InetSocketAddress bindAddress;
+    private final String publicUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+
+    /**
+     * Listens on the given port of all interfaces.
+     *
+     * @param publicUrl base URL under which the server reaches this listener
+     */
+    public HttpServerCallbackReceiver(int port, String publicUrl) {
+        this(new InetSocketAddress(port), publicUrl);
+    }
+
+    /**
+     * @param bindAddress address to listen on, port 0 picks a free port
+     * @param publicUrl   base URL under which the server reaches this listener, for example behind a
+     *                    proxy or port mapping; {@code null} to derive it from the bind address, which
+     *                    then can't be the wildcard address
+     */
+    public HttpServerCallbackReceiver(InetSocketAddress bindAddress, String publicUrl) {
+        if (publicUrl == null && (bindAddress.getAddress() == null || bindAddress.getAddress().isAnyLocalAddress())) {
+            // The local host name may resolve to any interface, or to loopback, so the server can't be sent there
+            throw new IllegalArgumentException("A public URL is required when listening on all interfaces");
+        }
+        this.bindAddress = bindAddress;
+        this.publicUrl = publicUrl;
+    }
+
+    @Override
+    public synchronized String start(CallbackListener listener) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Callback receiver already started");
+        }
+        String path = PATH_PREFIX + newToken();
+        server = HttpServer.create(bindAddress, 0);
+        server.createContext(path, exchange -> handle(exchange, path, listener));
+        server.start();
+
+        String baseUrl = publicUrl != null ? stripTrailingSlash(publicUrl) : localUrl();
+        // The path stays out of the log, its token is what keeps callbacks from being forged
+        logger.info("Listening for conversion callbacks on port {}, registered under {}",
+                server.getAddress().getPort(), baseUrl);
+        return baseUrl + path;
+    }
+
+    private void handle(HttpExchange exchange, String path, CallbackListener listener) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            if (!path.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode id;
+            try {
+                id = objectMapper.readTree(body).get("id");
+            } catch (IOException e) {
+                id = null;
+            }
+            if (id == null || !id.isTextual()) {
+                logger.warn("Ignoring callback without conversion id");
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            logger.debug("Received callback for conversion {}", id.asText());
+            listener.onConversionFinished(id.asText());
+            exchange.sendResponseHeaders(204, -1);
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle conversion callback", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String localUrl() {
+        String host = bindAddress.getAddress().getHostAddress();
+        if (host.contains(":")) {
+            host = "[" + host + "]";
+        }
+        return "http://" + host + ":" + server.getAddress().getPort();
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static String newToken() {
+        byte[] token = new byte[16];
+        new SecureRandom().nextBytes(token);
+        StringBuilder hex = new StringBuilder(token.length * 2);
+        for (byte b : token) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package io.pdfapi.client.http;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public abstract class AbstractHttpClient implements HttpClient {
     protected abstract CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody);
     protected abstract CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName, InputStream content, String contentType, String partName);
+    protected abstract CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName, ContentSource content, String contentType, String partName);
     protected abstract CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers);
     protected abstract void closeInternal();
 
+    /**
+     * Sends an encoded JSON body. The default decodes it for the {@code String} variant, adapters
+     * override it to write the bytes unchanged.
+     */
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
+        return executePost(url, headers, new String(jsonBody, StandardCharsets.UTF_8));
+    }
+
     @Override
     public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String jsonBody) {
         return executePost(url, headers, jsonBody)
@@ -18,6 +28,14 @@ public abstract class AbstractHttpClient implements HttpClient {
             });
     }
 
+    @Override
+    public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, byte[] jsonBody) {
+        return executePost(url, headers, jsonBody)
+            .exceptionally(e -> {
+                throw new RuntimeException("Failed to execute POST request", e);
+            });
+    }
+
     @Override
     public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String fileName, InputStream content, String contentType, String partName) {
         return executePost(url, headers, fileName, content, contentType, partName)
@@ -26,6 +44,14 @@ public abstract class AbstractHttpClient implements HttpClient {
             });
     }
 
+    @Override
+    public CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String fileName, ContentSource content, String contentType, String partName) {
+        return executePost(url, headers, fileName, content, contentType, partName)
+            .exceptionally(e -> {
+                throw new RuntimeException("Failed to execute POST request with file", e);
+            });
+    }
+
     @Override
     public CompletableFuture<HttpResponse> get(String url, Map<String, String> headers) {
         return executeGet(url, headers)
@@ -0,0 +1,652 @@
+package io.pdfapi.client.http;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Adapter for the non-blocking Apache HttpAsyncClient 5. Requests are multiplexed over a few I/O
+ * reactor threads instead of holding a thread each, and HTTP/2 is negotiated over TLS. Uploads are
+ * produced from their source as the connection accepts data, and response bodies are streamed or
+ * published to the caller with flow control, so a slow reader pauses the connection rather than
+ * buffering the whole body.
+ * <p>
+ * Responses are handed over on a separate executor: the caller typically reads the body right
+ * away, which would block the I/O reactor that has to deliver it.
+ */
+public class ApacheAsyncHttpClient extends AbstractHttpClient {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CloseableHttpAsyncClient client;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    public ApacheAsyncHttpClient(int timeoutSeconds) {
+        this(timeoutSeconds, ConnectionSettings.DEFAULTS);
+    }
+
+    /**
+     * Pools up to the configured number of connections and closes those idle for longer than the
+     * keep-alive period.
+     */
+    public ApacheAsyncHttpClient(int timeoutSeconds, ConnectionSettings connections) {
+        this.ownedExecutor = BlockingExecutors.create(BlockingExecutors.DEFAULT_MAX_THREADS, BlockingExecutors.UNBOUNDED_QUEUE);
+        this.executor = ownedExecutor;
+        Timeout timeout = Timeout.ofSeconds(timeoutSeconds);
+        this.client = HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(connections.getMaxConnections())
+                        .setMaxConnPerRoute(connections.getMaxConnections())
+                        .setTlsStrategy(ClientTlsStrategyBuilder.create()
+                                .setSslContext(connections.sslContext())
+                                .build())
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(timeout)
+                                .setSocketTimeout(timeout)
+                                .build())
+                        .setDefaultTlsConfig(TlsConfig.custom()
+                                .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                                .build())
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(connections.getKeepAliveSeconds()))
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setSoTimeout(timeout)
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(timeout)
+                        .build())
+                .build();
+        this.client.start();
+    }
+
+    /**
+     * Uses a pre-configured client, which is started if necessary and closed with this adapter.
+     */
+    public ApacheAsyncHttpClient(CloseableHttpAsyncClient client) {
+        this(client, BlockingExecutors.create(BlockingExecutors.DEFAULT_MAX_THREADS, BlockingExecutors.UNBOUNDED_QUEUE), true);
+    }
+
+    /**
+     * Uses a pre-configured client, which is started if necessary and closed with this adapter.
+     *
+     * @param executor completes the returned futures, must not run tasks on the calling thread; it is
+     *                 not shut down with this adapter
+     */
+    public ApacheAsyncHttpClient(CloseableHttpAsyncClient client, Executor executor) {
+        this(client, executor, false);
+    }
+
+    private ApacheAsyncHttpClient(CloseableHttpAsyncClient client, Executor executor, boolean ownsExecutor) {
+        this.client = client;
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.client.start();
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
+        return execute(AsyncRequestBuilder.post(url),
+                headers, AsyncEntityProducers.create(jsonBody, ContentType.APPLICATION_JSON));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          InputStream content, String contentType, String partName) {
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
+        return execute(AsyncRequestBuilder.post(url), headers,
+                new MultipartEntityProducer(MultipartBody.of(partName, fileName, contentType, content),
+                        ContentEncoding.forRequest(headers), executor));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers) {
+        return execute(AsyncRequestBuilder.get(url), headers, null);
+    }
+
+    private CompletableFuture<HttpResponse> execute(AsyncRequestBuilder builder, Map<String, String> headers,
+                                                    AsyncEntityProducer entity) {
+        headers.forEach(builder::addHeader);
+        AsyncRequestProducer request = builder.setEntity(entity).build();
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        client.execute(request, new StreamingResponseConsumer(this, future), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                // handed over by the consumer when the response head arrived
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (!future.isDone()) {
+                    handOver(future, () -> future.completeExceptionally(e), null);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    private void handOver(CompletableFuture<HttpResponse> future, Runnable completion, HttpResponse response) {
+        try {
+            executor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            if (response != null) {
+                response.close();
+            }
+            future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    protected void closeInternal() {
+        client.close(CloseMode.GRACEFUL);
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Hands the response over as soon as its head arrives and feeds the body into a buffer read by
+     * the caller, as a stream or through a publisher. Capacity is granted as the caller reads, which
+     * pauses the connection while the buffer is full. The exchange itself only completes at the end
+     * of the body.
+     */
+    private static final class StreamingResponseConsumer implements AsyncResponseConsumer<HttpResponse> {
+        private final ApacheAsyncHttpClient adapter;
+        private final CompletableFuture<HttpResponse> future;
+        private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+        private final BodyStream body = new BodyStream(buffer);
+        private final BodyPublisher publisher = new BodyPublisher();
+        private volatile CapacityChannel capacityChannel;
+        private volatile HttpResponse response;
+        private volatile FutureCallback<HttpResponse> resultCallback;
+
+        StreamingResponseConsumer(ApacheAsyncHttpClient adapter, CompletableFuture<HttpResponse> future) {
+            this.adapter = adapter;
+            this.future = future;
+        }
+
+        @Override
+        public void consumeResponse(org.apache.hc.core5.http.HttpResponse response, EntityDetails entityDetails,
+                                    HttpContext context, FutureCallback<HttpResponse> resultCallback) {
+            Map<String, List<String>> headers = Arrays.stream(response.getHeaders())
+                    .collect(Collectors.groupingBy(Header::getName,
+                            Collectors.mapping(Header::getValue, Collectors.toList())));
+            HttpResponse result = entityDetails == null
+                    ? new StreamingHttpResponse(response.getCode(), (InputStream) null, null, headers)
+                    : new StreamingHttpResponse(response.getCode(), () -> body, publisher, null, headers);
+            adapter.handOver(future, () -> future.complete(result), result);
+            if (entityDetails == null) {
+                resultCallback.completed(result);
+            } else {
+                this.response = result;
+                this.resultCallback = resultCallback;
+            }
+        }
+
+        @Override
+        public void informationResponse(org.apache.hc.core5.http.HttpResponse response, HttpContext context) {
+        }
+
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            this.capacityChannel = capacityChannel;
+            buffer.updateCapacity(capacityChannel);
+        }
+
+        @Override
+        public void consume(ByteBuffer src) throws IOException {
+            if (body.closed) {
+                // Fails the exchange, so the connection is discarded instead of reading the rest
+                throw new IOException("Response body closed before it was fully read");
+            }
+            buffer.fill(src);
+            publisher.drain();
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) {
+            body.ended = true;
+            buffer.markEndStream();
+            publisher.drain();
+            FutureCallback<HttpResponse> callback = resultCallback;
+            if (callback != null) {
+                callback.completed(response);
+            }
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            if (body.ended) {
+                // the exchange is cancelled once more after it completed, the body is intact
+                return;
+            }
+            body.failure = cause;
+            buffer.abort();
+            publisher.drain();
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        /**
+         * Body stream that reports failures of the exchange instead of ending early, and abandons the
+         * exchange when closed before the end.
+         */
+        private final class BodyStream extends InputStream {
+            private final SharedInputBuffer buffer;
+            private volatile boolean closed;
+            private volatile boolean ended;
+            private volatile Exception failure;
+
+            BodyStream(SharedInputBuffer buffer) {
+                this.buffer = buffer;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return checkEnd(closed ? -1 : buffer.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                return checkEnd(closed ? -1 : buffer.read(b, off, len));
+            }
+
+            private int checkEnd(int result) throws IOException {
+                if (result < 0 && failure != null) {
+                    throw new IOException("Failed to read response body", failure);
+                }
+                return result;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (!ended && failure == null) {
+                    buffer.abort();
+                    CapacityChannel channel = capacityChannel;
+                    if (channel != null) {
+                        // Let the next chunk arrive so consume() can fail the exchange
+                        channel.update(BUFFER_SIZE);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Publishes the buffered body, on the I/O reactor as data arrives and on the subscriber's
+         * thread as it signals demand. Only data already in the buffer is read, so publishing never
+         * blocks; capacity is granted as it is read, as for the stream. Cancelling abandons the
+         * exchange like closing the stream early.
+         */
+        private final class BodyPublisher implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+            private final AtomicLong demand = new AtomicLong();
+            private final AtomicInteger pending = new AtomicInteger();
+            private volatile Flow.Subscriber<? super ByteBuffer> subscriber;
+            private volatile Throwable error;
+            private volatile boolean cancelled;
+            private boolean done;
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                this.subscriber = subscriber;
+                subscriber.onSubscribe(this);
+                drain();
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested " + n + " buffers, demand must be positive");
+                } else {
+                    demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                abandon();
+            }
+
+            private void abandon() {
+                try {
+                    body.close();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+
+            /**
+             * Runs {@link #emit()} unless it is already running; signals arriving meanwhile make it run
+             * again, so the subscriber is never called concurrently.
+             */
+            void drain() {
+                if (subscriber == null || pending.getAndIncrement() != 0) {
+                    return;
+                }
+                int missed = 1;
+                do {
+                    emit();
+                    missed = pending.addAndGet(-missed);
+                } while (missed != 0);
+            }
+
+            private void emit() {
+                try {
+                    while (!done && !cancelled) {
+                        if (error != null || body.failure != null) {
+                            done = true;
+                            abandon();
+                            subscriber.onError(error != null ? error
+                                    : new IOException("Failed to read response body", body.failure));
+                        } else if (buffer.length() > 0) {
+                            if (demand.get() == 0) {
+                                return;
+                            }
+                            byte[] chunk = new byte[Math.min(buffer.length(), BUFFER_SIZE)];
+                            int read = buffer.read(chunk, 0, chunk.length);
+                            if (demand.get() != Long.MAX_VALUE) {
+                                demand.decrementAndGet();
+                            }
+                            subscriber.onNext(ByteBuffer.wrap(chunk, 0, read));
+                        } else if (body.ended) {
+                            done = true;
+                            subscriber.onComplete();
+                        } else {
+                            return;
+                        }
+                    }
+                } catch (IOException e) {
+                    done = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Produces a multipart body from its source, one chunk at a time as the connection accepts data.
+     * Sources are opened and read on the executor, as that may block and the I/O reactor must keep
+     * running, for example to feed a source published by another exchange. While a chunk is read
+     * {@link #available()} reports nothing, and the channel asks for output again once it is ready.
+     * Content held in memory is written directly. An encoded body is produced from a stream that
+     * encodes the whole body as it is read.
+     */
+    private static final class MultipartEntityProducer implements AsyncEntityProducer {
+        private final MultipartBody body;
+        private final ContentEncoding encoding;
+        private final Executor executor;
+        private final Deque<ByteBuffer> inMemory = new ArrayDeque<>();
+        private byte[] chunk = new byte[BUFFER_SIZE];
+        private ByteBuffer pending;
+        private InputStream content;
+        private DataStreamChannel channel;
+        /**
+         * Counts resets, so that a read still running for an abandoned attempt is discarded.
+         */
+        private int attempt;
+        private boolean reading;
+        private boolean contentDone;
+        private boolean chunkReady;
+        private ByteBuffer readChunk;
+        private Exception readFailure;
+        private boolean ended;
+
+        MultipartEntityProducer(MultipartBody body, ContentEncoding encoding, Executor executor) {
+            this.body = body;
+            this.encoding = encoding;
+            this.executor = executor;
+            reset();
+        }
+
+        private void reset() {
+            attempt++;
+            if (reading) {
+                // The running read keeps filling the old buffer until it notices the reset
+                chunk = new byte[BUFFER_SIZE];
+            }
+            inMemory.clear();
+            ByteBuffer memory = encoding == null ? body.content().inMemoryContent() : null;
+            if (memory != null) {
+                inMemory.add(memory);
+                inMemory.add(ByteBuffer.wrap(body.tail()));
+            }
+            pending = encoding == null ? ByteBuffer.wrap(body.head()) : null;
+            content = null;
+            reading = false;
+            contentDone = memory != null;
+            chunkReady = false;
+            readChunk = null;
+            readFailure = null;
+            ended = false;
+        }
+
+        @Override
+        public synchronized void produce(DataStreamChannel channel) throws IOException {
+            this.channel = channel;
+            while (!ended) {
+                if (pending != null && pending.hasRemaining()) {
+                    channel.write(pending);
+                    if (pending.hasRemaining()) {
+                        return;
+                    }
+                }
+                pending = null;
+                if (!inMemory.isEmpty()) {
+                    pending = inMemory.poll();
+                } else if (contentDone) {
+                    ended = true;
+                    channel.endStream();
+                } else if (readFailure != null) {
+                    throw new IOException("Failed to read upload content", readFailure);
+                } else if (chunkReady) {
+                    pending = readChunk;
+                    chunkReady = false;
+                    readChunk = null;
+                } else {
+                    if (!reading) {
+                        startRead();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void startRead() throws IOException {
+            reading = true;
+            int readAttempt = attempt;
+            byte[] buffer = chunk;
+            try {
+                executor.execute(() -> read(readAttempt, buffer));
+            } catch (RejectedExecutionException e) {
+                reading = false;
+                throw new IOException("Failed to schedule reading of upload content", e);
+            }
+        }
+
+        /**
+         * Reads the next chunk on the executor, opening the source first if necessary.
+         */
+        private void read(int readAttempt, byte[] buffer) {
+            InputStream stream;
+            synchronized (this) {
+                if (readAttempt != attempt) {
+                    return;
+                }
+                stream = content;
+            }
+            ByteBuffer result = null;
+            Exception failure = null;
+            boolean done = false;
+            try {
+                if (stream == null) {
+                    stream = encoding == null ? body.content().openStream() : encoding.encode(body.openStream());
+                    synchronized (this) {
+                        if (readAttempt != attempt) {
+                            closeQuietly(stream);
+                            return;
+                        }
+                        content = stream;
+                    }
+                }
+                int n = stream.read(buffer);
+                if (n >= 0) {
+                    result = ByteBuffer.wrap(buffer, 0, n);
+                } else {
+                    done = true;
+                    result = encoding == null ? ByteBuffer.wrap(body.tail()) : null;
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            DataStreamChannel target;
+            synchronized (this) {
+                if (readAttempt != attempt) {
+                    return;
+                }
+                reading = false;
+                readFailure = failure;
+                if (done) {
+                    closeContent();
+                    contentDone = true;
+                    if (result != null) {
+                        inMemory.add(result);
+                    }
+                } else if (failure == null) {
+                    chunkReady = true;
+                    readChunk = result;
+                }
+                target = channel;
+            }
+            target.requestOutput();
+        }
+
+        @Override
+        public synchronized int available() {
+            return ended || reading ? 0 : BUFFER_SIZE;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return body.content().isReplayable();
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            releaseResources();
+        }
+
+        @Override
+        public synchronized void releaseResources() {
+            closeContent();
+            reset();
+        }
+
+        /**
+         * Also wakes a read blocked on the content, which then notices that it was abandoned.
+         */
+        private void closeContent() {
+            if (content != null) {
+                closeQuietly(content);
+                content = null;
+            }
+        }
+
+        private static void closeQuietly(InputStream stream) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // nothing left to read from it
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return encoding == null ? body.contentLength() : ContentSource.UNKNOWN_LENGTH;
+        }
+
+        @Override
+        public String getContentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return getContentLength() == ContentSource.UNKNOWN_LENGTH;
+        }
+
+        @Override
+        public Set<String> getTrailerNames() {
+            return null;
+        }
+    }
+}
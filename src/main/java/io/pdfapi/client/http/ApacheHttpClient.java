@@ -2,67 +2,120 @@ package io.pdfapi.client.http;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.mime.MIME;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.AbstractContentBody;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class ApacheHttpClient extends AbstractHttpClient {
     private final CloseableHttpClient httpClient;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
 
     public ApacheHttpClient() {
-        this.httpClient = HttpClients.createDefault();
+        this(HttpClients.createDefault());
     }
 
     public ApacheHttpClient(CloseableHttpClient httpClient) {
+        this(httpClient, BlockingExecutors.DEFAULT_MAX_THREADS, BlockingExecutors.UNBOUNDED_QUEUE);
+    }
+
+    /**
+     * Runs the blocking requests on an own executor: a virtual thread per request on Java 21 and
+     * later, otherwise a pool of at most {@code maxThreads} threads with the given queue capacity.
+     */
+    public ApacheHttpClient(CloseableHttpClient httpClient, int maxThreads, int queueCapacity) {
         this.httpClient = httpClient;
+        this.ownedExecutor = BlockingExecutors.create(maxThreads, queueCapacity);
+        this.executor = ownedExecutor;
+    }
+
+    /**
+     * Runs the blocking requests on the given executor, which is not shut down with this client.
+     */
+    public ApacheHttpClient(CloseableHttpClient httpClient, Executor executor) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    /**
+     * Creates a client with the given timeouts and connection settings, for use with the constructors
+     * of this adapter. Connections idle for longer than the keep-alive period are closed by a
+     * background thread of the client.
+     */
+    public static CloseableHttpClient createHttpClient(int timeoutSeconds, ConnectionSettings connections) {
+        int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        return HttpClients.custom()
+                .setMaxConnTotal(connections.getMaxConnections())
+                .setMaxConnPerRoute(connections.getMaxConnections())
+                .evictIdleConnections(connections.getKeepAliveSeconds(), TimeUnit.SECONDS)
+                .setSSLContext(connections.sslContext())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build())
+                .build();
     }
 
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
         return CompletableFuture.supplyAsync(() -> {
             HttpPost httpPost = new HttpPost(url);
             headers.forEach(httpPost::addHeader);
-            httpPost.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+            httpPost.setEntity(new ByteArrayEntity(jsonBody, ContentType.APPLICATION_JSON));
 
-            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-                return convertResponse(response);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+            return execute(httpPost);
+        }, executor);
     }
 
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
                                                           InputStream content, String contentType, String partName) {
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
         return CompletableFuture.supplyAsync(() -> {
             HttpPost httpPost = new HttpPost(url);
             headers.forEach(httpPost::addHeader);
 
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-            builder.addBinaryBody(partName, content, ContentType.create(contentType), fileName);
-            httpPost.setEntity(builder.build());
+            builder.addPart(partName, new ContentSourceBody(content, ContentType.create(contentType), fileName));
+            ContentEncoding encoding = ContentEncoding.forRequest(headers);
+            httpPost.setEntity(encoding == null ? builder.build() : new EncodedEntity(builder.build(), encoding));
 
-            try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-                return convertResponse(response);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+            return execute(httpPost);
+        }, executor);
     }
 
     @Override
@@ -71,18 +124,29 @@ public class ApacheHttpClient extends AbstractHttpClient {
             HttpGet httpGet = new HttpGet(url);
             headers.forEach(httpGet::addHeader);
 
-            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-                return convertResponse(response);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
+            return execute(httpGet);
+        }, executor);
+    }
+
+    /**
+     * Executes the request and hands the still open response over to the caller. The connection is
+     * released back to the pool when the returned response or its body stream is closed.
+     */
+    private HttpResponse execute(HttpUriRequest request) {
+        CloseableHttpResponse response = null;
+        try {
+            response = httpClient.execute(request);
+            return convertResponse(response);
+        } catch (IOException e) {
+            closeQuietly(response);
+            throw new RuntimeException(e);
+        }
     }
 
     private HttpResponse convertResponse(CloseableHttpResponse response) throws IOException {
         HttpEntity entity = response.getEntity();
         if (entity != null) {
-            return new StreamingHttpResponse(response.getStatusLine().getStatusCode(), readContent(entity), response, mapHeaders(response.getAllHeaders()));
+            return new StreamingHttpResponse(response.getStatusLine().getStatusCode(), entity.getContent(), response, mapHeaders(response.getAllHeaders()));
         } else {
             response.close();
             return new StreamingHttpResponse(response.getStatusLine().getStatusCode(), null, null, mapHeaders(response.getAllHeaders()));
@@ -97,18 +161,92 @@ public class ApacheHttpClient extends AbstractHttpClient {
                 ));
     }
 
-    private static InputStream readContent(HttpEntity entity) throws IOException {
-        try (final var content = entity.getContent()) {
-            return new ByteArrayInputStream(content.readAllBytes());
+    private static void closeQuietly(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.close();
+        } catch (IOException ignored) {
+            // the original failure is more relevant
         }
     }
 
     @Override
     protected void closeInternal() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
         try {
             httpClient.close();
         } catch (IOException e) {
             throw new RuntimeException("Failed to close Apache HTTP client", e);
         }
     }
+
+    /**
+     * Encodes the wrapped entity as it is written to the connection. The coding is already among the
+     * request headers.
+     */
+    private static class EncodedEntity extends HttpEntityWrapper {
+        private final ContentEncoding encoding;
+
+        EncodedEntity(HttpEntity entity, ContentEncoding encoding) {
+            super(entity);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return encoding.encode(super.getContent());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (OutputStream encoded = encoding.encode(out)) {
+                super.writeTo(encoded);
+            }
+        }
+    }
+
+    private static class ContentSourceBody extends AbstractContentBody {
+        private final ContentSource content;
+        private final String fileName;
+
+        ContentSourceBody(ContentSource content, ContentType contentType, String fileName) {
+            super(contentType);
+            this.content = content;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            content.writeTo(out);
+        }
+
+        @Override
+        public String getTransferEncoding() {
+            return MIME.ENC_BINARY;
+        }
+
+        @Override
+        public long getContentLength() {
+            return content.contentLength();
+        }
+    }
 } 
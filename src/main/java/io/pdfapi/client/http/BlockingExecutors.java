@@ -0,0 +1,62 @@
+package io.pdfapi.client.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for adapters whose underlying client blocks while a request is in flight, so that
+ * network I/O never runs on the common fork-join pool.
+ */
+final class BlockingExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(BlockingExecutors.class);
+    static final int DEFAULT_MAX_THREADS = 64;
+    static final int UNBOUNDED_QUEUE = Integer.MAX_VALUE;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * A virtual thread per task on Java 21 and later. On older versions a pool of at most
+     * {@code maxThreads} daemon threads; requests beyond the queue capacity are rejected.
+     *
+     * @param queueCapacity requests waiting for a pool thread, {@link #UNBOUNDED_QUEUE} for no limit
+     */
+    static ExecutorService create(int maxThreads, int queueCapacity) {
+        ExecutorService virtual = virtualThreadPerTask();
+        if (virtual != null) {
+            return virtual;
+        }
+        BlockingQueue<Runnable> queue = queueCapacity == UNBOUNDED_QUEUE
+                ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                queue, runnable -> {
+            Thread thread = new Thread(runnable, "pdfapi-io-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ExecutorService virtualThreadPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Virtual threads unavailable, using a thread pool", e);
+            return null;
+        }
+    }
+}
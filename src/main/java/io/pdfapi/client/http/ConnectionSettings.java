@@ -0,0 +1,161 @@
+package io.pdfapi.client.http;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Connection pool and TLS settings applied by the adapters that create their own client. Adapters
+ * wrapping a pre-configured client leave its settings untouched.
+ * <p>
+ * Resumed TLS sessions skip the full handshake when a pooled connection has expired and a new one
+ * is opened. With the default session settings the JVM's default {@link SSLContext} is used, so
+ * sessions are shared with the rest of the application; otherwise all adapters created with the
+ * same settings share one dedicated context.
+ */
+public final class ConnectionSettings {
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 300;
+    public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 20480;
+    public static final int DEFAULT_TLS_SESSION_TIMEOUT_SECONDS = 86400;
+
+    public static final ConnectionSettings DEFAULTS = builder().build();
+
+    private final int maxConnections;
+    private final int keepAliveSeconds;
+    private final int tlsSessionCacheSize;
+    private final int tlsSessionTimeoutSeconds;
+    private SSLContext sslContext;
+    private X509TrustManager trustManager;
+
+    private ConnectionSettings(Builder builder) {
+        this.maxConnections = builder.maxConnections;
+        this.keepAliveSeconds = builder.keepAliveSeconds;
+        this.tlsSessionCacheSize = builder.tlsSessionCacheSize;
+        this.tlsSessionTimeoutSeconds = builder.tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * @return connections kept per host, idle or in use
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return seconds an idle connection is kept open for reuse
+     */
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * @return {@code true} if the JVM's default TLS context is used
+     */
+    public boolean isDefaultTls() {
+        return tlsSessionCacheSize == DEFAULT_TLS_SESSION_CACHE_SIZE
+                && tlsSessionTimeoutSeconds == DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+    }
+
+    /**
+     * @return TLS context with the configured session cache, created once per settings instance
+     */
+    public synchronized SSLContext sslContext() {
+        if (sslContext == null) {
+            try {
+                if (isDefaultTls()) {
+                    sslContext = SSLContext.getDefault();
+                } else {
+                    trustManager = defaultTrustManager();
+                    SSLContext context = SSLContext.getInstance("TLS");
+                    context.init(null, new TrustManager[]{trustManager}, null);
+                    SSLSessionContext sessions = context.getClientSessionContext();
+                    sessions.setSessionCacheSize(tlsSessionCacheSize);
+                    sessions.setSessionTimeout(tlsSessionTimeoutSeconds);
+                    sslContext = context;
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to create TLS context", e);
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * @return trust manager of {@link #sslContext()}, {@code null} for the JVM's default context
+     */
+    synchronized X509TrustManager trustManager() {
+        sslContext();
+        return trustManager;
+    }
+
+    private static X509TrustManager defaultTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init((KeyStore) null);
+        for (TrustManager manager : factory.getTrustManagers()) {
+            if (manager instanceof X509TrustManager) {
+                return (X509TrustManager) manager;
+            }
+        }
+        throw new GeneralSecurityException("No X509 trust manager available");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private int keepAliveSeconds = DEFAULT_KEEP_ALIVE_SECONDS;
+        private int tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+        private int tlsSessionTimeoutSeconds = DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder keepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds;
+            return this;
+        }
+
+        /**
+         * TLS sessions remembered for resumption, 0 for no limit.
+         */
+        public Builder tlsSessionCacheSize(int tlsSessionCacheSize) {
+            this.tlsSessionCacheSize = tlsSessionCacheSize;
+            return this;
+        }
+
+        /**
+         * Seconds a TLS session may be resumed, 0 for no limit.
+         */
+        public Builder tlsSessionTimeoutSeconds(int tlsSessionTimeoutSeconds) {
+            this.tlsSessionTimeoutSeconds = tlsSessionTimeoutSeconds;
+            return this;
+        }
+
+        public ConnectionSettings build() {
+            if (maxConnections <= 0 || keepAliveSeconds <= 0) {
+                throw new IllegalStateException("Connection pool size and keep-alive must be positive");
+            }
+            if (tlsSessionCacheSize < 0 || tlsSessionTimeoutSeconds < 0) {
+                throw new IllegalStateException("TLS session cache size and timeout must not be negative");
+            }
+            return new ConnectionSettings(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.pdfapi.client.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content codings for request and response bodies. A request whose headers contain a
+ * {@value #HEADER} of one of these codings has its body encoded by the adapter as it is sent; other
+ * values are passed on with the body unchanged, as the caller must then have encoded it.
+ * Responses with one of these codings are decoded by {@link StreamingHttpResponse}.
+ */
+public enum ContentEncoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    public static final String HEADER = "Content-Encoding";
+    public static final String ACCEPT_HEADER = "Accept-Encoding";
+
+    /**
+     * Value of {@value #ACCEPT_HEADER} for all supported codings.
+     */
+    public static final String ACCEPTED = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return name of the coding in HTTP headers
+     */
+    public String token() {
+        return token;
+    }
+
+    /**
+     * @return coding of the token, or {@code null} if it is not supported
+     */
+    public static ContentEncoding of(String token) {
+        if (token == null) {
+            return null;
+        }
+        String value = token.trim();
+        if (value.equalsIgnoreCase("gzip") || value.equalsIgnoreCase("x-gzip")) {
+            return GZIP;
+        }
+        if (value.equalsIgnoreCase("deflate")) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    /**
+     * @return coding the adapter has to apply to the body of a request with these headers, or
+     * {@code null} to send it unchanged
+     */
+    public static ContentEncoding forRequest(Map<String, String> headers) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (HEADER.equalsIgnoreCase(header.getKey())) {
+                return of(header.getValue());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encodes everything written to the returned stream into the target. Closing the returned stream
+     * finishes the encoding and releases the compressor, but leaves the target open.
+     */
+    public OutputStream encode(OutputStream target) throws IOException {
+        OutputStream unclosed = new FilterOutputStream(target) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        if (this == GZIP) {
+            return new GZIPOutputStream(unclosed, BUFFER_SIZE);
+        }
+        Deflater deflater = new Deflater();
+        return new DeflaterOutputStream(unclosed, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Encodes the source as it is read, for clients that pull request bodies from a stream.
+     * Closing the returned stream closes the source.
+     */
+    public InputStream encode(InputStream source) {
+        return this == GZIP ? new GzipEncodingInputStream(source) : new EncodingInputStream(source, new Deflater());
+    }
+
+    /**
+     * Decodes the source as it is read. Closing the returned stream closes the source.
+     */
+    public InputStream decode(InputStream source) throws IOException {
+        return this == GZIP ? new GZIPInputStream(source, BUFFER_SIZE) : new InflaterInputStream(source);
+    }
+
+    /**
+     * Deflates its source as it is read and releases the deflater when closed.
+     */
+    static class EncodingInputStream extends DeflaterInputStream {
+        final Deflater deflater;
+
+        EncodingInputStream(InputStream source, Deflater deflater) {
+            super(source, deflater, BUFFER_SIZE);
+            this.deflater = deflater;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package io.pdfapi.client.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Body content of an upload. Apart from {@link #ofStream(InputStream)} all sources can be read
+ * more than once, which allows them to be retried, hashed and uploaded without buffering them on
+ * the heap first.
+ */
+public abstract class ContentSource {
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private static final int TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Opens a new stream over the content. Single-use sources can only be opened once.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * @return content length in bytes or {@link #UNKNOWN_LENGTH}
+     */
+    public long contentLength() {
+        return UNKNOWN_LENGTH;
+    }
+
+    /**
+     * @return {@code true} if {@link #openStream()} and the write methods may be called more than once
+     */
+    public boolean isReplayable() {
+        return true;
+    }
+
+    /**
+     * @return the content if it is held in memory, so reading it never blocks, otherwise {@code null}
+     */
+    ByteBuffer inMemoryContent() {
+        return null;
+    }
+
+    /**
+     * Writes the whole content to the channel. File-backed sources transfer directly from the file
+     * channel and in-memory sources write their buffers without copying them.
+     */
+    public void writeTo(WritableByteChannel target) throws IOException {
+        try (InputStream in = openStream()) {
+            in.transferTo(Channels.newOutputStream(target));
+        }
+    }
+
+    /**
+     * Writes the whole content to the stream.
+     */
+    public void writeTo(OutputStream target) throws IOException {
+        try (InputStream in = openStream()) {
+            in.transferTo(target);
+        }
+    }
+
+    public static ContentSource ofPath(Path path) {
+        return new PathContentSource(Objects.requireNonNull(path, "Path must not be null"));
+    }
+
+    /**
+     * Content of an open file channel, read with positional reads from offset 0 so the channel's own
+     * position is left untouched. The caller remains responsible for closing the channel.
+     */
+    public static ContentSource ofChannel(FileChannel channel) {
+        return new FileChannelContentSource(Objects.requireNonNull(channel, "Channel must not be null"));
+    }
+
+    public static ContentSource ofBytes(byte[] bytes) {
+        return ofByteBuffer(ByteBuffer.wrap(Objects.requireNonNull(bytes, "Bytes must not be null")));
+    }
+
+    /**
+     * Content between the buffer's current position and its limit. The buffer itself is not modified.
+     */
+    public static ContentSource ofByteBuffer(ByteBuffer buffer) {
+        return new ByteBufferContentSource(Objects.requireNonNull(buffer, "Buffer must not be null").slice());
+    }
+
+    /**
+     * Content produced by a supplier returning a fresh stream on every call.
+     *
+     * @param contentLength length of every supplied stream or {@link #UNKNOWN_LENGTH}
+     */
+    public static ContentSource ofSupplier(Supplier<? extends InputStream> supplier, long contentLength) {
+        return new SupplierContentSource(Objects.requireNonNull(supplier, "Supplier must not be null"), contentLength);
+    }
+
+    /**
+     * Single-use content of an already opened stream.
+     */
+    public static ContentSource ofStream(InputStream stream) {
+        return new StreamContentSource(Objects.requireNonNull(stream, "Stream must not be null"));
+    }
+
+    /**
+     * Single-use content emitted by a publisher, which is subscribed when the upload starts. Buffers
+     * are requested one at a time as the upload proceeds.
+     *
+     * @param contentLength total length of the emitted buffers or {@link #UNKNOWN_LENGTH}
+     */
+    public static ContentSource ofPublisher(Flow.Publisher<? extends ByteBuffer> publisher, long contentLength) {
+        return new PublisherContentSource(Objects.requireNonNull(publisher, "Publisher must not be null"), contentLength);
+    }
+
+    private static void transfer(FileChannel source, long size, WritableByteChannel target) throws IOException {
+        long position = 0;
+        while (position < size) {
+            long transferred = source.transferTo(position, Math.min(size - position, TRANSFER_CHUNK_SIZE), target);
+            if (transferred <= 0) {
+                throw new IOException("File truncated during transfer at " + position + " of " + size + " bytes");
+            }
+            position += transferred;
+        }
+    }
+
+    private static final class PathContentSource extends ContentSource {
+        private final Path path;
+
+        PathContentSource(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public long contentLength() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return UNKNOWN_LENGTH;
+            }
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel target) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                transfer(channel, channel.size(), target);
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream target) throws IOException {
+            writeTo(Channels.newChannel(target));
+        }
+    }
+
+    private static final class FileChannelContentSource extends ContentSource {
+        private final FileChannel channel;
+
+        FileChannelContentSource(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new PositionalInputStream(channel);
+        }
+
+        @Override
+        public long contentLength() {
+            try {
+                return channel.size();
+            } catch (IOException e) {
+                return UNKNOWN_LENGTH;
+            }
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel target) throws IOException {
+            transfer(channel, channel.size(), target);
+        }
+
+        @Override
+        public void writeTo(OutputStream target) throws IOException {
+            writeTo(Channels.newChannel(target));
+        }
+    }
+
+    private static final class ByteBufferContentSource extends ContentSource {
+        private final ByteBuffer buffer;
+
+        ByteBufferContentSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteBufferInputStream(buffer.duplicate());
+        }
+
+        @Override
+        public long contentLength() {
+            return buffer.remaining();
+        }
+
+        @Override
+        ByteBuffer inMemoryContent() {
+            return buffer.duplicate();
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel target) throws IOException {
+            ByteBuffer content = buffer.duplicate();
+            while (content.hasRemaining()) {
+                target.write(content);
+            }
+        }
+
+        @Override
+        public void writeTo(OutputStream target) throws IOException {
+            if (buffer.hasArray()) {
+                target.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                writeTo(Channels.newChannel(target));
+            }
+        }
+    }
+
+    private static final class SupplierContentSource extends ContentSource {
+        private final Supplier<? extends InputStream> supplier;
+        private final long contentLength;
+
+        SupplierContentSource(Supplier<? extends InputStream> supplier, long contentLength) {
+            this.supplier = supplier;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            try {
+                return Objects.requireNonNull(supplier.get(), "Supplier returned null stream");
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+    }
+
+    private static final class StreamContentSource extends ContentSource {
+        private final InputStream stream;
+        private final AtomicBoolean consumed = new AtomicBoolean();
+
+        StreamContentSource(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public InputStream openStream() {
+            if (!consumed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Stream content can only be read once");
+            }
+            return stream;
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return false;
+        }
+    }
+
+    private static final class PublisherContentSource extends ContentSource {
+        private final Flow.Publisher<? extends ByteBuffer> publisher;
+        private final long contentLength;
+        private final AtomicBoolean consumed = new AtomicBoolean();
+
+        PublisherContentSource(Flow.Publisher<? extends ByteBuffer> publisher, long contentLength) {
+            this.publisher = publisher;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public InputStream openStream() {
+            if (!consumed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Published content can only be read once");
+            }
+            PublisherInputStream stream = new PublisherInputStream();
+            publisher.subscribe(stream);
+            return stream;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public boolean isReplayable() {
+            return false;
+        }
+    }
+
+    private static final class PositionalInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
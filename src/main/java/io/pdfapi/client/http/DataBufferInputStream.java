@@ -0,0 +1,162 @@
+package io.pdfapi.client.http;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking view of a stream of data buffers. One buffer is requested at a time and released as soon
+ * as it has been read, so the body is never held in memory as a whole and a slow reader applies
+ * backpressure to the connection. Closing the stream before its end cancels the subscription.
+ */
+final class DataBufferInputStream extends InputStream implements Subscriber<DataBuffer> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private Subscription subscription;
+    private DataBuffer current;
+    private DataBuffer next;
+    private boolean done;
+    private boolean closed;
+    private Throwable error;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        lock.lock();
+        try {
+            this.subscription = subscription;
+            if (closed) {
+                subscription.cancel();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(DataBuffer buffer) {
+        lock.lock();
+        try {
+            if (closed) {
+                DataBufferUtils.release(buffer);
+                return;
+            }
+            next = buffer;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        lock.lock();
+        try {
+            this.error = error;
+            this.done = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        lock.lock();
+        try {
+            this.done = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        boolean requestNext = false;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (current != null) {
+                    int n = Math.min(len, current.readableByteCount());
+                    current.read(b, off, n);
+                    if (current.readableByteCount() == 0) {
+                        DataBufferUtils.release(current);
+                        current = null;
+                        requestNext = true;
+                    }
+                    return n;
+                }
+                if (next != null) {
+                    current = next;
+                    next = null;
+                    continue;
+                }
+                if (done) {
+                    if (error != null) {
+                        throw new IOException("Failed to read response body", error);
+                    }
+                    return -1;
+                }
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        } finally {
+            lock.unlock();
+            if (requestNext) {
+                subscription.request(1);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Subscription toCancel;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+            if (next != null) {
+                DataBufferUtils.release(next);
+                next = null;
+            }
+            toCancel = done ? null : subscription;
+        } finally {
+            lock.unlock();
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.pdfapi.client.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip-encodes its source as it is read: the member header, the raw deflate stream and a trailer
+ * with the checksum and length of the source. The JDK only offers gzip encoding on the writing side.
+ */
+final class GzipEncodingInputStream extends InputStream {
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final CheckedInputStream source;
+    private final ContentEncoding.EncodingInputStream deflated;
+    private final byte[] single = new byte[1];
+    private int headerOffset;
+    private byte[] trailer;
+    private int trailerOffset;
+
+    GzipEncodingInputStream(InputStream source) {
+        this.source = new CheckedInputStream(source, new CRC32());
+        this.deflated = new ContentEncoding.EncodingInputStream(this.source,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (headerOffset < HEADER.length) {
+            int n = Math.min(HEADER.length - headerOffset, len);
+            System.arraycopy(HEADER, headerOffset, b, off, n);
+            headerOffset += n;
+            return n;
+        }
+        if (trailer == null) {
+            int n = deflated.read(b, off, len);
+            if (n >= 0) {
+                return n;
+            }
+            trailer = trailer(source.getChecksum().getValue(), deflated.deflater.getBytesRead());
+        }
+        if (trailerOffset == trailer.length) {
+            return -1;
+        }
+        int n = Math.min(trailer.length - trailerOffset, len);
+        System.arraycopy(trailer, trailerOffset, b, off, n);
+        trailerOffset += n;
+        return n;
+    }
+
+    /**
+     * @return CRC-32 and length modulo 2^32 of the source, little-endian
+     */
+    private static byte[] trailer(long crc, long length) {
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (8 * i));
+            trailer[4 + i] = (byte) (length >>> (8 * i));
+        }
+        return trailer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflated.close();
+    }
+}
@@ -1,12 +1,40 @@
 package io.pdfapi.client.http;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public interface HttpClient {
     CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String jsonBody);
+
+    /**
+     * POST of a JSON body that is already UTF-8 encoded. The array may be shared between requests and
+     * must not be modified. Implementations that can send the bytes as they are should override this
+     * method; the default decodes them for {@link #post(String, Map, String)}.
+     */
+    default CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, byte[] jsonBody) {
+        return post(url, headers, new String(jsonBody, StandardCharsets.UTF_8));
+    }
+
     CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String fileName, InputStream content, String contentType, String partName);
+
+    /**
+     * Multipart upload of a {@link ContentSource}. Implementations that can write the source directly
+     * (for example by transferring a file channel) should override this method; the default reads the
+     * source as a stream.
+     */
+    default CompletableFuture<HttpResponse> post(String url, Map<String, String> headers, String fileName, ContentSource content, String contentType, String partName) {
+        final InputStream stream;
+        try {
+            stream = content.openStream();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return post(url, headers, fileName, stream, contentType, partName);
+    }
+
     CompletableFuture<HttpResponse> get(String url, Map<String, String> headers);
     void close();
 } 
\ No newline at end of file
@@ -1,6 +1,8 @@
 package io.pdfapi.client.http;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
 import java.util.Optional;
 
 public interface HttpResponse extends AutoCloseable {
@@ -9,4 +11,30 @@ public interface HttpResponse extends AutoCloseable {
     InputStream getBodyAsStream();
 
     Optional<String> getLocationHeader();
+
+    /**
+     * The body as the buffers the client receives, for adapters that deliver it without a thread
+     * waiting on a stream. Buffers are published on the client's threads as the subscriber signals
+     * demand, and cancelling the subscription abandons the rest of the body. The body is consumed
+     * either this way or through {@link #getBodyAsStream()}, not both.
+     *
+     * @return the body publisher, or {@code null} if the adapter only provides a stream
+     */
+    default Flow.Publisher<ByteBuffer> getBodyAsPublisher() {
+        return null;
+    }
+
+    /**
+     * First value of a response header, looked up case-insensitively.
+     */
+    default Optional<String> getHeader(String name) {
+        return Optional.empty();
+    }
+
+    /**
+     * Releases the underlying connection. Closing the body stream has the same effect once the
+     * body has been read.
+     */
+    @Override
+    void close();
 }
@@ -0,0 +1,200 @@
+package io.pdfapi.client.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adapter for the JDK's {@link java.net.http.HttpClient}, which needs no further dependencies.
+ * Requests are sent with {@code sendAsync}, so no thread waits for a response. Over TLS, concurrent
+ * uploads and status checks are multiplexed on one HTTP/2 connection when the server supports it.
+ * Multipart bodies are streamed from their source and response bodies are streamed to the caller,
+ * or published as the client receives them.
+ */
+public class JdkHttpClient extends AbstractHttpClient {
+    private final java.net.http.HttpClient client;
+    private final Duration timeout;
+    private final ExecutorService executor;
+
+    public JdkHttpClient(int timeoutSeconds) {
+        this(timeoutSeconds, ConnectionSettings.DEFAULTS);
+    }
+
+    /**
+     * Applies the TLS session settings. The JDK client neither limits its connections nor has a
+     * per-client keep-alive; idle connections are closed after the period set by the
+     * {@code jdk.httpclient.keepalive.timeout} system property.
+     */
+    public JdkHttpClient(int timeoutSeconds, ConnectionSettings connections) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "pdfapi-http-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeout = Duration.ofSeconds(timeoutSeconds);
+        this.client = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                .sslContext(connections.sslContext())
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Uses a pre-configured client. Its executor is not shut down when this adapter is closed.
+     *
+     * @param timeout time to wait for the response headers of each request, {@code null} for no limit
+     */
+    public JdkHttpClient(java.net.http.HttpClient client, Duration timeout) {
+        this.client = client;
+        this.timeout = timeout;
+        this.executor = null;
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
+        HttpRequest request = newRequest(url, headers)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(BodyPublishers.ofByteArray(jsonBody))
+                .build();
+        return send(request);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          InputStream content, String contentType, String partName) {
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
+        MultipartBody body = MultipartBody.of(partName, fileName, contentType, content);
+        HttpRequest request = newRequest(url, headers)
+                .header("Content-Type", body.contentType())
+                .POST(publisher(body, ContentEncoding.forRequest(headers)))
+                .build();
+        return send(request);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers) {
+        return send(newRequest(url, headers).GET().build());
+    }
+
+    private HttpRequest.Builder newRequest(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        headers.forEach(builder::header);
+        return builder;
+    }
+
+    /**
+     * Receives the body as a publisher, which is subscribed either by a stream when the caller reads
+     * the body as one, or by the caller itself.
+     */
+    private CompletableFuture<HttpResponse> send(HttpRequest request) {
+        return client.sendAsync(request, BodyHandlers.ofPublisher())
+                .thenApply(response -> new StreamingHttpResponse(response.statusCode(), () -> openStream(response.body()),
+                        new BufferPublisher(response.body()), null, response.headers().map()));
+    }
+
+    private static InputStream openStream(Flow.Publisher<List<ByteBuffer>> body) {
+        BodySubscriber<InputStream> stream = BodySubscribers.ofInputStream();
+        body.subscribe(stream);
+        // Completed right away, the stream blocks on read until data arrives
+        return stream.getBody().toCompletableFuture().join();
+    }
+
+    /**
+     * Streams the multipart body from its source, encoded as it is read if a coding is given. When the
+     * length is known the request is sent with a {@code Content-Length} instead of chunked.
+     */
+    private static BodyPublisher publisher(MultipartBody body, ContentEncoding encoding) {
+        BodyPublisher publisher = BodyPublishers.ofInputStream(() -> {
+            try {
+                InputStream stream = body.openStream();
+                return encoding == null ? stream : encoding.encode(stream);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open upload content", e);
+            }
+        });
+        long length = encoding == null ? body.contentLength() : ContentSource.UNKNOWN_LENGTH;
+        return length == ContentSource.UNKNOWN_LENGTH ? publisher : BodyPublishers.fromPublisher(publisher, length);
+    }
+
+    /**
+     * Publishes each list of buffers received by the client as one buffer, so demand is passed on
+     * unchanged.
+     */
+    private static final class BufferPublisher implements Flow.Publisher<ByteBuffer> {
+        private final Flow.Publisher<List<ByteBuffer>> body;
+
+        BufferPublisher(Flow.Publisher<List<ByteBuffer>> body) {
+            this.body = body;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            body.subscribe(new Flow.Subscriber<List<ByteBuffer>>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(List<ByteBuffer> buffers) {
+                    subscriber.onNext(buffers.size() == 1 ? buffers.get(0) : join(buffers));
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    subscriber.onError(error);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+        }
+
+        private static ByteBuffer join(List<ByteBuffer> buffers) {
+            ByteBuffer joined = ByteBuffer.allocate(buffers.stream().mapToInt(ByteBuffer::remaining).sum());
+            buffers.forEach(joined::put);
+            return joined.flip();
+        }
+    }
+
+    @Override
+    protected void closeInternal() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.pdfapi.client.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Framing of a single-part {@code multipart/form-data} body, for adapters whose client has no
+ * multipart support of its own. The part content is streamed from its source between the
+ * precomputed head and tail.
+ */
+final class MultipartBody {
+    private static final String CRLF = "\r\n";
+
+    private final String boundary;
+    private final byte[] head;
+    private final byte[] tail;
+    private final ContentSource content;
+
+    private MultipartBody(String boundary, byte[] head, byte[] tail, ContentSource content) {
+        this.boundary = boundary;
+        this.head = head;
+        this.tail = tail;
+        this.content = content;
+    }
+
+    static MultipartBody of(String partName, String fileName, String contentType, ContentSource content) {
+        String boundary = UUID.randomUUID().toString();
+        byte[] head = ("--" + boundary + CRLF
+                + "Content-Disposition: form-data; name=\"" + escape(partName) + "\"; filename=\"" + escape(fileName) + "\"" + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + CRLF).getBytes(StandardCharsets.UTF_8);
+        byte[] tail = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8);
+        return new MultipartBody(boundary, head, tail, content);
+    }
+
+    String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    /**
+     * @return length of the whole body, or {@link ContentSource#UNKNOWN_LENGTH} if the content's
+     * length is unknown
+     */
+    long contentLength() {
+        long length = content.contentLength();
+        return length == ContentSource.UNKNOWN_LENGTH ? ContentSource.UNKNOWN_LENGTH : head.length + length + tail.length;
+    }
+
+    byte[] head() {
+        return head;
+    }
+
+    byte[] tail() {
+        return tail;
+    }
+
+    ContentSource content() {
+        return content;
+    }
+
+    /**
+     * @return the whole body, with the content streamed from its source
+     */
+    InputStream openStream() throws IOException {
+        return new SequenceInputStream(Collections.enumeration(List.of(new ByteArrayInputStream(head),
+                content.openStream(), new ByteArrayInputStream(tail))));
+    }
+
+    private static String escape(String value) {
+        return value.replace("\r", "%0D").replace("\n", "%0A").replace("\"", "%22");
+    }
+}
@@ -2,30 +2,66 @@ package io.pdfapi.client.http;
 
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Okio;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
+/**
+ * Adapter for OkHttp. The client passes the same header maps, content types and status URLs with
+ * many requests, so their parsed forms are cached and reused instead of being parsed per request.
+ */
 public class OkHttpClient extends AbstractHttpClient {
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_CACHED_HEADERS = 16;
+    private static final int MAX_CACHED_MEDIA_TYPES = 16;
+    private static final int MAX_CACHED_URLS = 256;
+
     private final okhttp3.OkHttpClient client;
+    private final Map<Map<String, String>, Headers> headers = new ConcurrentHashMap<>();
+    private final Map<String, MediaType> mediaTypes = new ConcurrentHashMap<>();
+    private final Map<String, HttpUrl> urls = new ConcurrentHashMap<>();
 
     public OkHttpClient(int timeoutSeconds) {
-        this.client = new okhttp3.OkHttpClient.Builder()
+        this(timeoutSeconds, ConnectionSettings.DEFAULTS);
+    }
+
+    /**
+     * Keeps up to the configured number of idle connections for the keep-alive period and lets as
+     * many requests per host run concurrently.
+     */
+    public OkHttpClient(int timeoutSeconds, ConnectionSettings connections) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(connections.getMaxConnections());
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), connections.getMaxConnections()));
+        okhttp3.OkHttpClient.Builder builder = new okhttp3.OkHttpClient.Builder()
                 .connectTimeout(timeoutSeconds, TimeUnit.SECONDS)
                 .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
                 .writeTimeout(timeoutSeconds, TimeUnit.SECONDS)
-                .build();
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(connections.getMaxConnections(),
+                        connections.getKeepAliveSeconds(), TimeUnit.SECONDS));
+        if (!connections.isDefaultTls()) {
+            builder.sslSocketFactory(connections.sslContext().getSocketFactory(), connections.trustManager());
+        }
+        this.client = builder.build();
     }
 
     public OkHttpClient(okhttp3.OkHttpClient client) {
@@ -34,9 +70,14 @@ public class OkHttpClient extends AbstractHttpClient {
 
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
         Request request = new Request.Builder()
-                .url(url)
-                .headers(Headers.of(headers))
+                .url(url(url))
+                .headers(headers(headers))
                 .post(RequestBody.create(jsonBody, JSON))
                 .build();
 
@@ -46,15 +87,25 @@ public class OkHttpClient extends AbstractHttpClient {
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
                                                           InputStream content, String contentType, String partName) {
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
                 .addFormDataPart(partName, fileName,
-                        new InputStreamRequestBody(MediaType.get(contentType), content))
+                        new ContentSourceRequestBody(mediaType(contentType), content))
                 .build();
+        ContentEncoding encoding = ContentEncoding.forRequest(headers);
+        if (encoding != null) {
+            requestBody = new EncodedRequestBody(requestBody, encoding);
+        }
 
         Request request = new Request.Builder()
-                .url(url)
-                .headers(Headers.of(headers))
+                .url(url(url))
+                .headers(headers(headers))
                 .post(requestBody)
                 .build();
 
@@ -64,14 +115,50 @@ public class OkHttpClient extends AbstractHttpClient {
     @Override
     protected CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers) {
         Request request = new Request.Builder()
-                .url(url)
-                .headers(Headers.of(headers))
+                .url(url(url))
+                .headers(headers(headers))
                 .get()
                 .build();
 
         return executeAsync(request);
     }
 
+    private HttpUrl url(String url) {
+        return cached(urls, url, HttpUrl::get, MAX_CACHED_URLS);
+    }
+
+    /**
+     * Header maps are cached by value under an immutable copy, so a caller modifying its map after
+     * the request never changes a cached entry. Immutable maps are their own copy.
+     */
+    private Headers headers(Map<String, String> headers) {
+        Headers cached = this.headers.get(headers);
+        if (cached == null) {
+            cached = cached(this.headers, Map.copyOf(headers), Headers::of, MAX_CACHED_HEADERS);
+        }
+        return cached;
+    }
+
+    private MediaType mediaType(String contentType) {
+        return cached(mediaTypes, contentType, MediaType::get, MAX_CACHED_MEDIA_TYPES);
+    }
+
+    /**
+     * Clears the cache when it is full rather than tracking usage, since it only fills up when
+     * callers keep passing new values, which then gain nothing from being cached.
+     */
+    private static <K, V> V cached(Map<K, V> cache, K key, Function<K, V> parse, int maxSize) {
+        V value = cache.get(key);
+        if (value == null) {
+            if (cache.size() >= maxSize) {
+                cache.clear();
+            }
+            value = parse.apply(key);
+            cache.put(key, value);
+        }
+        return value;
+    }
+
     private CompletableFuture<HttpResponse> executeAsync(Request request) {
         CompletableFuture<HttpResponse> future = new CompletableFuture<>();
         client.newCall(request).enqueue(new Callback() {
@@ -100,13 +187,48 @@ public class OkHttpClient extends AbstractHttpClient {
         client.connectionPool().evictAll();
     }
 
-    private static class InputStreamRequestBody extends RequestBody {
+    /**
+     * Encodes the wrapped body as it is written to the connection.
+     */
+    private static class EncodedRequestBody extends RequestBody {
+        private final RequestBody body;
+        private final ContentEncoding encoding;
+
+        EncodedRequestBody(RequestBody body, ContentEncoding encoding) {
+            this.body = body;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return body.isOneShot();
+        }
+
+        @Override
+        public void writeTo(okio.BufferedSink sink) throws IOException {
+            try (okio.BufferedSink encoded = Okio.buffer(Okio.sink(encoding.encode(sink.outputStream())))) {
+                body.writeTo(encoded);
+            }
+        }
+    }
+
+    private static class ContentSourceRequestBody extends RequestBody {
         private final MediaType contentType;
-        private final InputStream inputStream;
+        private final ContentSource content;
 
-        InputStreamRequestBody(MediaType contentType, InputStream inputStream) {
+        ContentSourceRequestBody(MediaType contentType, ContentSource content) {
             this.contentType = contentType;
-            this.inputStream = inputStream;
+            this.content = content;
         }
 
         @Override
@@ -114,11 +236,20 @@ public class OkHttpClient extends AbstractHttpClient {
             return contentType;
         }
 
+        @Override
+        public long contentLength() {
+            return content.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return !content.isReplayable();
+        }
+
         @Override
         public void writeTo(okio.BufferedSink sink) throws IOException {
-            try (okio.Source source = okio.Okio.source(inputStream)) {
-                sink.writeAll(source);
-            }
+            // BufferedSink is a WritableByteChannel, file-backed content is transferred from its channel
+            content.writeTo((WritableByteChannel) sink);
         }
     }
-} 
+}
@@ -0,0 +1,153 @@
+package io.pdfapi.client.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking view of a {@link Flow.Publisher} of byte buffers, so that adapters can upload reactive
+ * content like any other stream. One buffer is requested at a time, which lets the upload's pace
+ * apply backpressure to the publisher. Closing the stream before its end cancels the subscription.
+ */
+final class PublisherInputStream extends InputStream implements Flow.Subscriber<ByteBuffer> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private Flow.Subscription subscription;
+    private ByteBuffer current;
+    private boolean done;
+    private boolean closed;
+    private Throwable error;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        lock.lock();
+        try {
+            if (this.subscription != null || closed) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        } finally {
+            lock.unlock();
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer buffer) {
+        lock.lock();
+        try {
+            if (!closed) {
+                current = buffer;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        lock.lock();
+        try {
+            this.error = error;
+            this.done = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        lock.lock();
+        try {
+            this.done = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        boolean requestNext = false;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (current != null) {
+                    int n = Math.min(len, current.remaining());
+                    current.get(b, off, n);
+                    if (!current.hasRemaining()) {
+                        current = null;
+                        requestNext = true;
+                    }
+                    return n;
+                }
+                if (done) {
+                    if (error != null) {
+                        throw new IOException("Failed to read published content", error);
+                    }
+                    return -1;
+                }
+                try {
+                    changed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        } finally {
+            lock.unlock();
+            if (requestNext) {
+                subscription.request(1);
+            }
+        }
+    }
+
+    @Override
+    public int available() {
+        lock.lock();
+        try {
+            return current != null ? current.remaining() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        Flow.Subscription toCancel;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = null;
+            toCancel = done ? null : subscription;
+        } finally {
+            lock.unlock();
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+}
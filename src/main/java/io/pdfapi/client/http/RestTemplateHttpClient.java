@@ -1,106 +1,214 @@
 package io.pdfapi.client.http;
 
-import org.jetbrains.annotations.NotNull;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.AbstractResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-import java.io.ByteArrayInputStream;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Adapter for Spring's {@link RestTemplate}. Uploads are only streamed if the template's request
+ * factory streams request bodies; Spring's default {@link SimpleClientHttpRequestFactory} buffers the
+ * whole body on the heap before sending it. Templates created by this adapter stream; templates
+ * passed in by the caller need a streaming request factory, such as a
+ * {@link SimpleClientHttpRequestFactory} with {@link SimpleClientHttpRequestFactory#setBufferRequestBody(boolean)}
+ * disabled or {@code HttpComponentsClientHttpRequestFactory} with {@code setBufferRequestBody(false)}.
+ */
 public class RestTemplateHttpClient extends AbstractHttpClient {
+    /**
+     * Chunk size of uploads of unknown length, larger than the default of 4 KiB to save chunk
+     * headers and writes.
+     */
+    static final int STREAMING_CHUNK_SIZE = 64 * 1024;
+
     private final RestTemplate restTemplate;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
 
     public RestTemplateHttpClient() {
-        this.restTemplate = new RestTemplate();
+        this(new RestTemplate(streamingRequestFactory(new SimpleClientHttpRequestFactory())));
     }
 
     public RestTemplateHttpClient(RestTemplate restTemplate) {
+        this(restTemplate, BlockingExecutors.DEFAULT_MAX_THREADS, BlockingExecutors.UNBOUNDED_QUEUE);
+    }
+
+    /**
+     * Runs the blocking requests on an own executor: a virtual thread per request on Java 21 and
+     * later, otherwise a pool of at most {@code maxThreads} threads with the given queue capacity.
+     */
+    public RestTemplateHttpClient(RestTemplate restTemplate, int maxThreads, int queueCapacity) {
         this.restTemplate = restTemplate;
+        this.ownedExecutor = BlockingExecutors.create(maxThreads, queueCapacity);
+        this.executor = ownedExecutor;
+    }
+
+    /**
+     * Runs the blocking requests on the given executor, which is not shut down with this client.
+     */
+    public RestTemplateHttpClient(RestTemplate restTemplate, Executor executor) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    /**
+     * Creates a template with the given timeouts and TLS session settings that streams request bodies,
+     * for use with the constructors of this adapter. Its {@link HttpURLConnection}s share the JVM-wide keep-alive
+     * cache, so the pool size and keep-alive of the settings don't apply; they are controlled by the
+     * {@code http.maxConnections} system property and the server's {@code Keep-Alive} header.
+     */
+    public static RestTemplate createRestTemplate(int timeoutSeconds, ConnectionSettings connections) {
+        SSLSocketFactory socketFactory = connections.isDefaultTls() ? null : connections.sslContext().getSocketFactory();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                if (socketFactory != null && connection instanceof HttpsURLConnection) {
+                    ((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+                }
+            }
+        };
+        int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        return new RestTemplate(streamingRequestFactory(requestFactory));
+    }
+
+    /**
+     * Configures the factory to write request bodies straight to the connection: with a fixed length
+     * where it is known, otherwise in chunks.
+     */
+    static SimpleClientHttpRequestFactory streamingRequestFactory(SimpleClientHttpRequestFactory requestFactory) {
+        requestFactory.setBufferRequestBody(false);
+        requestFactory.setChunkSize(STREAMING_CHUNK_SIZE);
+        return requestFactory;
     }
 
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
-        return CompletableFuture.supplyAsync(() -> {
-            HttpHeaders httpHeaders = createHeaders(headers);
-            httpHeaders.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(jsonBody, httpHeaders);
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
 
-            return restTemplate.execute(url, HttpMethod.POST, request -> {
-                request.getHeaders().putAll(entity.getHeaders());
-                request.getBody().write(jsonBody.getBytes());
-            }, response -> new StreamingHttpResponse(response.getStatusCode().value(), readContent(response), response, mapHeaders(response.getHeaders())));
-        });
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
+        return CompletableFuture.supplyAsync(() -> execute(url, HttpMethod.POST, headers, request -> {
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            request.getHeaders().setContentLength(jsonBody.length);
+            request.getBody().write(jsonBody);
+        }), executor);
     }
 
     @Override
     protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
                                                           InputStream content, String contentType, String partName) {
-        return CompletableFuture.supplyAsync(() -> {
-            HttpHeaders httpHeaders = createHeaders(headers);
-            httpHeaders.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
 
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
+        return CompletableFuture.supplyAsync(() -> {
+            HttpHeaders partHeaders = new HttpHeaders();
+            partHeaders.setContentType(MediaType.parseMediaType(contentType));
             MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add(partName, new InputStreamResource(content) {
-                @Override
-                public String getFilename() {
-                    return fileName;
-                }
+            body.add(partName, new HttpEntity<>(new ContentSourceResource(content, fileName), partHeaders));
 
-                @Override
-                public long contentLength() {
-                    return -1; // Length unknown
+            ContentEncoding encoding = ContentEncoding.forRequest(headers);
+            return execute(url, HttpMethod.POST, headers, request -> {
+                if (encoding == null) {
+                    formConverter().write(body, MediaType.MULTIPART_FORM_DATA, request);
+                    return;
+                }
+                try (EncodedOutputMessage encoded = new EncodedOutputMessage(request, encoding)) {
+                    formConverter().write(body, MediaType.MULTIPART_FORM_DATA, encoded);
                 }
             });
-
-            HttpEntity<MultiValueMap<String, Object>> entity = new HttpEntity<>(body, httpHeaders);
-            ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.POST, entity, byte[].class);
-            final var bodyData = Optional.ofNullable(response.getBody()).map(ByteArrayInputStream::new).orElse(null);
-            return new StreamingHttpResponse(response.getStatusCodeValue(), bodyData, null, response.getHeaders());
-        });
+        }, executor);
     }
 
     @Override
     protected CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers) {
-        return CompletableFuture.supplyAsync(() -> {
-            HttpHeaders httpHeaders = createHeaders(headers);
-            HttpEntity<?> entity = new HttpEntity<>(httpHeaders);
+        return CompletableFuture.supplyAsync(() -> execute(url, HttpMethod.GET, headers, request -> {
+        }), executor);
+    }
 
-            return restTemplate.execute(url, HttpMethod.GET, request -> {
-                request.getHeaders().putAll(entity.getHeaders());
-            }, response -> new StreamingHttpResponse(response.getStatusCode().value(), readContent(response), response, mapHeaders(response.getHeaders())));
-        });
+    /**
+     * Executes the request through the template's request factory (keeping its interceptors) instead of
+     * {@link RestTemplate#execute}, which would close the response before the body could be streamed.
+     * The response stays open until the returned {@link HttpResponse} or its body stream is closed.
+     */
+    private HttpResponse execute(String url, HttpMethod method, Map<String, String> headers, RequestWriter writer) {
+        ClientHttpResponse response = null;
+        try {
+            ClientHttpRequest request = restTemplate.getRequestFactory()
+                    .createRequest(restTemplate.getUriTemplateHandler().expand(url), method);
+            headers.forEach(request.getHeaders()::add);
+            writer.write(request);
+            response = request.execute();
+            return new StreamingHttpResponse(response.getRawStatusCode(), body(response), response,
+                    mapHeaders(response.getHeaders()));
+        } catch (IOException e) {
+            if (response != null) {
+                response.close();
+            }
+            throw new RuntimeException(e);
+        }
     }
 
-    @NotNull
-    private static InputStream readContent(ClientHttpResponse response) throws IOException {
-        try (final var content = response.getBody()) {
-            return new ByteArrayInputStream(content.readAllBytes());
+    /**
+     * {@link HttpURLConnection} fails to open the body of an error response without content, which is
+     * returned as an empty body instead.
+     */
+    private static InputStream body(ClientHttpResponse response) throws IOException {
+        try {
+            return response.getBody();
+        } catch (IOException e) {
+            if (response.getRawStatusCode() >= 400) {
+                return InputStream.nullInputStream();
+            }
+            throw e;
         }
     }
 
-    private HttpHeaders createHeaders(Map<String, String> headers) {
-        HttpHeaders httpHeaders = new HttpHeaders();
-        headers.forEach(httpHeaders::add);
-        return httpHeaders;
+    private FormHttpMessageConverter formConverter() {
+        return restTemplate.getMessageConverters().stream()
+                .filter(FormHttpMessageConverter.class::isInstance)
+                .map(FormHttpMessageConverter.class::cast)
+                .findFirst()
+                .orElseGet(FormHttpMessageConverter::new);
     }
 
     @Override
     protected void closeInternal() {
         // RestTemplate doesn't require explicit cleanup
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
     }
 
     private Map<String, List<String>> mapHeaders(HttpHeaders headers) {
@@ -110,4 +218,80 @@ public class RestTemplateHttpClient extends AbstractHttpClient {
                         Map.Entry::getValue
                 ));
     }
-} 
+
+    @FunctionalInterface
+    private interface RequestWriter {
+        void write(ClientHttpRequest request) throws IOException;
+    }
+
+    /**
+     * Request whose body is encoded as it is written. The body is only opened when the converter asks
+     * for it, after it has set the multipart content type, as a streaming request sends its headers
+     * when its body is opened.
+     */
+    private static final class EncodedOutputMessage implements HttpOutputMessage, Closeable {
+        private final ClientHttpRequest request;
+        private final ContentEncoding encoding;
+        private OutputStream body;
+
+        EncodedOutputMessage(ClientHttpRequest request, ContentEncoding encoding) {
+            this.request = request;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                body = encoding.encode(request.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            }
+        }
+    }
+
+    private static class ContentSourceResource extends AbstractResource {
+        private final ContentSource content;
+        private final String fileName;
+
+        ContentSourceResource(ContentSource content, String fileName) {
+            this.content = content;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return content.openStream();
+        }
+
+        @Override
+        public String getFilename() {
+            return fileName;
+        }
+
+        @Override
+        public long contentLength() {
+            return content.contentLength();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Upload content [" + fileName + "]";
+        }
+    }
+}
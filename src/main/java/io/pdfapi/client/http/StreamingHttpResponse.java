@@ -1,21 +1,53 @@
 package io.pdfapi.client.http;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 
+/**
+ * Response whose body is streamed from the connection. A body with a {@link ContentEncoding} is
+ * decoded as it is read, since not all clients decode the codings they were asked to accept; such a
+ * body is therefore only available as a stream.
+ */
 public class StreamingHttpResponse implements HttpResponse {
     private final int statusCode;
-    private final InputStream bodyStream;
+    private final Supplier<InputStream> bodyOpener;
+    private final Flow.Publisher<ByteBuffer> bodyPublisher;
     private final AutoCloseable responseToClose;
     private final Map<String, List<String>> headers;
+    private final ContentEncoding encoding;
+    private InputStream bodyStream;
+    private boolean published;
 
     public StreamingHttpResponse(int statusCode, InputStream bodyStream, AutoCloseable responseToClose, Map<String, List<String>> headers) {
+        this(statusCode, bodyStream == null ? null : () -> bodyStream, null, responseToClose, headers);
+    }
+
+    /**
+     * Response whose body is consumed either as a stream or as a publisher. The stream is only opened
+     * when it is asked for, or when the response is closed without its body having been consumed.
+     *
+     * @param bodyOpener    opens the body stream, {@code null} if the response has no body
+     * @param bodyPublisher publishes the same body, {@code null} if the adapter only provides a stream
+     */
+    public StreamingHttpResponse(int statusCode, Supplier<InputStream> bodyOpener, Flow.Publisher<ByteBuffer> bodyPublisher,
+                                 AutoCloseable responseToClose, Map<String, List<String>> headers) {
         this.statusCode = statusCode;
-        this.bodyStream = bodyStream;
+        this.bodyOpener = bodyOpener;
+        this.bodyPublisher = bodyPublisher;
         this.responseToClose = responseToClose;
-        this.headers = headers;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            this.headers.putAll(headers);
+        }
+        this.encoding = ContentEncoding.of(getHeader(ContentEncoding.HEADER).orElse(null));
     }
 
     @Override
@@ -24,20 +56,53 @@ public class StreamingHttpResponse implements HttpResponse {
     }
 
     @Override
-    public InputStream getBodyAsStream() {
+    public synchronized InputStream getBodyAsStream() {
+        if (published) {
+            throw new IllegalStateException("Response body is already published");
+        }
+        if (bodyStream == null && bodyOpener != null) {
+            InputStream stream = bodyOpener.get();
+            bodyStream = encoding == null || stream == null ? stream : new DecodingInputStream(stream, encoding);
+        }
         return bodyStream;
     }
 
+    /**
+     * Once the body is published, the subscriber releases the connection by reading to the end or
+     * cancelling; closing the response no longer does.
+     */
+    @Override
+    public synchronized Flow.Publisher<ByteBuffer> getBodyAsPublisher() {
+        if (bodyPublisher == null || encoding != null) {
+            return null;
+        }
+        if (bodyStream != null || published) {
+            throw new IllegalStateException("Response body is already consumed");
+        }
+        published = true;
+        return bodyPublisher;
+    }
+
     @Override
     public Optional<String> getLocationHeader() {
-        return headers.get("Location").stream().findFirst();
+        return getHeader("Location");
+    }
+
+    @Override
+    public Optional<String> getHeader(String name) {
+        return headers.getOrDefault(name, List.of()).stream().findFirst();
     }
 
     @Override
     public void close() {
+        InputStream stream;
+        synchronized (this) {
+            // Opened to be closed right away, which lets the adapter abandon a body that was never read
+            stream = published ? null : getBodyAsStream();
+        }
         try {
-            if (bodyStream != null) {
-                bodyStream.close();
+            if (stream != null) {
+                stream.close();
             }
             if (responseToClose != null) {
                 responseToClose.close();
@@ -46,4 +111,51 @@ public class StreamingHttpResponse implements HttpResponse {
             throw new RuntimeException("Failed to close response", e);
         }
     }
+
+    /**
+     * Creates the decoder on the first read, as gzip decoding reads the member header right away,
+     * which would block on, or fail for, a body that is never read.
+     */
+    private static class DecodingInputStream extends FilterInputStream {
+        private final ContentEncoding encoding;
+        private boolean decoding;
+
+        DecodingInputStream(InputStream body, ContentEncoding encoding) {
+            super(body);
+            this.encoding = encoding;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (!decoding) {
+                decoding = true;
+                in = encoding.decode(in);
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return decoded().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decoding ? in.available() : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 } 
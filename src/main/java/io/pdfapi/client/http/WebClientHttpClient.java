@@ -0,0 +1,183 @@
+package io.pdfapi.client.http;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.IdentityCipherSuiteFilter;
+import io.netty.handler.ssl.JdkSslContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapter for Spring's reactive {@link WebClient} on Reactor Netty. Requests and responses are
+ * handled on the Netty event loops, so no thread waits while a request is in flight. Multipart
+ * bodies are sent as a stream of data buffers read from their source, and response bodies are
+ * handed to the caller as a stream that pulls one buffer at a time from the connection, or published
+ * as they arrive.
+ */
+public class WebClientHttpClient extends AbstractHttpClient {
+    private static final int UPLOAD_BUFFER_SIZE = 8192;
+
+    private final WebClient webClient;
+    private final ConnectionProvider connectionProvider;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    public WebClientHttpClient(int timeoutSeconds) {
+        this(timeoutSeconds, ConnectionSettings.DEFAULTS);
+    }
+
+    /**
+     * Pools up to the configured number of connections per host and closes those idle for longer
+     * than the keep-alive period.
+     */
+    public WebClientHttpClient(int timeoutSeconds, ConnectionSettings connections) {
+        this.connectionProvider = ConnectionProvider.builder("pdfapi")
+                .maxConnections(connections.getMaxConnections())
+                .maxIdleTime(Duration.ofSeconds(connections.getKeepAliveSeconds()))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeoutSeconds * 1000)
+                .responseTimeout(Duration.ofSeconds(timeoutSeconds));
+        if (!connections.isDefaultTls()) {
+            JdkSslContext sslContext = new JdkSslContext(connections.sslContext(), true, null,
+                    IdentityCipherSuiteFilter.INSTANCE, null, ClientAuth.NONE, null, false);
+            httpClient = httpClient.secure(spec -> spec.sslContext(sslContext));
+        }
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    /**
+     * Uses a pre-configured client. Its connection resources are not released when this adapter is closed.
+     */
+    public WebClientHttpClient(WebClient webClient) {
+        this.webClient = webClient;
+        this.connectionProvider = null;
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String jsonBody) {
+        return executePost(url, headers, jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, byte[] jsonBody) {
+        return send(webClient.post()
+                .uri(url)
+                .headers(h -> headers.forEach(h::add))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonBody));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          InputStream content, String contentType, String partName) {
+        return executePost(url, headers, fileName, ContentSource.ofStream(content), contentType, partName);
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executePost(String url, Map<String, String> headers, String fileName,
+                                                          ContentSource content, String contentType, String partName) {
+        MultipartBody body = MultipartBody.of(partName, fileName, contentType, content);
+        ContentEncoding encoding = ContentEncoding.forRequest(headers);
+        return send(webClient.post()
+                .uri(url)
+                .headers(h -> {
+                    headers.forEach(h::add);
+                    h.set("Content-Type", body.contentType());
+                    if (encoding == null && body.contentLength() != ContentSource.UNKNOWN_LENGTH) {
+                        h.setContentLength(body.contentLength());
+                    }
+                })
+                .body(BodyInserters.fromDataBuffers(dataBuffers(body, encoding))));
+    }
+
+    @Override
+    protected CompletableFuture<HttpResponse> executeGet(String url, Map<String, String> headers) {
+        return send(webClient.get()
+                .uri(url)
+                .headers(h -> headers.forEach(h::add)));
+    }
+
+    /**
+     * Non-2xx responses are returned like any other, the client inspects the status code itself. The
+     * hand-over runs off the event loop because the client may read the body synchronously when the
+     * future completes.
+     */
+    private CompletableFuture<HttpResponse> send(WebClient.RequestHeadersSpec<?> request) {
+        return request.retrieve()
+                .onStatus(status -> true, response -> Mono.empty())
+                .toEntityFlux(DataBuffer.class)
+                .publishOn(Schedulers.boundedElastic())
+                .map(this::toResponse)
+                .toFuture();
+    }
+
+    /**
+     * The body is subscribed once the caller reads it as a stream or a publisher, or closes the
+     * response, which then releases the connection. Published buffers are copied off the connection's
+     * pooled buffers, which are released right away.
+     */
+    private HttpResponse toResponse(ResponseEntity<Flux<DataBuffer>> entity) {
+        Flux<DataBuffer> buffers = entity.getBody() != null ? entity.getBody() : Flux.empty();
+        Flux<ByteBuffer> published = buffers.map(buffer -> {
+            try {
+                byte[] copy = new byte[buffer.readableByteCount()];
+                buffer.read(copy);
+                return ByteBuffer.wrap(copy);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        });
+        return new StreamingHttpResponse(entity.getStatusCodeValue(), () -> {
+            DataBufferInputStream body = new DataBufferInputStream();
+            buffers.subscribe(body);
+            return body;
+        }, JdkFlowAdapter.publisherToFlowPublisher(published), null, entity.getHeaders());
+    }
+
+    /**
+     * The content is read in chunks on a worker thread as Netty requests more data, so a slow upload
+     * never holds more than a few buffers in memory. An encoded body is read from a stream that
+     * encodes the whole body.
+     */
+    private Flux<DataBuffer> dataBuffers(MultipartBody body, ContentEncoding encoding) {
+        if (encoding != null) {
+            return DataBufferUtils.readInputStream(() -> encoding.encode(body.openStream()), bufferFactory,
+                            UPLOAD_BUFFER_SIZE)
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        Flux<DataBuffer> content = DataBufferUtils.readInputStream(body.content()::openStream, bufferFactory,
+                        UPLOAD_BUFFER_SIZE)
+                .subscribeOn(Schedulers.boundedElastic());
+        return Flux.concat(Mono.fromCallable(() -> bufferFactory.wrap(body.head())), content,
+                Mono.fromCallable(() -> bufferFactory.wrap(body.tail())));
+    }
+
+    @Override
+    protected void closeInternal() {
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+    }
+}
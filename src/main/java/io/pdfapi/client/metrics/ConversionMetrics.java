@@ -0,0 +1,99 @@
+package io.pdfapi.client.metrics;
+
+/**
+ * Receives measurements of every stage of a conversion. All methods have empty defaults, so an
+ * implementation only overrides what it records. Methods are called from the HTTP client's threads
+ * and must not block.
+ *
+ * @see MicrometerConversionMetrics
+ */
+public interface ConversionMetrics {
+    /**
+     * Records nothing. The client skips all measuring when this instance is configured.
+     */
+    ConversionMetrics NOOP = new ConversionMetrics() {
+    };
+
+    /**
+     * Stages of a conversion, in the order they run.
+     */
+    enum Stage {
+        /** Creating the conversion with its properties. */
+        INITIALIZE,
+        /** Uploading or attaching a single asset. */
+        UPLOAD,
+        /** Submitting the HTML and starting the conversion. */
+        CONVERT,
+        /** Waiting for the result, from the started conversion to the result response. */
+        POLLING,
+        /** Reading the PDF, from the result response until its stream is closed. */
+        DOWNLOAD
+    }
+
+    /**
+     * Called when a stage starts, for in-flight gauges.
+     */
+    default void stageStarted(Stage stage) {
+    }
+
+    /**
+     * Called when a stage has finished.
+     *
+     * @param durationNanos time the stage took
+     * @param error         cause of the failure, {@code null} if the stage succeeded; errors caused by an
+     *                      error response are {@link io.pdfapi.client.PdfApiClientException}s carrying
+     *                      the status code
+     */
+    default void stageCompleted(Stage stage, long durationNanos, Throwable error) {
+    }
+
+    /**
+     * Called for every status check answered by the server.
+     *
+     * @param ready whether the result was ready, {@code false} if the conversion was still in progress
+     */
+    default void statusChecked(boolean ready) {
+    }
+
+    /**
+     * Called when the first request of a conversion has been answered successfully, to compare
+     * requests that found an open connection with those that had to establish one.
+     *
+     * @param warm          whether the client had used its connections within the keep-alive period,
+     *                      including by warming them up
+     * @param durationNanos time until the response, including retries
+     */
+    default void firstRequestCompleted(boolean warm, long durationNanos) {
+    }
+
+    /**
+     * Called after an asset or HTML upload of known length succeeded.
+     */
+    default void bytesUploaded(long bytes) {
+    }
+
+    /**
+     * Called once per conversion with an {@link io.pdfapi.client.AssetOptimizer}, when its HTML and
+     * assets have been optimized.
+     *
+     * @param originalBytes  size of the examined content before optimization
+     * @param optimizedBytes size of the same content after optimization
+     */
+    default void assetsOptimized(long originalBytes, long optimizedBytes) {
+    }
+
+    /**
+     * Called for every conversion looked up in the {@link io.pdfapi.client.ResultCache}. Conversions
+     * whose content is too large to be keyed are not looked up.
+     *
+     * @param hit whether the result was cached, {@code false} if the conversion was sent to the API
+     */
+    default void resultCacheChecked(boolean hit) {
+    }
+
+    /**
+     * Called when a PDF stream is closed, with the number of bytes read from it.
+     */
+    default void bytesDownloaded(long bytes) {
+    }
+}
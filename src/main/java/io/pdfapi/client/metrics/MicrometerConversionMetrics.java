@@ -0,0 +1,186 @@
+package io.pdfapi.client.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.pdfapi.client.PdfApiClientException;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records conversion metrics in a Micrometer {@link MeterRegistry}. Requires
+ * {@code io.micrometer:micrometer-core} on the classpath.
+ * <ul>
+ *     <li>{@code pdfapi.stage}: timer per {@code stage}, with {@code outcome} {@code success} or
+ *     {@code failure} and the HTTP {@code status} of failed stages ({@code none} if there was no
+ *     error response)</li>
+ *     <li>{@code pdfapi.stage.active}: gauge of stages in flight, per {@code stage}</li>
+ *     <li>{@code pdfapi.first.request}: timer of the first request of each conversion, per {@code pool}
+ *     {@code warm} or {@code cold}</li>
+ *     <li>{@code pdfapi.status.checks}: counter of status checks, per {@code result} {@code pending}
+ *     or {@code ready}</li>
+ *     <li>{@code pdfapi.bytes.uploaded} and {@code pdfapi.bytes.downloaded}: counters of transferred
+ *     bytes</li>
+ *     <li>{@code pdfapi.bytes.saved}: summary of the bytes saved by asset optimization, per conversion</li>
+ *     <li>{@code pdfapi.result.cache}: counter of result cache lookups, per {@code result} {@code hit}
+ *     or {@code miss}</li>
+ * </ul>
+ */
+public final class MicrometerConversionMetrics implements ConversionMetrics {
+    private static final String NO_STATUS = "none";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Map<Stage, Timer> successTimers = new EnumMap<>(Stage.class);
+    private final Map<Stage, AtomicInteger> active = new EnumMap<>(Stage.class);
+    private final Timer warmFirstRequests;
+    private final Timer coldFirstRequests;
+    private final Counter pendingChecks;
+    private final Counter readyChecks;
+    private final Counter bytesUploaded;
+    private final Counter bytesDownloaded;
+    private final DistributionSummary bytesSaved;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public MicrometerConversionMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * @param tags added to every meter, for example to tell several clients apart
+     */
+    public MicrometerConversionMetrics(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = Objects.requireNonNull(registry, "Registry must not be null");
+        this.tags = Tags.of(tags);
+        for (Stage stage : Stage.values()) {
+            successTimers.put(stage, stageTimer(stage, "success", NO_STATUS));
+            AtomicInteger inFlight = new AtomicInteger();
+            active.put(stage, inFlight);
+            Gauge.builder("pdfapi.stage.active", inFlight, AtomicInteger::get)
+                    .description("Conversion stages in flight")
+                    .tags(this.tags)
+                    .tag("stage", name(stage))
+                    .register(registry);
+        }
+        this.warmFirstRequests = firstRequests("warm");
+        this.coldFirstRequests = firstRequests("cold");
+        this.pendingChecks = statusChecks("pending");
+        this.readyChecks = statusChecks("ready");
+        this.bytesUploaded = Counter.builder("pdfapi.bytes.uploaded")
+                .description("Bytes of HTML and assets uploaded")
+                .baseUnit("bytes")
+                .tags(this.tags)
+                .register(registry);
+        this.bytesDownloaded = Counter.builder("pdfapi.bytes.downloaded")
+                .description("Bytes of PDF results read")
+                .baseUnit("bytes")
+                .tags(this.tags)
+                .register(registry);
+        this.bytesSaved = DistributionSummary.builder("pdfapi.bytes.saved")
+                .description("Bytes saved by optimizing the HTML and assets of a conversion")
+                .baseUnit("bytes")
+                .tags(this.tags)
+                .register(registry);
+        this.cacheHits = resultCache("hit");
+        this.cacheMisses = resultCache("miss");
+    }
+
+    @Override
+    public void stageStarted(Stage stage) {
+        active.get(stage).incrementAndGet();
+    }
+
+    @Override
+    public void stageCompleted(Stage stage, long durationNanos, Throwable error) {
+        active.get(stage).decrementAndGet();
+        Timer timer = error == null ? successTimers.get(stage) : stageTimer(stage, "failure", status(error));
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void firstRequestCompleted(boolean warm, long durationNanos) {
+        (warm ? warmFirstRequests : coldFirstRequests).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void statusChecked(boolean ready) {
+        (ready ? readyChecks : pendingChecks).increment();
+    }
+
+    @Override
+    public void bytesUploaded(long bytes) {
+        bytesUploaded.increment(bytes);
+    }
+
+    @Override
+    public void bytesDownloaded(long bytes) {
+        bytesDownloaded.increment(bytes);
+    }
+
+    @Override
+    public void assetsOptimized(long originalBytes, long optimizedBytes) {
+        bytesSaved.record(originalBytes - optimizedBytes);
+    }
+
+    @Override
+    public void resultCacheChecked(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    private Timer stageTimer(Stage stage, String outcome, String status) {
+        return Timer.builder("pdfapi.stage")
+                .description("Duration of conversion stages")
+                .tags(tags)
+                .tag("stage", name(stage))
+                .tag("outcome", outcome)
+                .tag("status", status)
+                .register(registry);
+    }
+
+    private Timer firstRequests(String pool) {
+        return Timer.builder("pdfapi.first.request")
+                .description("Latency of the first request of a conversion")
+                .tags(tags)
+                .tag("pool", pool)
+                .register(registry);
+    }
+
+    private Counter statusChecks(String result) {
+        return Counter.builder("pdfapi.status.checks")
+                .description("Status checks of conversion results")
+                .tags(tags)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Counter resultCache(String result) {
+        return Counter.builder("pdfapi.result.cache")
+                .description("Lookups of conversion results in the result cache")
+                .tags(tags)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static String status(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof PdfApiClientException && ((PdfApiClientException) t).getStatusCode() > 0) {
+                return Integer.toString(((PdfApiClientException) t).getStatusCode());
+            }
+        }
+        return NO_STATUS;
+    }
+
+    private static String name(Stage stage) {
+        return stage.name().toLowerCase(Locale.ROOT);
+    }
+}
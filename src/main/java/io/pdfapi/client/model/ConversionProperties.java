@@ -2,7 +2,7 @@ package io.pdfapi.client.model;
 
 import java.util.Objects;
 
-public class ConversionProperties {
+public final class ConversionProperties {
     private final PageFormat format;
     private final String headerFile;
     private final String footerFile;
@@ -43,6 +43,37 @@ public class ConversionProperties {
         return landscape;
     }
 
+    /**
+     * Properties are equal if they describe the same conversion, so they can key caches of their
+     * serialized form.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConversionProperties)) {
+            return false;
+        }
+        ConversionProperties other = (ConversionProperties) o;
+        return format == other.format
+                && Float.compare(scale, other.scale) == 0
+                && landscape == other.landscape
+                && margin.equals(other.margin)
+                && Objects.equals(headerFile, other.headerFile)
+                && Objects.equals(footerFile, other.footerFile);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = format.hashCode();
+        result = 31 * result + Float.hashCode(scale);
+        result = 31 * result + Boolean.hashCode(landscape);
+        result = 31 * result + margin.hashCode();
+        result = 31 * result + Objects.hashCode(headerFile);
+        return 31 * result + Objects.hashCode(footerFile);
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -1,6 +1,6 @@
 package io.pdfapi.client.model;
 
-public class Margin {
+public final class Margin {
     private final int top;
     private final int bottom;
     private final int left;
@@ -29,6 +29,23 @@ public class Margin {
         return right;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Margin)) {
+            return false;
+        }
+        Margin other = (Margin) o;
+        return top == other.top && bottom == other.bottom && left == other.left && right == other.right;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((top * 31 + bottom) * 31 + left) * 31 + right;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -1,15 +1,37 @@
 package io.pdfapi.client.model;
 
 public enum PageFormat {
-    Letter,
-    Legal,
-    Tabloid,
-    Ledger,
-    A0,
-    A1,
-    A2,
-    A3,
-    A4,
-    A5,
-    A6
-} 
\ No newline at end of file
+    Letter(8.5, 11),
+    Legal(8.5, 14),
+    Tabloid(11, 17),
+    Ledger(17, 11),
+    A0(33.11, 46.81),
+    A1(23.39, 33.11),
+    A2(16.54, 23.39),
+    A3(11.69, 16.54),
+    A4(8.27, 11.69),
+    A5(5.83, 8.27),
+    A6(4.13, 5.83);
+
+    private final double widthInches;
+    private final double heightInches;
+
+    PageFormat(double widthInches, double heightInches) {
+        this.widthInches = widthInches;
+        this.heightInches = heightInches;
+    }
+
+    /**
+     * @return width of the page without landscape rotation, in inches
+     */
+    public double getWidthInches() {
+        return widthInches;
+    }
+
+    /**
+     * @return height of the page without landscape rotation, in inches
+     */
+    public double getHeightInches() {
+        return heightInches;
+    }
+}
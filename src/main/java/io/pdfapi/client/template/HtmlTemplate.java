@@ -0,0 +1,188 @@
+package io.pdfapi.client.template;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * HTML template compiled once and rendered per conversion, as the index document uploaded with a
+ * {@link io.pdfapi.client.ConversionRequest}. Rendering streams straight into the upload, so no
+ * document is held on the heap as a whole.
+ * <p>
+ * The syntax is a subset of Mustache. Names are looked up in the model's maps, innermost section
+ * first; dotted names descend into nested maps and {@code .} is the current section item.
+ * <ul>
+ *     <li>{@code {{name}}}: the value, HTML-escaped</li>
+ *     <li>{@code {{{name}}}} or {@code {{&name}}}: the value as is</li>
+ *     <li>{@code {{#name}}...{{/name}}}: rendered once per item of a collection or array, once for
+ *     {@code true} or any other value, and not at all for {@code null}, {@code false} or an empty
+ *     collection</li>
+ *     <li>{@code {{^name}}...{{/name}}}: rendered only where the section above is not</li>
+ *     <li>{@code {{! comment}}}: omitted</li>
+ * </ul>
+ * Templates are immutable and may be rendered concurrently.
+ */
+public final class HtmlTemplate {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final Pattern NAME = Pattern.compile("\\.|[^\\s.{}#^/!&]+(\\.[^\\s.{}#^/!&]+)*");
+
+    private final List<Node> nodes;
+
+    private HtmlTemplate(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a tag is not closed, a section not ended or a name invalid
+     */
+    public static HtmlTemplate compile(String template) {
+        Objects.requireNonNull(template, "Template must not be null");
+        return new HtmlTemplate(parse(template));
+    }
+
+    /**
+     * Compiles a UTF-8 encoded template file.
+     */
+    public static HtmlTemplate compile(Path templateFile) throws IOException {
+        Objects.requireNonNull(templateFile, "Template file must not be null");
+        return compile(Files.readString(templateFile, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param model values referenced by the template, read when the content is uploaded and on every
+     *              retry, so it must not change until the conversion has completed
+     * @return content rendering the template with the model whenever it is read
+     */
+    public TemplateContent render(Map<String, ?> model) {
+        return new TemplateContent(this, Objects.requireNonNull(model, "Model must not be null"));
+    }
+
+    List<Node> nodes() {
+        return nodes;
+    }
+
+    private static List<Node> parse(String template) {
+        Deque<Section> open = new ArrayDeque<>();
+        Deque<List<Node>> targets = new ArrayDeque<>();
+        targets.push(new ArrayList<>());
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf(OPEN, position);
+            if (start < 0) {
+                addText(targets.peek(), template.substring(position));
+                break;
+            }
+            addText(targets.peek(), template.substring(position, start));
+
+            boolean triple = template.startsWith("{", start + OPEN.length());
+            String close = triple ? "}" + CLOSE : CLOSE;
+            int tagStart = start + OPEN.length() + (triple ? 1 : 0);
+            int end = template.indexOf(close, tagStart);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed tag at offset " + start);
+            }
+            position = end + close.length();
+            String tag = template.substring(tagStart, end).trim();
+            char type = triple || tag.isEmpty() ? 0 : tag.charAt(0);
+
+            switch (type) {
+                case '!':
+                    break;
+                case '#':
+                case '^': {
+                    Section section = new Section(name(tag.substring(1), start), type == '^');
+                    targets.peek().add(section);
+                    open.push(section);
+                    targets.push(section.children);
+                    break;
+                }
+                case '/': {
+                    String name = tag.substring(1).trim();
+                    if (open.isEmpty() || !open.peek().name.equals(name)) {
+                        throw new IllegalArgumentException("Unexpected end of section " + name + " at offset " + start);
+                    }
+                    open.pop();
+                    targets.pop();
+                    break;
+                }
+                case '&':
+                    targets.peek().add(new Variable(name(tag.substring(1), start), false));
+                    break;
+                default:
+                    targets.peek().add(new Variable(name(tag, start), !triple));
+            }
+        }
+        if (!open.isEmpty()) {
+            throw new IllegalArgumentException("Section " + open.peek().name + " is not ended");
+        }
+        return Collections.unmodifiableList(targets.pop());
+    }
+
+    private static String name(String tag, int offset) {
+        String name = tag.trim();
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid name '" + name + "' at offset " + offset);
+        }
+        return name;
+    }
+
+    private static void addText(List<Node> target, String text) {
+        if (!text.isEmpty()) {
+            target.add(new Text(text.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    interface Node {
+    }
+
+    /**
+     * Static text, encoded when the template is compiled.
+     */
+    static final class Text implements Node {
+        final byte[] bytes;
+
+        Text(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    static final class Variable implements Node {
+        final String[] path;
+        final boolean escaped;
+
+        Variable(String name, boolean escaped) {
+            this.path = path(name);
+            this.escaped = escaped;
+        }
+    }
+
+    static final class Section implements Node {
+        final String name;
+        final String[] path;
+        final boolean inverted;
+        final List<Node> children = new ArrayList<>();
+
+        Section(String name, boolean inverted) {
+            this.name = name;
+            this.path = path(name);
+            this.inverted = inverted;
+        }
+    }
+
+    /**
+     * @return the dot-separated parts of the name, an empty path for the current item
+     */
+    private static String[] path(String name) {
+        return ".".equals(name) ? new String[0] : name.split("\\.");
+    }
+}
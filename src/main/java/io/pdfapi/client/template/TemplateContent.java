@@ -0,0 +1,34 @@
+package io.pdfapi.client.template;
+
+import io.pdfapi.client.http.ContentSource;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Content of a template rendered with a model. Every read renders the template again, so the content
+ * can be retried, but its length is only known once it has been rendered.
+ */
+public final class TemplateContent extends ContentSource {
+    private final HtmlTemplate template;
+    private final Map<String, ?> model;
+    private volatile long renderedBytes = UNKNOWN_LENGTH;
+
+    TemplateContent(HtmlTemplate template, Map<String, ?> model) {
+        this.template = template;
+        this.model = model;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new TemplateRenderer(template, model, bytes -> renderedBytes = bytes);
+    }
+
+    /**
+     * @return size of the last complete rendering, or {@link #UNKNOWN_LENGTH} if the content has not
+     * been read to its end yet
+     */
+    public long getRenderedBytes() {
+        return renderedBytes;
+    }
+}
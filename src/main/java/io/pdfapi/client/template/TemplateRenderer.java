@@ -0,0 +1,299 @@
+package io.pdfapi.client.template;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Renders a template as it is read. Static text is copied from its compiled bytes and values are
+ * escaped and UTF-8 encoded character by character into the caller's buffer, so nothing but the
+ * section state is allocated per rendering.
+ */
+final class TemplateRenderer extends InputStream {
+    private static final byte[] AMP = bytes("&amp;");
+    private static final byte[] LT = bytes("&lt;");
+    private static final byte[] GT = bytes("&gt;");
+    private static final byte[] QUOT = bytes("&quot;");
+    private static final byte[] APOS = bytes("&#39;");
+
+    private final List<Frame> frames = new ArrayList<>();
+    private final List<Object> contexts = new ArrayList<>();
+    private final LongConsumer completion;
+    private final byte[] single = new byte[1];
+    private long rendered;
+    private boolean done;
+
+    // Static text being copied
+    private byte[] text;
+    private int textOffset;
+
+    // Value being encoded
+    private String value;
+    private boolean escaped;
+    private int valueOffset;
+
+    // Encoded bytes of the current character that did not fit into the caller's buffer
+    private final byte[] pending = new byte[6];
+    private int pendingOffset;
+    private int pendingLength;
+
+    /**
+     * @param completion receives the number of rendered bytes once the end is reached
+     */
+    TemplateRenderer(HtmlTemplate template, Map<String, ?> model, LongConsumer completion) {
+        this.completion = completion;
+        contexts.add(model);
+        frames.add(new Frame(template.nodes(), null, false));
+    }
+
+    @Override
+    public int read() {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < len) {
+            if (pendingOffset < pendingLength) {
+                int n = Math.min(pendingLength - pendingOffset, len - written);
+                System.arraycopy(pending, pendingOffset, b, off + written, n);
+                pendingOffset += n;
+                written += n;
+            } else if (text != null) {
+                int n = Math.min(text.length - textOffset, len - written);
+                System.arraycopy(text, textOffset, b, off + written, n);
+                textOffset += n;
+                written += n;
+                if (textOffset == text.length) {
+                    text = null;
+                }
+            } else if (value != null) {
+                written += encode(b, off + written, len - written);
+            } else if (!advance()) {
+                break;
+            }
+        }
+        rendered += written;
+        if (written == 0) {
+            finish();
+            return -1;
+        }
+        return written;
+    }
+
+    @Override
+    public void close() {
+        frames.clear();
+        contexts.clear();
+        text = null;
+        value = null;
+    }
+
+    private void finish() {
+        if (!done) {
+            done = true;
+            completion.accept(rendered);
+        }
+    }
+
+    /**
+     * Encodes characters of the current value until the buffer is full or the value is written.
+     */
+    private int encode(byte[] b, int off, int len) {
+        int written = 0;
+        while (valueOffset < value.length()) {
+            int length = encodeChar(pending);
+            if (length <= len - written) {
+                System.arraycopy(pending, 0, b, off + written, length);
+                written += length;
+            } else {
+                int n = len - written;
+                System.arraycopy(pending, 0, b, off + written, n);
+                pendingOffset = n;
+                pendingLength = length;
+                written += n;
+                break;
+            }
+        }
+        if (valueOffset == value.length()) {
+            value = null;
+        }
+        return written;
+    }
+
+    /**
+     * Encodes the character at the value offset, or the surrogate pair starting there, and moves past it.
+     * Unpaired surrogates are replaced by {@code ?}, as {@link String#getBytes} does.
+     *
+     * @return number of bytes written to the target
+     */
+    private int encodeChar(byte[] target) {
+        char c = value.charAt(valueOffset++);
+        if (escaped) {
+            byte[] entity = entity(c);
+            if (entity != null) {
+                System.arraycopy(entity, 0, target, 0, entity.length);
+                return entity.length;
+            }
+        }
+        if (c < 0x80) {
+            target[0] = (byte) c;
+            return 1;
+        }
+        if (c < 0x800) {
+            target[0] = (byte) (0xc0 | c >> 6);
+            target[1] = (byte) (0x80 | c & 0x3f);
+            return 2;
+        }
+        if (Character.isSurrogate(c)) {
+            if (Character.isHighSurrogate(c) && valueOffset < value.length()
+                    && Character.isLowSurrogate(value.charAt(valueOffset))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(valueOffset++));
+                target[0] = (byte) (0xf0 | codePoint >> 18);
+                target[1] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                target[2] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                target[3] = (byte) (0x80 | codePoint & 0x3f);
+                return 4;
+            }
+            target[0] = '?';
+            return 1;
+        }
+        target[0] = (byte) (0xe0 | c >> 12);
+        target[1] = (byte) (0x80 | c >> 6 & 0x3f);
+        target[2] = (byte) (0x80 | c & 0x3f);
+        return 3;
+    }
+
+    private static byte[] entity(char c) {
+        switch (c) {
+            case '&':
+                return AMP;
+            case '<':
+                return LT;
+            case '>':
+                return GT;
+            case '"':
+                return QUOT;
+            case '\'':
+                return APOS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Moves to the next node that produces output.
+     *
+     * @return {@code false} at the end of the template
+     */
+    private boolean advance() {
+        while (!frames.isEmpty()) {
+            Frame frame = frames.get(frames.size() - 1);
+            if (frame.index < frame.nodes.size()) {
+                HtmlTemplate.Node node = frame.nodes.get(frame.index++);
+                if (node instanceof HtmlTemplate.Text) {
+                    text = ((HtmlTemplate.Text) node).bytes;
+                    textOffset = 0;
+                    return true;
+                }
+                if (node instanceof HtmlTemplate.Variable) {
+                    HtmlTemplate.Variable variable = (HtmlTemplate.Variable) node;
+                    Object resolved = lookup(variable.path);
+                    if (resolved != null) {
+                        value = resolved.toString();
+                        escaped = variable.escaped;
+                        valueOffset = 0;
+                        return true;
+                    }
+                } else {
+                    enter((HtmlTemplate.Section) node);
+                }
+            } else if (frame.items != null && frame.items.hasNext()) {
+                contexts.set(contexts.size() - 1, frame.items.next());
+                frame.index = 0;
+            } else {
+                if (frame.pushed) {
+                    contexts.remove(contexts.size() - 1);
+                }
+                frames.remove(frames.size() - 1);
+            }
+        }
+        return false;
+    }
+
+    private void enter(HtmlTemplate.Section section) {
+        Object resolved = lookup(section.path);
+        Iterator<?> items = null;
+        if (resolved instanceof Collection) {
+            items = ((Collection<?>) resolved).iterator();
+        } else if (resolved instanceof Object[]) {
+            items = Arrays.asList((Object[]) resolved).iterator();
+        } else if (resolved instanceof Iterable) {
+            items = ((Iterable<?>) resolved).iterator();
+        }
+        boolean empty = resolved == null || Boolean.FALSE.equals(resolved) || items != null && !items.hasNext();
+        if (section.inverted) {
+            if (empty) {
+                frames.add(new Frame(section.children, null, false));
+            }
+        } else if (!empty) {
+            if (items != null) {
+                contexts.add(items.next());
+                frames.add(new Frame(section.children, items, true));
+            } else if (Boolean.TRUE.equals(resolved)) {
+                frames.add(new Frame(section.children, null, false));
+            } else {
+                contexts.add(resolved);
+                frames.add(new Frame(section.children, null, true));
+            }
+        }
+    }
+
+    /**
+     * Resolves the first part of the path in the innermost context that has it, then descends into
+     * nested maps.
+     */
+    private Object lookup(String[] path) {
+        if (path.length == 0) {
+            return contexts.get(contexts.size() - 1);
+        }
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            Object context = contexts.get(i);
+            if (context instanceof Map && ((Map<?, ?>) context).containsKey(path[0])) {
+                Object resolved = ((Map<?, ?>) context).get(path[0]);
+                for (int part = 1; part < path.length && resolved != null; part++) {
+                    resolved = resolved instanceof Map ? ((Map<?, ?>) resolved).get(path[part]) : null;
+                }
+                return resolved;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Frame {
+        final List<HtmlTemplate.Node> nodes;
+        final Iterator<?> items;
+        final boolean pushed;
+        int index;
+
+        Frame(List<HtmlTemplate.Node> nodes, Iterator<?> items, boolean pushed) {
+            this.nodes = nodes;
+            this.items = items;
+            this.pushed = pushed;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Content-addressed asset deduplication")
+class AssetDeduplicationTest {
+    private static final String STYLE = "body { font-family: sans-serif; }";
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Repeated asset is attached by reference instead of being uploaded again")
+    void repeatedAssetIsAttachedByReference() {
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(
+                server.configBuilder().assetDeduplication(true).build())) {
+            convert(client);
+            convert(client);
+        }
+
+        assertEquals(1, multipartUploads());
+        assertEquals(1, referenceAttachments());
+    }
+
+    @Test
+    @DisplayName("Falls back to multipart upload when the server no longer knows the reference")
+    void fallsBackToUploadForUnknownReference() {
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(
+                server.configBuilder().assetDeduplication(true).build())) {
+            convert(client);
+            server.forgetAssets();
+            convert(client);
+            convert(client);
+        }
+
+        assertEquals(2, multipartUploads());
+        assertEquals(2, referenceAttachments());
+    }
+
+    @ParameterizedTest(name = "status {0}")
+    @ValueSource(ints = {400, 415, 422})
+    @DisplayName("Stops sending references when the server does not accept them")
+    void disablesReferencesWhenUnsupported(int status) {
+        server.setAssetReferenceRejection(status);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(
+                server.configBuilder().assetDeduplication(true).build())) {
+            convert(client);
+            convert(client);
+            convert(client);
+        }
+
+        assertEquals(3, multipartUploads());
+        assertEquals(1, referenceAttachments());
+    }
+
+    @Test
+    @DisplayName("Stops sending references after consecutive rejections of any kind")
+    void disablesReferencesAfterRepeatedRejections() {
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(
+                server.configBuilder().assetDeduplication(true).build())) {
+            convert(client);
+            for (int i = 0; i < 5; i++) {
+                server.forgetAssets();
+                convert(client);
+            }
+        }
+
+        assertEquals(6, multipartUploads());
+        assertEquals(PdfApiClient.MAX_REJECTED_ASSET_REFERENCES, referenceAttachments());
+    }
+
+    @Test
+    @DisplayName("Uploads every asset when deduplication is disabled")
+    void uploadsEveryAssetByDefault() {
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            convert(client);
+            convert(client);
+        }
+
+        assertEquals(2, multipartUploads());
+        assertEquals(0, referenceAttachments());
+    }
+
+    private void convert(PdfApiClient client) {
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent(stream("<html><link rel=\"stylesheet\" href=\"styles.css\"></html>"))
+                .addAsset(ConversionRequest.AssetInput.of(stream(STYLE), "styles.css"))
+                .build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        client.convert(request, output).join();
+        assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, output.toByteArray());
+    }
+
+    private long multipartUploads() {
+        return server.requests("POST", "/assets").stream()
+                .filter(LocalPdfApiServer.RecordedRequest::isMultipart)
+                .count();
+    }
+
+    private long referenceAttachments() {
+        return server.requests("POST", "/assets").stream()
+                .filter(r -> !r.isMultipart())
+                .count();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
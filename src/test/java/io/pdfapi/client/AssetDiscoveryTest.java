@@ -0,0 +1,151 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Asset discovery")
+class AssetDiscoveryTest {
+    private static final String HTML = "<!DOCTYPE html>\n<html><head>\n"
+            + "<link rel=\"stylesheet\" href=\"css/style.css?v=2\">\n"
+            + "<style>@import 'css/print.css'; body { background: url(img/back%20ground.png) }</style>\n"
+            + "<!-- <img src=\"commented.png\"> -->\n"
+            + "<script>document.write('<img src=\"scripted.png\">')</script>\n"
+            + "</head><body>\n"
+            + "<a href=\"other.html\">Other</a>\n"
+            + "<IMG SRC=logo.svg alt=\"Logo\">\n"
+            + "<img srcset=\"img/photo-1x.jpg 1x, img/photo-2x.jpg 2x\" src=\"/img/photo-1x.jpg#top\">\n"
+            + "<div style=\"background-image: url( 'img/tile.png' )\"></div>\n"
+            + "<img src=\"https://example.com/remote.png\"><img src=\"data:image/png;base64,AAAA\">\n"
+            + "<img src=\"missing.png\"><img src=\"../secret.txt\"><img src=\"/../secret.txt\">\n"
+            + "<img src=\"img/../../secret.txt\"><img src=\"linked.txt\">\n"
+            + "</body></html>\n";
+    private static final String CSS = "/* url(commented.png) */\n"
+            + "@font-face { font-family: Sans; src: url(\"../fonts/sans.woff2\") format('woff2'); }\n"
+            + "h1 { content: 'url(quoted.png)'; background: URL(../img/tile.png) }\n";
+
+    @TempDir
+    Path root;
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+        write("css/style.css", CSS);
+        write("css/print.css", "@import url(\"style.css\");");
+        for (String file : List.of("logo.svg", "img/back ground.png", "img/photo-1x.jpg", "img/photo-2x.jpg",
+                "img/tile.png", "fonts/sans.woff2", "commented.png", "scripted.png", "quoted.png", "other.html")) {
+            write(file, file);
+        }
+        write("../secret.txt", "secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Only files referenced by the HTML and its stylesheets are found")
+    void findsReferencedFiles() throws IOException {
+        List<ConversionRequest.AssetInput> assets = AssetDiscovery.discover(
+                ContentSource.ofBytes(HTML.getBytes(StandardCharsets.UTF_8)), root);
+
+        assertEquals(List.of("css/style.css", "css/print.css", "img/back ground.png", "logo.svg",
+                        "img/photo-1x.jpg", "img/photo-2x.jpg", "img/tile.png", "fonts/sans.woff2"),
+                assets.stream().map(ConversionRequest.AssetInput::getFileName).collect(Collectors.toList()));
+        try (InputStream logo = assets.get(3).getContent()) {
+            assertEquals("logo.svg", new String(logo.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("Symbolic links leading outside of the root are not followed")
+    void ignoresLinksOutsideOfRoot() throws IOException {
+        try {
+            Files.createSymbolicLink(root.resolve("linked.txt"), root.resolveSibling("secret.txt"));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.assumeTrue(false, "Symbolic links are not supported");
+        }
+        write("linked.svg", "inside");
+        Files.createSymbolicLink(root.resolve("img/linked.svg"), root.resolve("linked.svg"));
+        String html = "<img src=\"linked.txt\"><img src=\"img/linked.svg\">";
+
+        List<ConversionRequest.AssetInput> assets = AssetDiscovery.discover(
+                ContentSource.ofBytes(html.getBytes(StandardCharsets.UTF_8)), root);
+
+        assertEquals(1, assets.size());
+        assertEquals("img/linked.svg", assets.get(0).getFileName());
+    }
+
+    @Test
+    @DisplayName("Discovery needs a directory and replayable HTML")
+    void validatesRequest() {
+        assertThrows(IllegalStateException.class, () -> ConversionRequest.builder()
+                .htmlContent(HTML.getBytes(StandardCharsets.UTF_8))
+                .resourceRoot(root.resolve("logo.svg"))
+                .build());
+        assertThrows(IllegalStateException.class, () -> ConversionRequest.builder()
+                .htmlContent(new ByteArrayInputStream(HTML.getBytes(StandardCharsets.UTF_8)))
+                .resourceRoot(root)
+                .build());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Discovered files are uploaded next to explicitly added assets")
+    void uploadsDiscoveredFiles(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        byte[] logo = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent(HTML.getBytes(StandardCharsets.UTF_8))
+                .addAsset(ConversionRequest.AssetInput.of(logo, "logo.svg"))
+                .resourceRoot(root)
+                .build();
+        assertEquals(8, request.getAssets().size());
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build());
+             InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+        }
+
+        List<String> uploads = new ArrayList<>();
+        for (LocalPdfApiServer.RecordedRequest upload : server.requests("POST", "/assets")) {
+            String body = new String(upload.body, StandardCharsets.UTF_8);
+            uploads.add(body.substring(body.indexOf("filename=\"") + 10, body.indexOf('"', body.indexOf("filename=\"") + 10)));
+            if (body.contains("filename=\"logo.svg\"")) {
+                assertArrayEquals(logo, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+            }
+        }
+        assertEquals(8, uploads.size());
+        assertTrue(uploads.containsAll(List.of("css/style.css", "img/back ground.png", "fonts/sans.woff2")));
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = root.resolve(file).normalize();
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+}
@@ -0,0 +1,212 @@
+package io.pdfapi.client;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pdfapi.client.metrics.MicrometerConversionMetrics;
+import io.pdfapi.client.model.ConversionProperties;
+import io.pdfapi.client.model.PageFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Asset optimization")
+class AssetOptimizationTest {
+    private static final String HTML = "<!DOCTYPE html>\n<html>\n  <head>\n    <!-- page styles -->\n"
+            + "    <link rel=\"stylesheet\" href=\"style.css\">\n  </head>\n  <body>\n"
+            + "    <h1 title=\"keep   these  spaces\">Invoice   7</h1>\n"
+            + "    <!--[if IE]><p>Legacy</p><![endif]-->\n"
+            + "    <pre>\n  line 1\n    line 2</pre>\n"
+            + "    <script>var  x = 1 <  2;\n</script>\n"
+            + "    <p>1 < 2 and   <img src=\"photo.jpg\" style=\"width: 5cm\"></p>\n  </body>\n</html>\n";
+    private static final String CSS = "/* invoice */\nbody {\n  margin : 0 ;\n  font-family: \"Open  Sans\", sans-serif;\n}\n\n"
+            + "a :hover , p > span { width: calc(100% - 2px); }\n.a\\ b { color: red; }\ndiv/**/p { }\n";
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("HTML loses comments and repeated whitespace but keeps attributes and preformatted content")
+    void minifiesHtml() {
+        assertEquals("<!DOCTYPE html>\n<html>\n<head>\n"
+                        + "<link rel=\"stylesheet\" href=\"style.css\">\n</head>\n<body>\n"
+                        + "<h1 title=\"keep   these  spaces\">Invoice 7</h1>\n"
+                        + "<!--[if IE]><p>Legacy</p><![endif]-->\n"
+                        + "<pre>\n  line 1\n    line 2</pre>\n"
+                        + "<script>var  x = 1 <  2;\n</script>\n"
+                        + "<p>1 < 2 and <img src=\"photo.jpg\" style=\"width: 5cm\"></p>\n</body>\n</html>\n",
+                minify(HtmlMinifier::minify, HTML));
+    }
+
+    @Test
+    @DisplayName("CSS loses comments and whitespace that doesn't separate tokens")
+    void minifiesCss() {
+        assertEquals("body{margin : 0;font-family: \"Open  Sans\",sans-serif}"
+                        + "a :hover,p > span{width: calc(100% - 2px)}.a\\ b{color: red}div/**/p{}",
+                minify(CssMinifier::minify, CSS));
+    }
+
+    @Test
+    @DisplayName("Images are downscaled to the page at the target resolution, keeping their format")
+    void downscalesImages() throws IOException {
+        byte[] jpeg = image(3000, 2000, false, "jpeg");
+        // Longer side of A6 is 5.83 inches, so 100 dpi allow 583 pixels on the shorter side
+        byte[] scaled = ImageDownscaler.downscale(jpeg, 583, 0.9f);
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(scaled));
+        assertEquals(875, result.getWidth());
+        assertEquals(583, result.getHeight());
+        assertEquals(ImageDownscaler.Format.JPEG, ImageDownscaler.detect(scaled));
+
+        byte[] png = image(1600, 1200, true, "png");
+        BufferedImage scaledPng = ImageIO.read(new ByteArrayInputStream(ImageDownscaler.downscale(png, 300, 0.9f)));
+        assertEquals(400, scaledPng.getWidth());
+        assertTrue(scaledPng.getColorModel().hasAlpha());
+
+        assertNull(ImageDownscaler.downscale(jpeg, 2000, 0.9f), "already small enough");
+        assertNull(ImageDownscaler.downscale(withOrientation(jpeg, 6), 583, 0.9f), "rotated by EXIF");
+        assertNull(ImageDownscaler.downscale(HTML.getBytes(StandardCharsets.UTF_8), 583, 0.9f), "not an image");
+        byte[] corrupt = png.clone();
+        // Length of the IHDR chunk, so large that the offset of the next chunk overflows
+        corrupt[8] = 0x7f;
+        corrupt[9] = (byte) 0xff;
+        corrupt[10] = (byte) 0xff;
+        corrupt[11] = (byte) 0xf0;
+        assertNull(ImageDownscaler.downscale(corrupt, 300, 0.9f), "chunk length out of bounds");
+    }
+
+    @Test
+    @DisplayName("Invalid optimizer settings are rejected")
+    void validatesSettings() {
+        assertThrows(IllegalStateException.class, () -> AssetOptimizer.builder().imageDpi(-1).build());
+        assertThrows(IllegalStateException.class, () -> AssetOptimizer.builder().jpegQuality(0).build());
+        assertThrows(IllegalStateException.class, () -> AssetOptimizer.builder().maxInputBytes(0).build());
+        assertThrows(IllegalStateException.class, () -> AssetOptimizer.builder().cacheSize(-1).build());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Optimized content is uploaded, cached by digest and the saving reported per conversion")
+    void uploadsOptimizedContent(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfApiClientConfig config = server.configBuilder()
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+        AssetOptimizer optimizer = AssetOptimizer.builder()
+                .minifyHtml(true)
+                .imageDpi(100)
+                .build();
+        byte[] html = HTML.getBytes(StandardCharsets.UTF_8);
+        byte[] css = CSS.getBytes(StandardCharsets.UTF_8);
+        byte[] photo = image(3000, 2000, false, "jpeg");
+        byte[] font = new byte[1000];
+
+        try (PdfApiClient client = factory.apply(config)) {
+            for (int i = 0; i < 2; i++) {
+                ConversionRequest request = ConversionRequest.builder()
+                        .properties(ConversionProperties.builder().format(PageFormat.A6).build())
+                        .htmlContent(new ByteArrayInputStream(html))
+                        .addAsset(ConversionRequest.AssetInput.of(css, "style.css"))
+                        .addAsset(ConversionRequest.AssetInput.of(photo, "photo.jpg"))
+                        .addAsset(ConversionRequest.AssetInput.of(font, "font.woff2"))
+                        .assetOptimizer(optimizer)
+                        .build();
+                try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                    assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+                }
+            }
+        }
+
+        byte[] minifiedHtml = HtmlMinifier.minify(html);
+        byte[] minifiedCss = CssMinifier.minify(css);
+        for (LocalPdfApiServer.RecordedRequest upload : server.requests("POST", "/convert")) {
+            assertArrayEquals(minifiedHtml, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+        }
+        long photos = 0;
+        long saved = 2L * (html.length - minifiedHtml.length + css.length - minifiedCss.length);
+        for (LocalPdfApiServer.RecordedRequest upload : server.requests("POST", "/assets")) {
+            byte[] content = LocalPdfApiServer.multipartContent(upload.contentType, upload.body);
+            if (ImageDownscaler.detect(content) == ImageDownscaler.Format.JPEG) {
+                assertEquals(583, ImageIO.read(new ByteArrayInputStream(content)).getHeight());
+                photos++;
+                saved += photo.length - content.length;
+            } else {
+                assertTrue(Arrays.equals(minifiedCss, content) || Arrays.equals(font, content));
+            }
+        }
+        assertEquals(2, photos);
+        assertEquals(3, optimizer.cachedEntries());
+
+        DistributionSummary savings = registry.get("pdfapi.bytes.saved").summary();
+        assertEquals(2, savings.count());
+        assertEquals(saved, (long) savings.totalAmount());
+    }
+
+    private static String minify(Function<byte[], byte[]> minifier, String content) {
+        return new String(minifier.apply(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] image(int width, int height, boolean alpha, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, new Color(0, 0, 255, alpha ? 128 : 255)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        for (int x = 0; x < width; x += 37) {
+            graphics.drawLine(x, 0, width - x, height);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Inserts an EXIF segment with the given orientation after the start of image marker.
+     */
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] exif = {
+                (byte) 0xff, (byte) 0xe1, 0, 34,
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        byte[] result = new byte[jpeg.length + exif.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(exif, 0, result, 2, exif.length);
+        System.arraycopy(jpeg, 2, result, 2 + exif.length, jpeg.length - 2);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Asset upload scheduler")
+class AssetUploadSchedulerTest {
+
+    @Test
+    @DisplayName("Starts the largest assets first and respects the per conversion limit")
+    void startsLargestFirstWithinLimit() {
+        AssetUploadScheduler scheduler = new AssetUploadScheduler(16, 2);
+        Map<String, CompletableFuture<Void>> started = new LinkedHashMap<>();
+
+        CompletableFuture<Void> result = scheduler.uploadAll(assets(10, 300, 20, 1000), asset -> {
+            CompletableFuture<Void> upload = new CompletableFuture<>();
+            started.put(asset.getFileName(), upload);
+            return upload;
+        });
+
+        assertEquals(List.of("1000", "300"), new ArrayList<>(started.keySet()));
+        started.get("300").complete(null);
+        assertEquals(List.of("1000", "300", "20"), new ArrayList<>(started.keySet()));
+        started.get("1000").complete(null);
+        started.get("20").complete(null);
+        assertFalse(result.isDone());
+        started.get("10").complete(null);
+        assertTrue(result.isDone());
+    }
+
+    @Test
+    @DisplayName("Shares the global limit between conversions")
+    void sharesGlobalLimit() {
+        AssetUploadScheduler scheduler = new AssetUploadScheduler(3, 2);
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+
+        scheduler.uploadAll(assets(1, 2, 3), asset -> track(started));
+        scheduler.uploadAll(assets(4, 5, 6), asset -> track(started));
+
+        assertEquals(3, started.size());
+        assertEquals(3, scheduler.uploadsInFlight());
+        started.get(0).complete(null);
+        assertEquals(4, started.size());
+        assertEquals(3, scheduler.uploadsInFlight());
+    }
+
+    @Test
+    @DisplayName("Fails fast and does not start the remaining uploads")
+    void failsFast() {
+        AssetUploadScheduler scheduler = new AssetUploadScheduler(16, 2);
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        RuntimeException failure = new PdfApiClientException("Request failed with status 500");
+
+        CompletableFuture<Void> result = scheduler.uploadAll(assets(1, 2, 3, 4, 5), asset -> track(started));
+        started.get(0).completeExceptionally(failure);
+
+        CompletionException thrown = assertThrows(CompletionException.class, result::join);
+        assertSame(failure, thrown.getCause());
+        started.get(1).complete(null);
+        assertEquals(2, started.size());
+        assertEquals(0, scheduler.uploadsInFlight());
+    }
+
+    private static CompletableFuture<Void> track(List<CompletableFuture<Void>> started) {
+        CompletableFuture<Void> upload = new CompletableFuture<>();
+        started.add(upload);
+        return upload;
+    }
+
+    private static List<ConversionRequest.AssetInput> assets(int... sizes) {
+        return IntStream.of(sizes)
+                .mapToObj(size -> ConversionRequest.AssetInput.of(new byte[size], String.valueOf(size)))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Batch conversion")
+class BatchConverterTest {
+    private static final int REQUESTS = 25;
+    private static final int FAILING_INDEX = 7;
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+        server.setPendingPolls(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Converts every request with bounded work in flight and isolates failures")
+    void convertsBatchWithIsolatedFailures() throws Exception {
+        Map<Long, byte[]> results = new ConcurrentHashMap<>();
+        Map<Long, Throwable> failures = new ConcurrentHashMap<>();
+        AtomicInteger delivered = new AtomicInteger();
+        AtomicInteger maxObservedInFlight = new AtomicInteger();
+
+        Iterator<ConversionRequest> requests = new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < REQUESTS;
+            }
+
+            @Override
+            public ConversionRequest next() {
+                maxObservedInFlight.accumulateAndGet(next - delivered.get() + 1, Math::max);
+                return request(next++);
+            }
+        };
+
+        BatchResultSink sink = new BatchResultSink() {
+            @Override
+            public void onSuccess(long index, ConversionRequest request, InputStream pdf) throws IOException {
+                results.put(index, pdf.readAllBytes());
+                delivered.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(long index, ConversionRequest request, Throwable error) {
+                failures.put(index, error);
+                delivered.incrementAndGet();
+            }
+        };
+
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            BatchConverter.Summary summary = BatchConverter.builder(client)
+                    .maxInitializing(2)
+                    .maxPolling(2)
+                    .maxInFlight(MAX_IN_FLIGHT)
+                    .build()
+                    .convertAll(requests, sink)
+                    .get(30, TimeUnit.SECONDS);
+
+            assertEquals(REQUESTS, summary.getSubmitted());
+            assertEquals(REQUESTS - 1, summary.getSucceeded());
+            assertEquals(1, summary.getFailed());
+        }
+
+        assertEquals(REQUESTS - 1, results.size());
+        results.values().forEach(pdf -> assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf));
+        assertTrue(failures.containsKey((long) FAILING_INDEX));
+        assertTrue(maxObservedInFlight.get() <= MAX_IN_FLIGHT, "In flight: " + maxObservedInFlight.get());
+    }
+
+    private static ConversionRequest request(int index) {
+        ConversionRequest.Builder builder = ConversionRequest.builder()
+                .htmlContent(("<html><body>Document " + index + "</body></html>").getBytes(StandardCharsets.UTF_8));
+        if (index == FAILING_INDEX) {
+            builder.addAsset(ConversionRequest.AssetInput.of(() -> {
+                throw new UncheckedIOException(new IOException("Asset is gone"));
+            }, 10, "missing.png"));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,100 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Executors of blocking adapters")
+class BlockingAdapterExecutorTest {
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    static Stream<Arguments> blockingAdapters() {
+        return LocalPdfApiServer.adapters()
+                .filter(arguments -> arguments.get()[0].equals("Apache") || arguments.get()[0].equals("RestTemplate"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("blockingAdapters")
+    @DisplayName("Requests run on the configured executor")
+    void usesConfiguredExecutor(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws IOException {
+        ExecutorService delegate = Executors.newFixedThreadPool(2);
+        AtomicInteger tasks = new AtomicInteger();
+        AtomicInteger commonPoolTasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            delegate.execute(() -> {
+                if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+                    commonPoolTasks.incrementAndGet();
+                }
+                task.run();
+            });
+        };
+        try (PdfApiClient client = factory.apply(server.configBuilder().blockingIoExecutor(executor).build())) {
+            try (InputStream pdf = client.convert(request()).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+        } finally {
+            assertFalse(delegate.isShutdown(), "a supplied executor is not shut down by the client");
+            delegate.shutdown();
+        }
+        assertTrue(tasks.get() >= 3, "initialize, convert and result requests, got " + tasks.get());
+        assertEquals(0, commonPoolTasks.get());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("blockingAdapters")
+    @DisplayName("A small own pool serves concurrent conversions")
+    void smallPoolServesConcurrentConversions(String name, Function<PdfApiClientConfig, PdfApiClient> factory) {
+        PdfApiClientConfig config = server.configBuilder()
+                .blockingIoThreads(1)
+                .build();
+        try (PdfApiClient client = factory.apply(config)) {
+            Stream.generate(() -> client.convert(request()))
+                    .limit(4)
+                    .collect(Collectors.toList())
+                    .forEach(result -> {
+                        try (InputStream pdf = result.join()) {
+                            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    });
+        }
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent("<html>executor</html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
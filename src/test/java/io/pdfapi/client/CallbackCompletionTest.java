@@ -0,0 +1,146 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.callback.HttpServerCallbackReceiver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Callback completion")
+class CallbackCompletionTest {
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Result is fetched once when the callback arrives")
+    void completesOnCallback() throws IOException {
+        server.setConversionMillis(700);
+        PdfApiClientConfig config = server.configBuilder()
+                .callbackReceiver(localReceiver())
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            long start = System.nanoTime();
+            try (InputStream pdf = client.convert(request()).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= 700 && elapsed < 2000, String.valueOf(elapsed));
+        }
+        assertEquals(1, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Conversions fall back to polling when no callback arrives")
+    void fallsBackToPolling() throws IOException {
+        server.setCallbacksSuppressed(true);
+        PdfApiClientConfig config = server.configBuilder()
+                .callbackReceiver(localReceiver())
+                .callbackTimeoutSeconds(1)
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            long start = System.nanoTime();
+            try (InputStream pdf = client.convert(request()).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(950));
+        }
+        assertEquals(1, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Receiver only accepts well-formed callbacks on its registered URL")
+    void receiverRejectsForgedCallbacks() throws IOException {
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (HttpServerCallbackReceiver receiver = localReceiver()) {
+            String url = receiver.start(received::add);
+
+            assertEquals(404, post(url.substring(0, url.lastIndexOf('/') + 1) + "guessed", "{\"id\":\"conv-1\"}"));
+            assertEquals(400, post(url, "{\"status\":\"done\"}"));
+            assertEquals(204, post(url, "{\"id\":\"conv-1\"}"));
+        }
+        assertEquals(List.of("conv-1"), received);
+    }
+
+    @Test
+    @DisplayName("Receivers listening on all interfaces need a public URL")
+    void requiresPublicUrlOnWildcardAddress() {
+        assertThrows(IllegalArgumentException.class, () -> new HttpServerCallbackReceiver(0, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HttpServerCallbackReceiver(new InetSocketAddress("0.0.0.0", 0), null));
+    }
+
+    @Test
+    @DisplayName("Unclaimed callbacks expire and late callbacks are ignored")
+    void expiresUnclaimedCallbacks() {
+        AtomicLong nanos = new AtomicLong();
+        CallbackRegistry registry = new CallbackRegistry(1000, nanos::get);
+
+        registry.onConversionFinished("early");
+        assertTrue(registry.expect("early").isDone());
+        registry.forget("early");
+        registry.onConversionFinished("early");
+        assertEquals(0, registry.pending());
+
+        for (int i = 0; i < 65536; i++) {
+            registry.onConversionFinished("unknown-" + i);
+        }
+        registry.onConversionFinished("dropped");
+        assertFalse(registry.expect("dropped").isDone());
+        registry.forget("dropped");
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        registry.onConversionFinished("kept");
+        assertEquals(1, registry.pending());
+        assertTrue(registry.expect("kept").isDone());
+        assertFalse(registry.expect("unknown-1").isDone());
+    }
+
+    private static HttpServerCallbackReceiver localReceiver() {
+        return new HttpServerCallbackReceiver(new InetSocketAddress("127.0.0.1", 0), null);
+    }
+
+    private static int post(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent("<html>callback</html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
@@ -0,0 +1,163 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentEncoding;
+import io.pdfapi.client.http.ContentSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Request and response compression")
+class CompressionTest {
+    private static final byte[] HTML = text("<p>Invoice line</p>", 2000);
+    private static final byte[] CSS = text("p { margin: 0; }", 500);
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Encoded streams decode to their source for every coding and buffer size")
+    void roundTrips() throws IOException {
+        byte[] random = new byte[100_000];
+        new Random(42).nextBytes(random);
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            for (byte[] source : List.of(new byte[0], HTML, random)) {
+                for (int bufferSize : new int[]{1, 7, 8192}) {
+                    byte[] pulled = readAll(encoding.encode(new ByteArrayInputStream(source)), bufferSize);
+                    assertArrayEquals(source, readAll(encoding.decode(new ByteArrayInputStream(pulled)), 8192),
+                            encoding + " pulled with buffer size " + bufferSize);
+                }
+                ByteArrayOutputStream pushed = new ByteArrayOutputStream();
+                try (OutputStream out = encoding.encode(pushed)) {
+                    out.write(source);
+                }
+                assertArrayEquals(source, readAll(encoding.decode(new ByteArrayInputStream(pushed.toByteArray())), 8192),
+                        encoding + " pushed");
+            }
+        }
+        assertTrue(readAll(ContentEncoding.GZIP.encode(new ByteArrayInputStream(HTML)), 8192).length < HTML.length / 10);
+    }
+
+    @Test
+    @DisplayName("Codings are recognized case-insensitively and the threshold is validated")
+    void parsesCodings() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.of(" X-GZIP "));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.of("Deflate"));
+        assertNull(ContentEncoding.of("br"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.forRequest(Map.of("content-encoding", "gzip")));
+        assertNull(ContentEncoding.forRequest(Map.of("Api-Key", "key")));
+        assertThrows(IllegalStateException.class, () -> server.configBuilder().compressionThresholdBytes(-1).build());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Text uploads above the threshold are gzip encoded and gzip responses decoded")
+    void compressesTextUploads(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        server.setCompressedResponses(true);
+        PdfApiClientConfig config = server.configBuilder()
+                .requestCompression(ContentEncoding.GZIP)
+                .acceptCompressedResponses(true)
+                .build();
+        byte[] image = new byte[4096];
+        new Random(7).nextBytes(image);
+        byte[] smallCss = "p { color: red; }".getBytes(StandardCharsets.UTF_8);
+
+        try (PdfApiClient client = factory.apply(config)) {
+            ConversionRequest request = ConversionRequest.builder()
+                    .htmlContent(HTML)
+                    .addAsset(ConversionRequest.AssetInput.of(ContentSource.ofBytes(CSS), "style.CSS"))
+                    .addAsset(ConversionRequest.AssetInput.of(ContentSource.ofBytes(smallCss), "small.css"))
+                    .addAsset(ConversionRequest.AssetInput.of(ContentSource.ofBytes(image), "logo.png"))
+                    .build();
+            try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+        }
+
+        assertCompressed(upload("/convert", HTML), "gzip");
+        assertCompressed(upload("/assets", CSS), "gzip");
+        assertNull(upload("/assets", smallCss).contentEncoding);
+        assertNull(upload("/assets", image).contentEncoding);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Text uploads of unknown length are deflate encoded as they are streamed")
+    void compressesStreamedUploads(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        PdfApiClientConfig config = server.configBuilder()
+                .requestCompression(ContentEncoding.DEFLATE)
+                .build();
+
+        try (PdfApiClient client = factory.apply(config)) {
+            ConversionRequest request = ConversionRequest.builder()
+                    .htmlContent(new ByteArrayInputStream(HTML))
+                    .build();
+            try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+        }
+
+        assertCompressed(upload("/convert", HTML), "deflate");
+    }
+
+    private LocalPdfApiServer.RecordedRequest upload(String pathSuffix, byte[] content) {
+        return server.requests("POST", pathSuffix).stream()
+                .filter(r -> r.isMultipart() && Arrays.equals(content,
+                        LocalPdfApiServer.multipartContent(r.contentType, r.body)))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No upload of " + content.length + " bytes to " + pathSuffix));
+    }
+
+    private static void assertCompressed(LocalPdfApiServer.RecordedRequest upload, String coding) {
+        assertEquals(coding, upload.contentEncoding);
+        assertTrue(upload.encodedLength < upload.body.length / 5,
+                upload.encodedLength + " encoded bytes for " + upload.body.length);
+        // The encoded length is only known up front if the adapter buffered the upload
+        assertTrue(upload.streamed, "Compressed upload was buffered");
+    }
+
+    private static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        try (in) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] text(String line, int times) {
+        return line.repeat(times).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package io.pdfapi.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pdfapi.client.http.ConnectionSettings;
+import io.pdfapi.client.metrics.MicrometerConversionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Connection warm-up")
+class ConnectionWarmUpTest {
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Connections are warmed up on creation and conversions use the configured pool")
+    void warmsUpOnCreation(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        PdfApiClientConfig config = server.configBuilder()
+                .maxConnections(4)
+                .connectionKeepAliveSeconds(30)
+                .tlsSessionCacheSize(128)
+                .tlsSessionTimeoutSeconds(3600)
+                .warmUpConnections(2)
+                .build();
+
+        try (PdfApiClient client = factory.apply(config)) {
+            // warmUp() would start another round if the one on creation has already finished
+            awaitWarmUpRequests(2);
+            assertEquals(2, server.requests("GET", "/api/conversions").size());
+
+            try (InputStream pdf = client.convert(request()).get(10, TimeUnit.SECONDS)) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("First requests are timed per warm or cold pool")
+    void recordsWarmAndColdFirstRequests() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfApiClientConfig cold = server.configBuilder()
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(cold)) {
+            client.convert(request()).get(10, TimeUnit.SECONDS).close();
+            client.convert(request()).get(10, TimeUnit.SECONDS).close();
+        }
+        assertEquals(1, registry.get("pdfapi.first.request").tag("pool", "cold").timer().count());
+        assertEquals(1, registry.get("pdfapi.first.request").tag("pool", "warm").timer().count());
+
+        PdfApiClientConfig warm = server.configBuilder()
+                .metrics(new MicrometerConversionMetrics(registry))
+                .warmUpConnections(1)
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(warm)) {
+            client.warmUp().get(10, TimeUnit.SECONDS);
+            client.convert(request()).get(10, TimeUnit.SECONDS).close();
+        }
+        assertEquals(1, registry.get("pdfapi.first.request").tag("pool", "cold").timer().count());
+        assertEquals(2, registry.get("pdfapi.first.request").tag("pool", "warm").timer().count());
+    }
+
+    @Test
+    @DisplayName("Idle connections are reused before their keep-alive expires")
+    void keepsConnectionsWarm() throws Exception {
+        PdfApiClientConfig config = server.configBuilder()
+                .connectionKeepAliveSeconds(2)
+                .keepWarmConnections(1)
+                .build();
+
+        PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config);
+        try {
+            // The pool is idle for half the keep-alive period, so the first reuse is due after 1 s
+            awaitWarmUpRequests(2);
+            assertTrue(server.requests("GET", "/api/conversions").size() >= 2);
+            // Timed by the client's scheduler rather than a thread of its own
+            assertFalse(Thread.getAllStackTraces().keySet().stream()
+                    .anyMatch(thread -> thread.getName().equals("pdfapi-keep-warm")));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    @DisplayName("TLS session settings get a dedicated context, defaults use the JVM's")
+    void tlsSessionSettings() throws Exception {
+        assertSame(SSLContext.getDefault(), ConnectionSettings.DEFAULTS.sslContext());
+
+        ConnectionSettings settings = ConnectionSettings.builder()
+                .tlsSessionCacheSize(100)
+                .tlsSessionTimeoutSeconds(600)
+                .build();
+        SSLContext context = settings.sslContext();
+        assertNotSame(SSLContext.getDefault(), context);
+        assertSame(context, settings.sslContext());
+        assertEquals(100, context.getClientSessionContext().getSessionCacheSize());
+        assertEquals(600, context.getClientSessionContext().getSessionTimeout());
+    }
+
+    @Test
+    @DisplayName("Invalid pool settings are rejected")
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalStateException.class, () -> server.configBuilder().maxConnections(0).build());
+        assertThrows(IllegalStateException.class, () -> server.configBuilder().connectionKeepAliveSeconds(0).build());
+        assertThrows(IllegalStateException.class, () -> server.configBuilder().tlsSessionCacheSize(-1).build());
+        assertThrows(IllegalStateException.class, () -> server.configBuilder().warmUpConnections(-1).build());
+    }
+
+    private void awaitWarmUpRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.requests("GET", "/api/conversions").size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent("<html><body>warm</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
@@ -0,0 +1,162 @@
+package io.pdfapi.client;
+
+import io.pdfapi.client.http.ContentSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Replayable content sources")
+class ContentSourceTest {
+    private static final byte[] CONTENT = randomBytes(256 * 1024 + 17);
+
+    @TempDir
+    Path tempDir;
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Replayable sources report their length and can be read repeatedly")
+    void sourcesAreReplayable() throws IOException {
+        Path file = Files.write(tempDir.resolve("font.woff2"), CONTENT);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<ContentSource> sources = List.of(
+                    ContentSource.ofPath(file),
+                    ContentSource.ofChannel(channel),
+                    ContentSource.ofBytes(CONTENT),
+                    ContentSource.ofByteBuffer(ByteBuffer.allocateDirect(CONTENT.length).put(CONTENT).flip()),
+                    ContentSource.ofSupplier(() -> new ByteArrayInputStream(CONTENT), CONTENT.length));
+
+            for (ContentSource source : sources) {
+                assertEquals(CONTENT.length, source.contentLength());
+                for (int i = 0; i < 2; i++) {
+                    try (InputStream in = source.openStream()) {
+                        assertArrayEquals(CONTENT, in.readAllBytes());
+                    }
+                    ByteArrayOutputStream written = new ByteArrayOutputStream();
+                    source.writeTo(written);
+                    assertArrayEquals(CONTENT, written.toByteArray());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Stream sources can only be read once")
+    void streamSourceIsSingleUse() throws IOException {
+        ContentSource source = ContentSource.ofStream(new ByteArrayInputStream(CONTENT));
+        assertFalse(source.isReplayable());
+        source.openStream().close();
+        assertThrows(IllegalStateException.class, source::openStream);
+    }
+
+    @Test
+    @DisplayName("Content getters open nothing until the returned stream is read")
+    void gettersHaveNoSideEffects() throws IOException {
+        byte[] html = "<html><img src=\"image.png\"></html>".getBytes(StandardCharsets.UTF_8);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent(new ByteArrayInputStream(html))
+                .addAsset(ConversionRequest.AssetInput.of(new ByteArrayInputStream(CONTENT), "image.png"))
+                .build();
+        request.getHtmlContent().close();
+        request.getAssets().get(0).getContent();
+
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().build())) {
+            client.convert(request, new ByteArrayOutputStream()).join();
+        }
+        LocalPdfApiServer.RecordedRequest upload = server.requests("POST", "/assets").get(0);
+        assertArrayEquals(CONTENT, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+
+        ConversionRequest.AssetInput asset = ConversionRequest.AssetInput.of(ContentSource.ofBytes(CONTENT), "image.png");
+        try (InputStream first = asset.getContent(); InputStream second = asset.getContent()) {
+            assertArrayEquals(CONTENT, first.readAllBytes());
+            assertArrayEquals(CONTENT, second.readAllBytes());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("File assets are uploaded unchanged by every adapter")
+    void uploadsFileAsset(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws IOException {
+        Path file = Files.write(tempDir.resolve("image.png"), CONTENT);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><img src=\"image.png\"></html>".getBytes(StandardCharsets.UTF_8))
+                .addAsset(ConversionRequest.AssetInput.of(file))
+                .build();
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build())) {
+            client.convert(request, new ByteArrayOutputStream()).join();
+        }
+
+        LocalPdfApiServer.RecordedRequest upload = server.requests("POST", "/assets").get(0);
+        assertArrayEquals(CONTENT, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+    }
+
+    @Test
+    @DisplayName("The non-blocking Apache client reads upload content off its I/O reactor")
+    void apacheAsyncReadsOffReactor() throws IOException {
+        Set<String> readers = ConcurrentHashMap.newKeySet();
+        ContentSource content = ContentSource.ofSupplier(() -> new FilterInputStream(new ByteArrayInputStream(CONTENT)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                readers.add(Thread.currentThread().getName());
+                return super.read(b, off, len);
+            }
+        }, CONTENT.length);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><img src=\"image.png\"></html>".getBytes(StandardCharsets.UTF_8))
+                .addAsset(ConversionRequest.AssetInput.of(content, "image.png"))
+                .build();
+
+        try (PdfApiClient client = PdfApiClientFactory.createWithApacheAsyncHttpClient(server.configBuilder().build())) {
+            client.convert(request, new ByteArrayOutputStream()).join();
+        }
+
+        LocalPdfApiServer.RecordedRequest upload = server.requests("POST", "/assets").get(0);
+        assertArrayEquals(CONTENT, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+        assertFalse(readers.isEmpty());
+        assertTrue(readers.stream().noneMatch(thread -> thread.startsWith("httpclient-")), readers.toString());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
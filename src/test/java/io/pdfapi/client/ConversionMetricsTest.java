@@ -0,0 +1,115 @@
+package io.pdfapi.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pdfapi.client.metrics.ConversionMetrics;
+import io.pdfapi.client.metrics.MicrometerConversionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Conversion metrics")
+class ConversionMetricsTest {
+    private static final byte[] HTML = "<html>metrics</html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ASSET = "body { color: red }".getBytes(StandardCharsets.UTF_8);
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Every stage is timed and transferred bytes are counted")
+    void recordsStages() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfApiClientConfig config = server.configBuilder()
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            try (InputStream pdf = client.convert(request()).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+                assertEquals(1, registry.get("pdfapi.stage.active").tag("stage", "download").gauge().value());
+            }
+        }
+        for (String stage : new String[]{"initialize", "convert", "polling", "download"}) {
+            assertEquals(1, registry.get("pdfapi.stage").tag("stage", stage).tag("outcome", "success").timer().count(), stage);
+            assertEquals(0, registry.get("pdfapi.stage.active").tag("stage", stage).gauge().value(), stage);
+        }
+        assertEquals(2, registry.get("pdfapi.stage").tag("stage", "upload").timer().count());
+        assertEquals(HTML.length + 2 * ASSET.length, registry.get("pdfapi.bytes.uploaded").counter().count());
+        assertEquals(LocalPdfApiServer.DEFAULT_PDF.length, registry.get("pdfapi.bytes.downloaded").counter().count());
+        assertTrue(registry.get("pdfapi.status.checks").tag("result", "ready").counter().count() >= 1);
+    }
+
+    @Test
+    @DisplayName("Failed stages are tagged with the response status")
+    void recordsFailuresByStatus() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfApiClientConfig config = server.configBuilder()
+                .maxRetries(0)
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+        server.failNext("POST", "/convert", 422, 1);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            assertThrows(CompletionException.class, () -> client.convert(request()).join());
+        }
+        assertEquals(1, registry.get("pdfapi.stage")
+                .tags("stage", "convert", "outcome", "failure", "status", "422").timer().count());
+        assertEquals(0, registry.get("pdfapi.stage.active").tag("stage", "convert").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Custom implementations receive status checks")
+    void reportsStatusChecks() throws IOException {
+        server.setConversionMillis(300);
+        Map<ConversionMetrics.Stage, Integer> completed = new EnumMap<>(ConversionMetrics.Stage.class);
+        int[] checks = new int[2];
+        ConversionMetrics metrics = new ConversionMetrics() {
+            @Override
+            public synchronized void stageCompleted(Stage stage, long durationNanos, Throwable error) {
+                completed.merge(stage, 1, Integer::sum);
+            }
+
+            @Override
+            public synchronized void statusChecked(boolean ready) {
+                checks[ready ? 1 : 0]++;
+            }
+        };
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().metrics(metrics).build())) {
+            client.convert(request()).join().close();
+        }
+        synchronized (metrics) {
+            assertTrue(checks[0] >= 1, "pending checks");
+            assertEquals(1, checks[1]);
+            assertEquals(1, completed.get(ConversionMetrics.Stage.POLLING));
+            assertEquals(1, completed.get(ConversionMetrics.Stage.DOWNLOAD));
+        }
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent(HTML)
+                .addAsset(ConversionRequest.AssetInput.of(ASSET, "styles.css"))
+                .addAsset(ConversionRequest.AssetInput.of(ASSET, "print.css"))
+                .build();
+    }
+}
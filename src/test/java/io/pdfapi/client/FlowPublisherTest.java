@@ -0,0 +1,201 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@DisplayName("Flow.Publisher conversions")
+class FlowPublisherTest {
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Published HTML is uploaded and the result is published in full")
+    void publishedHtmlIsConvertedToPublishedResult(String name, Function<PdfApiClientConfig, PdfApiClient> factory)
+            throws Exception {
+        byte[] html = "<html><body>published</body></html>".getBytes(StandardCharsets.UTF_8);
+        byte[] pdf = new byte[3 * ResultPublisher.CHUNK_SIZE + 17];
+        Arrays.fill(pdf, (byte) 'x');
+        server.setPdf(pdf);
+
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent(HttpRequest.BodyPublishers.ofByteArray(html), html.length)
+                .build();
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build())) {
+            CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+            client.convertToPublisher(request).subscribe(subscriber);
+
+            assertArrayEquals(pdf, subscriber.completion.get(10, TimeUnit.SECONDS));
+        }
+
+        LocalPdfApiServer.RecordedRequest upload = server.requests("POST", "/convert").get(0);
+        assertArrayEquals(html, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+    }
+
+    static Stream<Arguments> publishingAdapters() {
+        Set<String> publishing = Set.of("ApacheAsync", "WebClient", "JDK");
+        return LocalPdfApiServer.adapters().filter(adapter -> publishing.contains((String) adapter.get()[0]));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("publishingAdapters")
+    @DisplayName("A result the HTTP client publishes is passed on as it arrives, not read on the result executor")
+    void resultIsPublishedByHttpClient(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        byte[] pdf = new byte[5 * ResultPublisher.CHUNK_SIZE + 3];
+        for (int i = 0; i < pdf.length; i++) {
+            pdf[i] = (byte) i;
+        }
+        server.setPdf(pdf);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><body>pushed</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build())) {
+            CollectingSubscriber subscriber = new CollectingSubscriber(1, true);
+            client.convertToPublisher(request).subscribe(subscriber);
+
+            assertArrayEquals(pdf, subscriber.completion.get(10, TimeUnit.SECONDS));
+            assertFalse(subscriber.threads.stream().anyMatch(thread -> thread.startsWith("pdfapi-result-")),
+                    "buffers published on " + subscriber.threads);
+        }
+    }
+
+    @Test
+    @DisplayName("The result is read only as far as it is requested and released on cancel")
+    void resultFollowsDemand() throws Exception {
+        server.setPdf(new byte[10 * ResultPublisher.CHUNK_SIZE]);
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><body>demand</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            CollectingSubscriber subscriber = new CollectingSubscriber(2);
+            client.convertToPublisher(request).subscribe(subscriber);
+
+            subscriber.awaitBuffers(2);
+            Thread.sleep(200);
+            assertEquals(2, subscriber.buffers.get());
+            subscriber.subscription.cancel();
+
+            CollectingSubscriber next = new CollectingSubscriber(Long.MAX_VALUE);
+            client.convertToPublisher(request).subscribe(next);
+            assertEquals(10 * ResultPublisher.CHUNK_SIZE, next.completion.get(10, TimeUnit.SECONDS).length);
+        }
+    }
+
+    @Test
+    @DisplayName("A result publisher accepts a single subscriber")
+    void secondSubscriberIsRejected() throws Exception {
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><body>once</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            Flow.Publisher<ByteBuffer> publisher = client.convertToPublisher(request);
+            CollectingSubscriber first = new CollectingSubscriber(Long.MAX_VALUE);
+            CollectingSubscriber second = new CollectingSubscriber(Long.MAX_VALUE);
+            publisher.subscribe(first);
+            publisher.subscribe(second);
+
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, first.completion.get(10, TimeUnit.SECONDS));
+            CompletableFuture<byte[]> rejected = second.completion;
+            assertInstanceOf(IllegalStateException.class,
+                    rejected.handle((bytes, error) -> error).get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    private static final class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+        final CompletableFuture<byte[]> completion = new CompletableFuture<>();
+        final AtomicInteger buffers = new AtomicInteger();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final long demand;
+        private final boolean renewDemand;
+        volatile Flow.Subscription subscription;
+
+        CollectingSubscriber(long demand) {
+            this(demand, false);
+        }
+
+        /**
+         * @param renewDemand whether to request as many buffers again after each one
+         */
+        CollectingSubscriber(long demand, boolean renewDemand) {
+            this.demand = demand;
+            this.renewDemand = renewDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(demand);
+        }
+
+        @Override
+        public void onNext(ByteBuffer buffer) {
+            threads.add(Thread.currentThread().getName());
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            content.write(bytes, 0, bytes.length);
+            synchronized (this) {
+                buffers.incrementAndGet();
+                notifyAll();
+            }
+            if (renewDemand) {
+                subscription.request(demand);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            completion.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(content.toByteArray());
+        }
+
+        synchronized void awaitBuffers(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (buffers.get() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.pdfapi.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pdfapi.client.metrics.MicrometerConversionMetrics;
+import io.pdfapi.client.template.HtmlTemplate;
+import io.pdfapi.client.template.TemplateContent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("HTML templates")
+class HtmlTemplateTest {
+    private static final HtmlTemplate INVOICE = HtmlTemplate.compile(
+            "<h1>{{title}}</h1>{{! line items }}<table>"
+                    + "{{#items}}<tr><td>{{name}}</td><td>{{price}} {{currency}}</td></tr>{{/items}}"
+                    + "{{^items}}<tr><td>No items</td></tr>{{/items}}</table>"
+                    + "{{#paid}}<p>Paid</p>{{/paid}}{{{footer}}}<p>{{&customer.name}}, {{customer.city}}</p>"
+                    + "{{#tags}}<i>{{.}}</i>{{/tags}}");
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Values are escaped, sections repeated or skipped and names looked up outwards")
+    void rendersModel() throws IOException {
+        Map<String, Object> model = Map.of(
+                "title", "Invoice <42> & \"more\"",
+                "currency", "EUR",
+                "items", List.of(Map.of("name", "Tea", "price", 3), Map.of("name", "Café", "price", 4.5)),
+                "paid", true,
+                "footer", "<footer>raw</footer>",
+                "customer", Map.of("name", "O'Neil & Co", "city", "Zürich"),
+                "tags", new String[]{"a", "b"});
+
+        assertEquals("<h1>Invoice &lt;42&gt; &amp; &quot;more&quot;</h1><table>"
+                        + "<tr><td>Tea</td><td>3 EUR</td></tr><tr><td>Café</td><td>4.5 EUR</td></tr></table>"
+                        + "<p>Paid</p><footer>raw</footer><p>O'Neil & Co, Zürich</p><i>a</i><i>b</i>",
+                render(INVOICE.render(model), 8192));
+
+        assertEquals("<h1>Empty</h1><table><tr><td>No items</td></tr></table><p>, </p>",
+                render(INVOICE.render(Map.of("title", "Empty", "items", List.of(), "paid", false)), 8192));
+    }
+
+    @Test
+    @DisplayName("Rendering into small buffers splits multi-byte characters and entities correctly")
+    void rendersIntoSmallBuffers() throws IOException {
+        HtmlTemplate template = HtmlTemplate.compile("<p>{{text}}</p>{{{raw}}}");
+        String text = "Grüße € 😀 <&> \ud800!";
+        Map<String, Object> model = Map.of("text", text, "raw", text);
+        byte[] expected = ("<p>Grüße € 😀 &lt;&amp;&gt; ?!</p>" + text).getBytes(StandardCharsets.UTF_8);
+
+        for (int bufferSize = 1; bufferSize <= 8; bufferSize++) {
+            TemplateContent content = template.render(model);
+            assertArrayEquals(expected, renderBytes(content, bufferSize), "buffer size " + bufferSize);
+            assertEquals(expected.length, content.getRenderedBytes());
+        }
+        try (InputStream in = template.render(model).openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                out.write(b);
+            }
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    @Test
+    @DisplayName("Malformed templates are rejected when compiled")
+    void rejectsMalformedTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> HtmlTemplate.compile("<p>{{name</p>"));
+        assertThrows(IllegalArgumentException.class, () -> HtmlTemplate.compile("{{#items}}<p>"));
+        assertThrows(IllegalArgumentException.class, () -> HtmlTemplate.compile("{{#items}}{{/other}}"));
+        assertThrows(IllegalArgumentException.class, () -> HtmlTemplate.compile("{{/items}}"));
+        assertThrows(IllegalArgumentException.class, () -> HtmlTemplate.compile("{{first name}}"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Templates are rendered into the index upload and counted as uploaded bytes")
+    void uploadsRenderedTemplate(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfApiClientConfig config = server.configBuilder()
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+        Map<String, Object> model = Map.of("title", "Invoice 7", "currency", "EUR",
+                "items", List.of(Map.of("name", "Tea", "price", 3)));
+        byte[] expected = render(INVOICE.render(model), 8192).getBytes(StandardCharsets.UTF_8);
+
+        try (PdfApiClient client = factory.apply(config)) {
+            ConversionRequest request = ConversionRequest.builder()
+                    .htmlContent(INVOICE, model)
+                    .build();
+            try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+        }
+
+        LocalPdfApiServer.RecordedRequest upload = server.requests("POST", "/convert").get(0);
+        assertArrayEquals(expected, LocalPdfApiServer.multipartContent(upload.contentType, upload.body));
+        assertEquals(expected.length, registry.get("pdfapi.bytes.uploaded").counter().count());
+    }
+
+    private static String render(TemplateContent content, int bufferSize) throws IOException {
+        return new String(renderBytes(content, bufferSize), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] renderBytes(TemplateContent content, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        try (InputStream in = content.openStream()) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
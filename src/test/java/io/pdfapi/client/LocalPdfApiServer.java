@@ -0,0 +1,423 @@
+package io.pdfapi.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.params.provider.Arguments;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-process stand-in for the pdfapi.dev conversion API, used to exercise the client end to end
+ * without network access or an API key.
+ */
+class LocalPdfApiServer implements AutoCloseable {
+    static final String API_KEY = "test-api-key";
+    static final byte[] DEFAULT_PDF = "%PDF-1.4\n% stand-in result\n%%EOF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Pattern CONVERSION_PATH = Pattern.compile("/api/conversions/([^/]+)/(assets|convert|result)");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger conversionCounter = new AtomicInteger();
+    private final List<RecordedRequest> requests = new ArrayList<>();
+    private final Set<String> storedAssets = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> pollCounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> convertedAt = new ConcurrentHashMap<>();
+    private final Map<String, String> callbackUrls = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService callbackExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Fault> faults = new CopyOnWriteArrayList<>();
+
+    private volatile byte[] pdf = DEFAULT_PDF;
+    private volatile ResultWriter resultWriter;
+    private volatile int pendingPolls;
+    private volatile long conversionMillis;
+    private volatile String retryAfter;
+    private volatile int assetReferenceRejection;
+    private volatile boolean callbacksSuppressed;
+    private volatile boolean compressedResponses;
+
+    private LocalPdfApiServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    static LocalPdfApiServer start() throws IOException {
+        LocalPdfApiServer localServer = new LocalPdfApiServer();
+        localServer.server.start();
+        return localServer;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    PdfApiClientConfig.Builder configBuilder() {
+        return PdfApiClientConfig.builder()
+                .baseUrl(baseUrl())
+                .apiKey(API_KEY)
+                .timeoutSeconds(10);
+    }
+
+    /**
+     * Client factories for every bundled HTTP adapter, for parameterized tests.
+     */
+    static Stream<Arguments> adapters() {
+        return Stream.of(
+                Arguments.of("OkHttp", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithOkHttp),
+                Arguments.of("Apache", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithApacheHttpClient),
+                Arguments.of("ApacheAsync", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithApacheAsyncHttpClient),
+                Arguments.of("RestTemplate", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithRestTemplate),
+                Arguments.of("WebClient", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithWebClient),
+                Arguments.of("JDK", (Function<PdfApiClientConfig, PdfApiClient>) PdfApiClientFactory::createWithJdkHttpClient));
+    }
+
+    void setPdf(byte[] pdf) {
+        this.pdf = pdf;
+    }
+
+    /**
+     * Streams the conversion result with chunked encoding instead of answering with {@link #setPdf(byte[])}.
+     */
+    void setResultWriter(ResultWriter resultWriter) {
+        this.resultWriter = resultWriter;
+    }
+
+    /**
+     * Number of status checks answered with 204 before a conversion result is returned.
+     */
+    void setPendingPolls(int pendingPolls) {
+        this.pendingPolls = pendingPolls;
+    }
+
+    /**
+     * Time after the convert request before a conversion result is ready.
+     */
+    void setConversionMillis(long conversionMillis) {
+        this.conversionMillis = conversionMillis;
+    }
+
+    /**
+     * {@code Retry-After} header sent with every 204 answer, or {@code null} for none.
+     */
+    void setRetryAfter(String retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Stops sending completion callbacks even when a conversion registered a callback URL.
+     */
+    void setCallbacksSuppressed(boolean callbacksSuppressed) {
+        this.callbacksSuppressed = callbacksSuppressed;
+    }
+
+    /**
+     * Gzip-encodes JSON and PDF responses to requests that accept it.
+     */
+    void setCompressedResponses(boolean compressedResponses) {
+        this.compressedResponses = compressedResponses;
+    }
+
+    /**
+     * Answers the next {@code times} requests matching method and path suffix with the given status.
+     */
+    void failNext(String method, String pathSuffix, int status, int times) {
+        faults.add(new Fault(method, pathSuffix, status, 0, times));
+    }
+
+    /**
+     * Delays the answer to the next {@code times} requests matching method and path suffix.
+     */
+    void delayNext(String method, String pathSuffix, long delayMillis, int times) {
+        faults.add(new Fault(method, pathSuffix, 0, delayMillis, times));
+    }
+
+    /**
+     * Status with which asset references are rejected before they are looked up, or 0 to accept known ones.
+     */
+    void setAssetReferenceRejection(int status) {
+        this.assetReferenceRejection = status;
+    }
+
+    void forgetAssets() {
+        storedAssets.clear();
+    }
+
+    List<RecordedRequest> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    List<RecordedRequest> requests(String method, String pathSuffix) {
+        return requests().stream()
+                .filter(r -> r.method.equals(method) && r.path.endsWith(pathSuffix))
+                .collect(Collectors.toList());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] encoded = exchange.getRequestBody().readAllBytes();
+            String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            byte[] body = decode(contentEncoding, encoded);
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            boolean streamed = exchange.getRequestHeaders().getFirst("Content-Length") == null;
+            synchronized (requests) {
+                requests.add(new RecordedRequest(method, path, contentType, body, contentEncoding, encoded.length,
+                        streamed));
+            }
+
+            if (!API_KEY.equals(exchange.getRequestHeaders().getFirst("Api-Key"))) {
+                respond(exchange, 401, null);
+                return;
+            }
+            for (Fault fault : faults) {
+                if (fault.method.equals(method) && path.endsWith(fault.pathSuffix)
+                        && fault.remaining.getAndDecrement() > 0) {
+                    if (fault.delayMillis > 0) {
+                        sleep(fault.delayMillis);
+                        break;
+                    }
+                    respond(exchange, fault.status, null);
+                    return;
+                }
+            }
+            if ("POST".equals(method) && "/api/conversions".equals(path)) {
+                String id = "conv-" + conversionCounter.incrementAndGet();
+                String callbackUrl = exchange.getRequestHeaders().getFirst("Callback-Url");
+                if (callbackUrl != null) {
+                    callbackUrls.put(id, callbackUrl);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                respond(exchange, 201, encodeResponse(exchange,
+                        ("{\"links\":{\"self\":\"/api/conversions/" + id + "\"},\"id\":\"" + id + "\"}")
+                                .getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+
+            Matcher matcher = CONVERSION_PATH.matcher(path);
+            if (!matcher.matches()) {
+                respond(exchange, 404, null);
+                return;
+            }
+            String conversionId = matcher.group(1);
+            switch (matcher.group(2)) {
+                case "assets":
+                    handleAsset(exchange, contentType, body);
+                    break;
+                case "convert":
+                    convertedAt.put(conversionId, System.nanoTime());
+                    String callbackUrl = callbackUrls.get(conversionId);
+                    if (callbackUrl != null && !callbacksSuppressed) {
+                        callbackExecutor.schedule(() -> sendCallback(callbackUrl, conversionId),
+                                conversionMillis, TimeUnit.MILLISECONDS);
+                    }
+                    exchange.getResponseHeaders().add("Location",
+                            baseUrl() + "/api/conversions/" + conversionId + "/result");
+                    respond(exchange, 201, null);
+                    break;
+                default:
+                    int polls = pollCounts.computeIfAbsent(conversionId, id -> new AtomicInteger()).incrementAndGet();
+                    long ready = convertedAt.getOrDefault(conversionId, 0L) + conversionMillis * 1_000_000;
+                    if (polls <= pendingPolls || System.nanoTime() - ready < 0) {
+                        if (retryAfter != null) {
+                            exchange.getResponseHeaders().add("Retry-After", retryAfter);
+                        }
+                        respond(exchange, 204, null);
+                    } else if (resultWriter != null) {
+                        exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+                        exchange.sendResponseHeaders(200, 0);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            resultWriter.write(out);
+                        }
+                    } else {
+                        exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+                        respond(exchange, 200, encodeResponse(exchange, pdf));
+                    }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendCallback(String callbackUrl, String conversionId) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(callbackUrl).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(("{\"id\":\"" + conversionId + "\"}").getBytes(StandardCharsets.UTF_8));
+            }
+            connection.getResponseCode();
+            connection.disconnect();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void handleAsset(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        if (contentType != null && contentType.startsWith("application/json")) {
+            if (assetReferenceRejection != 0) {
+                respond(exchange, assetReferenceRejection, null);
+                return;
+            }
+            Matcher reference = Pattern.compile("\"reference\"\\s*:\\s*\"([^\"]+)\"")
+                    .matcher(new String(body, StandardCharsets.UTF_8));
+            respond(exchange, reference.find() && storedAssets.contains(reference.group(1)) ? 201 : 404, null);
+            return;
+        }
+        String reference = "/api/assets/" + ContentDigest.toHex(
+                ContentDigest.newDigest().digest(multipartContent(contentType, body)));
+        storedAssets.add(reference);
+        exchange.getResponseHeaders().add("Location", reference);
+        respond(exchange, 201, null);
+    }
+
+    private static byte[] decode(String contentEncoding, byte[] body) throws IOException {
+        if (contentEncoding == null) {
+            return body;
+        }
+        InputStream decoded = "gzip".equals(contentEncoding)
+                ? new GZIPInputStream(new ByteArrayInputStream(body))
+                : new InflaterInputStream(new ByteArrayInputStream(body));
+        try (decoded) {
+            return decoded.readAllBytes();
+        }
+    }
+
+    private byte[] encodeResponse(HttpExchange exchange, byte[] body) throws IOException {
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (!compressedResponses || accepted == null || !accepted.contains("gzip")) {
+            return body;
+        }
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(encoded)) {
+            out.write(body);
+        }
+        return encoded.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Extracts the content of the first part of a multipart/form-data body.
+     */
+    static byte[] multipartContent(String contentType, byte[] body) {
+        String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length())
+                .replace("\"", "");
+        String raw = new String(body, StandardCharsets.ISO_8859_1);
+        int start = raw.indexOf("\r\n\r\n", raw.indexOf(boundary)) + 4;
+        int end = raw.indexOf("\r\n" + boundary, start);
+        return Arrays.copyOfRange(body, start, end);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        callbackExecutor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    interface ResultWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static class Fault {
+        final String method;
+        final String pathSuffix;
+        final int status;
+        final long delayMillis;
+        final AtomicInteger remaining;
+
+        Fault(String method, String pathSuffix, int status, long delayMillis, int times) {
+            this.method = method;
+            this.pathSuffix = pathSuffix;
+            this.status = status;
+            this.delayMillis = delayMillis;
+            this.remaining = new AtomicInteger(times);
+        }
+    }
+
+    static class RecordedRequest {
+        final String method;
+        final String path;
+        final String contentType;
+        /**
+         * Decoded body of the request.
+         */
+        final byte[] body;
+        final String contentEncoding;
+        final int encodedLength;
+        /**
+         * Whether the body was sent without a {@code Content-Length}, that is, chunked as it was produced.
+         */
+        final boolean streamed;
+
+        RecordedRequest(String method, String path, String contentType, byte[] body, String contentEncoding,
+                        int encodedLength, boolean streamed) {
+            this.method = method;
+            this.path = path;
+            this.contentType = contentType;
+            this.body = body;
+            this.contentEncoding = contentEncoding;
+            this.encodedLength = encodedLength;
+            this.streamed = streamed;
+        }
+
+        boolean isMultipart() {
+            return contentType != null && contentType.startsWith("multipart/");
+        }
+    }
+}
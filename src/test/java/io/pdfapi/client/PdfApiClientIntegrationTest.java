@@ -172,12 +172,24 @@ class PdfApiClientIntegrationTest {
         }
     }
 
+    @Test
+    @DisplayName("Convert HTML to PDF using Apache async HTTP client")
+    void testWithApacheAsyncHttpClient() throws Exception {
+        testClientImplementation(PdfApiClientFactory::createWithApacheAsyncHttpClient);
+    }
+
     @Test
     @DisplayName("Convert HTML to PDF using Spring RestTemplate")
     void testWithRestTemplate() throws Exception {
         testClientImplementation(PdfApiClientFactory::createWithRestTemplate);
     }
 
+    @Test
+    @DisplayName("Convert HTML to PDF using Spring WebClient")
+    void testWithWebClient() throws Exception {
+        testClientImplementation(PdfApiClientFactory::createWithWebClient);
+    }
+
     @Test
     @DisplayName("Convert HTML to PDF using custom RestTemplate")
     void testWithCustomRestTemplate() throws Exception {
@@ -186,6 +198,12 @@ class PdfApiClientIntegrationTest {
                 PdfApiClientFactory.createWithRestTemplate(clientConfig, customTemplate));
     }
 
+    @Test
+    @DisplayName("Convert HTML to PDF using JDK HTTP client")
+    void testWithJdkHttpClient() throws Exception {
+        testClientImplementation(PdfApiClientFactory::createWithJdkHttpClient);
+    }
+
     private void testClientImplementation(Function<PdfApiClientConfig, PdfApiClient> clientFactory) throws Exception {
         String testName = Thread.currentThread().getStackTrace()[2].getMethodName();
         try (PdfApiClient client = clientFactory.apply(config)) {
@@ -0,0 +1,249 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Shared polling engine")
+class PollingEngineTest {
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Concurrent conversions are polled by a single thread")
+    void pollsFromSingleThread() {
+        server.setPendingPolls(2);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            List<CompletableFuture<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(client.convert(request()).thenApply(PollingEngineTest::readAll));
+            }
+            results.forEach(result -> assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, result.join()));
+            long pollers = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("pdfapi-poller"))
+                    .count();
+            assertEquals(1, pollers);
+        }
+        assertEquals(40 * 3, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Conversions awaited while the engine closes are failed, not left waiting")
+    void failsConversionsAwaitedDuringClose() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            PollingEngine engine = new PollingEngine(
+                    id -> CompletableFuture.completedFuture(PollingEngine.PollResult.pending(-1)), null, 4, 60_000);
+            List<CompletableFuture<InputStream>> results = new CopyOnWriteArrayList<>();
+            Thread awaiting = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    results.add(engine.await("conv-" + i, null, null));
+                }
+            });
+            awaiting.start();
+            engine.close();
+            awaiting.join();
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                    .handle((ignored, error) -> null)
+                    .get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    @DisplayName("The polling thread parks while no conversion is awaited and wakes for the next one")
+    void parksWhileIdle() throws Exception {
+        try (PollingEngine engine = new PollingEngine(
+                location -> CompletableFuture.completedFuture(PollingEngine.PollResult.completed(pdf())), null, 4, 60_000)) {
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(engine.await("1", "/result/1", null).get(5, TimeUnit.SECONDS)));
+            Thread poller = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("pdfapi-poller") && thread.isAlive())
+                    .findFirst()
+                    .orElseThrow();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (poller.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(Thread.State.WAITING, poller.getState());
+
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(engine.await("2", "/result/2", null).get(5, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    @DisplayName("Checks falling due in the same tick are answered by one batch status request")
+    void coalescesDueChecks() {
+        Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+        List<Collection<String>> batches = new CopyOnWriteArrayList<>();
+        try (PollingEngine engine = new PollingEngine(
+                location -> {
+                    fetches.computeIfAbsent(location, l -> new AtomicInteger()).incrementAndGet();
+                    return CompletableFuture.completedFuture(PollingEngine.PollResult.completed(pdf()));
+                },
+                ids -> {
+                    batches.add(new ArrayList<>(ids));
+                    Set<String> completed = new HashSet<>();
+                    // Even-numbered conversions finish on the first check, the others on the second
+                    ids.stream().filter(id -> batches.size() > 1 || Integer.parseInt(id) % 2 == 0)
+                            .forEach(completed::add);
+                    return CompletableFuture.completedFuture(completed);
+                },
+                4, 60_000)) {
+            List<CompletableFuture<InputStream>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(engine.await(String.valueOf(i), "/result/" + i, null));
+            }
+            results.forEach(result -> assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(result.join())));
+
+            assertEquals(20, batches.get(0).size());
+            assertEquals(10, batches.get(1).size());
+            assertEquals(20, fetches.size());
+            fetches.values().forEach(count -> assertEquals(1, count.get()));
+            assertEquals(0, engine.outstanding());
+        }
+    }
+
+    @Test
+    @DisplayName("Batch status checks stay enabled after failures other than a missing endpoint")
+    void keepsBatchStatusAfterOtherFailures() {
+        Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+        AtomicInteger batches = new AtomicInteger();
+        try (PollingEngine engine = new PollingEngine(
+                location -> CompletableFuture.completedFuture(
+                        fetches.computeIfAbsent(location, l -> new AtomicInteger()).incrementAndGet() > 1
+                                ? PollingEngine.PollResult.completed(pdf()) : PollingEngine.PollResult.pending(-1)),
+                ids -> {
+                    batches.incrementAndGet();
+                    return CompletableFuture.failedFuture(new UnsupportedOperationException("not a status answer"));
+                },
+                4, 60_000)) {
+            List<CompletableFuture<InputStream>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(engine.await(String.valueOf(i), "/result/" + i, null));
+            }
+            results.forEach(result -> assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(result.join())));
+        }
+        assertTrue(batches.get() >= 2, "batch status checks sent: " + batches.get());
+    }
+
+    @Test
+    @DisplayName("Unsupported batch status endpoint falls back to individual checks")
+    void fallsBackWithoutBatchStatus() throws Exception {
+        server.setPendingPolls(1);
+        PdfApiClientConfig config = server.configBuilder()
+                .batchStatusPath("/api/conversions/status")
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            List<CompletableFuture<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                results.add(client.convert(request()).thenApply(PollingEngineTest::readAll));
+            }
+            for (CompletableFuture<byte[]> result : results) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, result.get(10, TimeUnit.SECONDS));
+            }
+        }
+        assertTrue(server.requests("POST", "/status").size() <= 1);
+        assertEquals(20, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Checks are scheduled around the learned conversion duration")
+    void learnsConversionDuration() {
+        server.setConversionMillis(300);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            for (int i = 0; i < 6; i++) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(client.convert(request()).join()));
+            }
+            PollingStatistics statistics = client.getPollingStatistics();
+            assertEquals(6, statistics.getCompletedConversions());
+            assertEquals(5, statistics.getPredictedConversions());
+            // The fixed schedule needs two checks per conversion, at 0 and 500 ms
+            assertTrue(statistics.getChecksPerConversion() < 1.5, statistics.toString());
+            assertTrue(statistics.getPredictionHitRate() >= 0.6, statistics.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Retry-After of a pending answer delays the next check")
+    void honoursRetryAfter() {
+        server.setPendingPolls(1);
+        server.setRetryAfter("1");
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(server.configBuilder().build())) {
+            long start = System.nanoTime();
+            readAll(client.convert(request()).join());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(950));
+        }
+        assertEquals(2, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Retry-After of a pending answer is cut to the configured limit")
+    void limitsRetryAfter() throws Exception {
+        server.setPendingPolls(1);
+        server.setRetryAfter("86400");
+        PdfApiClientConfig config = server.configBuilder().maxRetryAfterMillis(100).build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, readAll(client.convert(request()).get(5, TimeUnit.SECONDS)));
+        }
+        assertEquals(2, server.requests("GET", "/result").size());
+    }
+
+    @Test
+    @DisplayName("Retry-After is parsed as seconds or HTTP date")
+    void parsesRetryAfter() {
+        assertEquals(2000, PdfApiClient.parseRetryAfter(" 2 "));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        long delay = PdfApiClient.parseRetryAfter(date);
+        assertTrue(delay > 28_000 && delay <= 30_000, String.valueOf(delay));
+        assertEquals(-1, PdfApiClient.parseRetryAfter("soon"));
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent("<html>poll</html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private static InputStream pdf() {
+        return new ByteArrayInputStream(LocalPdfApiServer.DEFAULT_PDF);
+    }
+
+    private static byte[] readAll(InputStream in) {
+        try (in) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new PdfApiClientException("Failed to read PDF", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.pdfapi.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.pdfapi.client.model.ConversionProperties;
+import io.pdfapi.client.model.Margin;
+import io.pdfapi.client.model.PageFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Conversion properties serialization")
+class PropertiesSerializationTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Properties with the same values are equal")
+    void propertiesAreValues() {
+        ConversionProperties properties = properties(PageFormat.A4, 10);
+        ConversionProperties same = ConversionProperties.builderFrom(properties).build();
+
+        assertEquals(properties, same);
+        assertEquals(properties.hashCode(), same.hashCode());
+        assertEquals(properties.getMargin(), Margin.builder().top(10).bottom(10).left(10).right(10).build());
+        assertNotEquals(properties, properties(PageFormat.A4, 11));
+        assertNotEquals(properties, properties(PageFormat.Letter, 10));
+        assertNotEquals(properties, ConversionProperties.builderFrom(properties).scale(0.5f).build());
+        assertNotEquals(properties, ConversionProperties.builderFrom(properties).headerFile("header.html").build());
+    }
+
+    @Test
+    @DisplayName("Equal properties are serialized once and the cache stays bounded")
+    void cachesSerializedProperties() throws IOException {
+        PropertiesJsonCache cache = new PropertiesJsonCache(objectMapper);
+        ConversionProperties properties = properties(PageFormat.A4, 10);
+
+        byte[] json = cache.serialize(properties);
+        assertSame(json, cache.serialize(properties(PageFormat.A4, 10)));
+        assertArrayEquals(objectMapper.writeValueAsBytes(properties), json);
+
+        for (int i = 0; i < PropertiesJsonCache.MAX_ENTRIES * 2; i++) {
+            cache.serialize(properties(PageFormat.A4, i));
+        }
+        assertEquals(PropertiesJsonCache.MAX_ENTRIES, cache.size());
+        assertNotSame(json, cache.serialize(properties));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Cached JSON bodies are sent unchanged and the conversion id is read from the response")
+    void sendsCachedJson(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        ConversionProperties properties = properties(PageFormat.A5, 5);
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build())) {
+            for (int i = 0; i < 2; i++) {
+                ConversionRequest request = ConversionRequest.builder()
+                        .htmlContent("<html><body>cached</body></html>".getBytes(StandardCharsets.UTF_8))
+                        .properties(properties)
+                        .build();
+                try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                    assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+                }
+            }
+        }
+
+        List<LocalPdfApiServer.RecordedRequest> initializations = server.requests("POST", "/api/conversions");
+        assertEquals(2, initializations.size());
+        for (LocalPdfApiServer.RecordedRequest initialization : initializations) {
+            assertTrue(initialization.contentType.startsWith("application/json"));
+            assertArrayEquals(objectMapper.writeValueAsBytes(properties), initialization.body);
+        }
+        assertEquals(1, server.requests("POST", "/api/conversions/conv-2/convert").size());
+    }
+
+    private static ConversionProperties properties(PageFormat format, int margin) {
+        return ConversionProperties.builder()
+                .format(format)
+                .margin(Margin.builder().top(margin).bottom(margin).left(margin).right(margin).build())
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Hedged status checks")
+class RequestHedgingTest {
+    private LocalPdfApiServer server;
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "test-scheduler"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("A slow request is hedged and the losing answer is discarded")
+    void firstAnswerWins() {
+        RequestHedger hedger = new RequestHedger(0.9, 1.0, scheduler);
+        List<String> discarded = new CopyOnWriteArrayList<>();
+        warmUp(hedger);
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        List<CompletableFuture<String>> attempts = List.of(slow, CompletableFuture.completedFuture("hedge"));
+        List<String> senders = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> result = hedger.execute(() -> {
+            senders.add(Thread.currentThread().getName());
+            return attempts.get(senders.size() - 1);
+        }, discarded::add);
+
+        assertEquals("hedge", result.join());
+        assertEquals("test-scheduler", senders.get(1));
+        slow.complete("original");
+        assertEquals(List.of("original"), discarded);
+        assertEquals(1, hedger.statistics().getHedgeWins());
+    }
+
+    @Test
+    @DisplayName("Hedges stop when the budget is used up")
+    void budgetLimitsHedges() {
+        RequestHedger hedger = new RequestHedger(0.9, 0, scheduler);
+        warmUp(hedger);
+
+        for (int i = 0; i < 7; i++) {
+            CompletableFuture<String> never = new CompletableFuture<>();
+            CompletableFuture<String> result = hedger.execute(() -> never, value -> {
+            });
+            assertTrue(result.completeOnTimeout("timeout", 100, TimeUnit.MILLISECONDS).join().equals("timeout"));
+        }
+        HedgingStatistics statistics = hedger.statistics();
+        assertEquals(5, statistics.getHedges(), statistics.toString());
+        assertEquals(2, statistics.getBudgetRejections(), statistics.toString());
+    }
+
+    @Test
+    @DisplayName("A stalled status check does not delay the conversion")
+    void hedgesStalledStatusCheck() throws IOException {
+        PdfApiClientConfig config = server.configBuilder()
+                .hedgingPercentile(0.95)
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            for (int i = 0; i < 20; i++) {
+                client.convert(request()).join().close();
+            }
+            server.delayNext("GET", "/result", 3000, 1);
+            long start = System.nanoTime();
+            try (InputStream pdf = client.convert(request()).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+            assertEquals(1, client.getHedgingStatistics().getHedgeWins(), client.getHedgingStatistics().toString());
+        }
+    }
+
+    private static void warmUp(RequestHedger hedger) {
+        for (int i = 0; i < 20; i++) {
+            hedger.execute(() -> CompletableFuture.completedFuture("warm-up"), value -> {
+            }).join();
+        }
+    }
+
+    private static ConversionRequest request() {
+        return ConversionRequest.builder()
+                .htmlContent("<html>hedge</html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+    }
+}
@@ -0,0 +1,242 @@
+package io.pdfapi.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pdfapi.client.metrics.MicrometerConversionMetrics;
+import io.pdfapi.client.model.ConversionProperties;
+import io.pdfapi.client.model.PageFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Result cache")
+class ResultCacheTest {
+    private static final byte[] HTML = "<html><body><img src=\"logo.png\"></body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] LOGO = {1, 2, 3, 4};
+
+    @TempDir
+    Path directory;
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Repeated conversions of the same content are answered from the cache")
+    void answersRepeatedConversions(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResultCache cache = ResultCache.builder().directory(directory).build();
+        PdfApiClientConfig config = server.configBuilder()
+                .resultCache(cache)
+                .metrics(new MicrometerConversionMetrics(registry))
+                .build();
+
+        try (PdfApiClient client = factory.apply(config)) {
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, convert(client, request(PageFormat.A4, LOGO, false)));
+            // Same content read from streams, with the assets in another order
+            ConversionRequest streamed = ConversionRequest.builder()
+                    .properties(ConversionProperties.builder().format(PageFormat.A4).build())
+                    .htmlContent(new ByteArrayInputStream(HTML))
+                    .addAsset(ConversionRequest.AssetInput.of(new byte[0], "empty.txt"))
+                    .addAsset(ConversionRequest.AssetInput.of(new ByteArrayInputStream(LOGO), "logo.png"))
+                    .build();
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, convert(client, streamed));
+            assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, convert(client, request(PageFormat.A4, LOGO, false)));
+            assertEquals(1, server.requests("POST", "/convert").size());
+
+            convert(client, request(PageFormat.A5, LOGO, false));
+            convert(client, request(PageFormat.A4, new byte[]{4, 3, 2, 1}, false));
+            assertEquals(3, server.requests("POST", "/convert").size());
+        }
+
+        assertEquals(3, cache.entries());
+        // Read from disk first, then kept on the heap
+        assertEquals(1, cache.diskHits());
+        assertEquals(1, cache.memoryHits());
+        assertEquals(2.0, registry.get("pdfapi.result.cache").tag("result", "hit").counter().count());
+        assertEquals(3.0, registry.get("pdfapi.result.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("Stored results survive a restart and are read from mapped files")
+    void survivesRestart() throws Exception {
+        byte[] pdf = new byte[2 * 1024 * 1024];
+        new Random(7).nextBytes(pdf);
+        server.setPdf(pdf);
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder()
+                .resultCache(ResultCache.builder().directory(directory).build())
+                .build())) {
+            assertArrayEquals(pdf, convert(client, request(PageFormat.A4, LOGO, false)));
+        }
+
+        ResultCache restarted = ResultCache.builder().directory(directory).maxHeapBytes(0).build();
+        assertEquals(1, restarted.entries());
+        assertEquals(pdf.length, restarted.diskBytes());
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder()
+                .resultCache(restarted)
+                .build())) {
+            assertArrayEquals(pdf, convert(client, request(PageFormat.A4, LOGO, false)));
+            assertArrayEquals(pdf, convert(client, request(PageFormat.A4, LOGO, false)));
+        }
+        assertEquals(2, restarted.diskHits());
+        assertEquals(1, server.requests("POST", "/convert").size());
+    }
+
+    @Test
+    @DisplayName("The least recently used results are evicted when the directory is full, also after a restart")
+    void evictsLeastRecentlyUsed() throws Exception {
+        int size = LocalPdfApiServer.DEFAULT_PDF.length;
+        ResultCache cache = ResultCache.builder().directory(directory).maxDiskBytes(2L * size).build();
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().resultCache(cache).build())) {
+            convert(client, request(PageFormat.A4, LOGO, false));
+            convert(client, request(PageFormat.A5, LOGO, false));
+            convert(client, request(PageFormat.A4, LOGO, false));
+            convert(client, request(PageFormat.A6, LOGO, false));
+            assertEquals(3, server.requests("POST", "/convert").size());
+            assertEquals(2, cache.entries());
+            assertEquals(2, files().size());
+
+            // Dated back, so that only the next use decides the order after the restart
+            FileTime earlier = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+            for (Path file : files()) {
+                Files.setLastModifiedTime(file, earlier);
+            }
+            convert(client, request(PageFormat.A4, LOGO, false));
+            assertEquals(3, server.requests("POST", "/convert").size());
+        }
+
+        ResultCache restarted = ResultCache.builder().directory(directory).maxDiskBytes(size).build();
+        assertEquals(1, restarted.entries());
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().resultCache(restarted).build())) {
+            convert(client, request(PageFormat.A4, LOGO, false));
+        }
+        assertEquals(3, server.requests("POST", "/convert").size(), "most recently used result was kept");
+    }
+
+    @Test
+    @DisplayName("Clients of different endpoints don't share results")
+    void separatesEndpoints() throws Exception {
+        ResultCache cache = ResultCache.builder().directory(directory).build();
+        try (LocalPdfApiServer other = LocalPdfApiServer.start();
+             PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().resultCache(cache).build());
+             PdfApiClient otherClient = PdfApiClientFactory.createClient(other.configBuilder().resultCache(cache).build())) {
+            convert(client, request(PageFormat.A4, LOGO, false));
+            convert(otherClient, request(PageFormat.A4, LOGO, false));
+            convert(client, request(PageFormat.A4, LOGO, false));
+            assertEquals(1, server.requests("POST", "/convert").size());
+            assertEquals(1, other.requests("POST", "/convert").size());
+        }
+        assertEquals(2, cache.entries());
+    }
+
+    @Test
+    @DisplayName("Single-use content is buffered up to the limit for the whole request")
+    void limitsBufferingPerRequest() throws Exception {
+        ResultCache cache = ResultCache.builder()
+                .directory(directory)
+                .maxBufferedContentBytes(HTML.length + LOGO.length - 1)
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().resultCache(cache).build())) {
+            for (int i = 0; i < 2; i++) {
+                ConversionRequest streamed = ConversionRequest.builder()
+                        .htmlContent(new ByteArrayInputStream(HTML))
+                        .addAsset(ConversionRequest.AssetInput.of(new ByteArrayInputStream(LOGO), "logo.png"))
+                        .build();
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, convert(client, streamed));
+            }
+        }
+        assertEquals(2, server.requests("POST", "/convert").size());
+        assertEquals(0, cache.misses());
+        assertEquals(0, cache.entries());
+    }
+
+    @Test
+    @DisplayName("Results that were not read to the end are not stored")
+    void storesOnlyCompleteResults() throws Exception {
+        ResultCache cache = ResultCache.builder().directory(directory).build();
+        try (PdfApiClient client = PdfApiClientFactory.createClient(server.configBuilder().resultCache(cache).build())) {
+            try (InputStream pdf = client.convert(request(PageFormat.A4, LOGO, false)).get(10, TimeUnit.SECONDS)) {
+                pdf.read(new byte[4]);
+            }
+            assertEquals(0, cache.entries());
+            assertEquals(List.of(), files());
+
+            List<CompletableFuture<InputStream>> concurrent = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                concurrent.add(client.convert(request(PageFormat.A4, LOGO, true)));
+            }
+            for (CompletableFuture<InputStream> conversion : concurrent) {
+                try (InputStream pdf = conversion.get(10, TimeUnit.SECONDS)) {
+                    assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+                }
+            }
+        }
+        assertEquals(1, cache.entries());
+        assertEquals(1, files().size());
+    }
+
+    @Test
+    @DisplayName("Invalid cache settings are rejected")
+    void validatesSettings() {
+        assertThrows(IllegalStateException.class, () -> ResultCache.builder().build());
+        assertThrows(IllegalStateException.class, () -> ResultCache.builder().directory(directory).maxDiskBytes(0).build());
+        assertThrows(IllegalStateException.class, () -> ResultCache.builder().directory(directory).maxHeapBytes(-1).build());
+        assertThrows(IllegalStateException.class, () -> ResultCache.builder().directory(directory)
+                .maxBufferedContentBytes(0).build());
+    }
+
+    private static ConversionRequest request(PageFormat format, byte[] logo, boolean optimized) {
+        ConversionRequest.Builder builder = ConversionRequest.builder()
+                .properties(ConversionProperties.builder().format(format).build())
+                .htmlContent(HTML)
+                .addAsset(ConversionRequest.AssetInput.of(logo, "logo.png"))
+                .addAsset(ConversionRequest.AssetInput.of(new byte[0], "empty.txt"));
+        if (optimized) {
+            builder.assetOptimizer(AssetOptimizer.builder().build());
+        }
+        return builder.build();
+    }
+
+    private static byte[] convert(PdfApiClient client, ConversionRequest request) throws Exception {
+        try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+            return pdf.readAllBytes();
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Retries")
+class RetryTest {
+    private static final byte[] ASSET = "body { color: red }".getBytes(StandardCharsets.UTF_8);
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    @DisplayName("Only the failed upload is repeated")
+    void retriesFailedStageOnly() throws IOException {
+        server.failNext("POST", "/assets", 503, 2);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(fastRetries().build())) {
+            try (InputStream pdf = client.convert(request(ConversionRequest.AssetInput.of(ASSET, "styles.css"))).join()) {
+                assertArrayEquals(LocalPdfApiServer.DEFAULT_PDF, pdf.readAllBytes());
+            }
+            RetryStatistics statistics = client.getRetryStatistics();
+            assertEquals(2, statistics.getRetries());
+            assertEquals(2, statistics.getRetriesByType().get(RetryStatistics.FailureType.SERVER_ERROR));
+        }
+        assertEquals(1, server.requests("POST", "/api/conversions").size());
+        assertEquals(3, server.requests("POST", "/assets").size());
+        assertEquals(1, server.requests("POST", "/convert").size());
+    }
+
+    @Test
+    @DisplayName("Initialization is repeated after 429 but not after 5xx")
+    void initializationRetriesOnlyWhenNotProcessed() throws IOException {
+        server.failNext("POST", "/api/conversions", 429, 1);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(fastRetries().build())) {
+            client.convert(request()).join().close();
+            assertEquals(1, client.getRetryStatistics().getRetriesByType().get(RetryStatistics.FailureType.THROTTLED));
+
+            server.failNext("POST", "/api/conversions", 500, 1);
+            CompletionException error = assertThrows(CompletionException.class, () -> client.convert(request()).join());
+            PdfApiClientException cause = assertInstanceOf(PdfApiClientException.class, error.getCause());
+            assertEquals(500, cause.getStatusCode());
+            assertEquals(1, client.getRetryStatistics().getRetries());
+        }
+    }
+
+    @Test
+    @DisplayName("Single-use uploads are not repeated")
+    void streamUploadsAreNotRetried() {
+        server.failNext("POST", "/assets", 503, 1);
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(fastRetries().build())) {
+            ConversionRequest request = request(ConversionRequest.AssetInput.of(new ByteArrayInputStream(ASSET), "styles.css"));
+            assertThrows(CompletionException.class, () -> client.convert(request).join());
+            assertEquals(0, client.getRetryStatistics().getRetries());
+        }
+    }
+
+    @Test
+    @DisplayName("Retries stop when the budget is used up")
+    void budgetLimitsRetries() {
+        server.failNext("GET", "/result", 503, 1000);
+        PdfApiClientConfig config = fastRetries()
+                .maxRetries(5)
+                .retryBudgetRatio(0)
+                .build();
+        try (PdfApiClient client = PdfApiClientFactory.createWithOkHttp(config)) {
+            for (int i = 0; i < 4; i++) {
+                assertThrows(CompletionException.class, () -> client.convert(request()).join());
+            }
+            RetryStatistics statistics = client.getRetryStatistics();
+            assertEquals(10, statistics.getRetries(), statistics.toString());
+            assertEquals(2, statistics.getBudgetRejections(), statistics.toString());
+            assertEquals(2, statistics.getExhausted(), statistics.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Retries are timed by the client's scheduler and wait for Retry-After up to its limit")
+    void schedulesRetriesWithBoundedRetryAfter() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "test-scheduler"));
+        try {
+            RetryExecutor retries = new RetryExecutor(1, 5, 20, 50, 1.0, scheduler);
+            List<String> threads = new CopyOnWriteArrayList<>();
+            long start = System.nanoTime();
+            String result = retries.execute(RetryExecutor.Stage.RESULT, "Check", true, () -> {
+                threads.add(Thread.currentThread().getName());
+                return threads.size() == 1
+                        ? CompletableFuture.failedFuture(new PdfApiClientException("throttled", 429, 3_600_000))
+                        : CompletableFuture.completedFuture("done");
+            }).get(5, TimeUnit.SECONDS);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals("done", result);
+            assertEquals("test-scheduler", threads.get(1));
+            assertTrue(elapsedMs >= 50 && elapsedMs < 1000, String.valueOf(elapsedMs));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Transport failures are classified by cause")
+    void classifiesFailures() {
+        assertEquals(RetryStatistics.FailureType.CONNECT,
+                RetryExecutor.classify(new RuntimeException(new ConnectException("refused"))));
+        assertEquals(RetryStatistics.FailureType.TIMEOUT,
+                RetryExecutor.classify(new RuntimeException(new SocketTimeoutException())));
+        assertEquals(RetryStatistics.FailureType.TIMEOUT,
+                RetryExecutor.classify(new InterruptedIOException("timeout")));
+        assertEquals(RetryStatistics.FailureType.TIMEOUT,
+                RetryExecutor.classify(new HttpTimeoutException("request timed out")));
+        assertEquals(RetryStatistics.FailureType.CONNECT,
+                RetryExecutor.classify(new HttpConnectTimeoutException("connect timed out")));
+        assertEquals(RetryStatistics.FailureType.SERVER_ERROR,
+                RetryExecutor.classify(new PdfApiClientException("failed", 502)));
+        assertNull(RetryExecutor.classify(new PdfApiClientException("failed", 400)));
+        assertNull(RetryExecutor.classify(new IOException("broken")));
+    }
+
+    private PdfApiClientConfig.Builder fastRetries() {
+        return server.configBuilder().retryBackoffMillis(5, 20);
+    }
+
+    private static ConversionRequest request(ConversionRequest.AssetInput... assets) {
+        ConversionRequest.Builder builder = ConversionRequest.builder()
+                .htmlContent("<html>retry</html>".getBytes(StandardCharsets.UTF_8));
+        for (ConversionRequest.AssetInput asset : assets) {
+            builder.addAsset(asset);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,141 @@
+package io.pdfapi.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Streaming conversion results")
+class StreamingResponseTest {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS = 50;
+    private static final byte[] PDF_HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private LocalPdfApiServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = LocalPdfApiServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    /**
+     * The stand-in server sends the first megabyte of a 50 MB result and then waits until the client has
+     * read it. An adapter that buffers the body could never hand out the stream, so the conversion would
+     * time out; while draining the rest, the heap retained after garbage collection must stay well below
+     * the body size.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Large results are streamed without being buffered on the heap")
+    void resultIsStreamedWithBoundedMemory(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        CountDownLatch headerConsumed = new CountDownLatch(1);
+        server.setResultWriter(out -> {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            Arrays.fill(chunk, (byte) ' ');
+            System.arraycopy(PDF_HEADER, 0, chunk, 0, PDF_HEADER.length);
+            out.write(chunk);
+            out.flush();
+            awaitQuietly(headerConsumed);
+            Arrays.fill(chunk, 0, PDF_HEADER.length, (byte) ' ');
+            for (int i = 1; i < CHUNKS; i++) {
+                out.write(chunk);
+            }
+        });
+
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><body>large</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build());
+             InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+            assertArrayEquals(PDF_HEADER, pdf.readNBytes(PDF_HEADER.length));
+            headerConsumed.countDown();
+
+            long baseline = retainedHeap();
+            long[] peak = {baseline};
+            long total = PDF_HEADER.length + drain(pdf, () -> peak[0] = Math.max(peak[0], retainedHeap()));
+
+            assertEquals((long) CHUNK_SIZE * CHUNKS, total);
+            assertTrue(peak[0] - baseline < 16L * CHUNK_SIZE,
+                    "Reading a " + total + " byte result retained " + (peak[0] - baseline) + " bytes");
+        } finally {
+            headerConsumed.countDown();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("io.pdfapi.client.LocalPdfApiServer#adapters")
+    @DisplayName("Results can be closed before they are fully read")
+    void partlyReadResultCanBeClosed(String name, Function<PdfApiClientConfig, PdfApiClient> factory) throws Exception {
+        server.setResultWriter(out -> {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            System.arraycopy(PDF_HEADER, 0, chunk, 0, PDF_HEADER.length);
+            for (int i = 0; i < 10; i++) {
+                out.write(chunk);
+            }
+        });
+
+        ConversionRequest request = ConversionRequest.builder()
+                .htmlContent("<html><body>partial</body></html>".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        try (PdfApiClient client = factory.apply(server.configBuilder().build())) {
+            for (int i = 0; i < 3; i++) {
+                try (InputStream pdf = client.convert(request).get(10, TimeUnit.SECONDS)) {
+                    assertArrayEquals(PDF_HEADER, pdf.readNBytes(PDF_HEADER.length));
+                }
+            }
+        }
+    }
+
+    private static long drain(InputStream in, Runnable sampler) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        long nextSample = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total >= nextSample) {
+                sampler.run();
+                nextSample += 10L * CHUNK_SIZE;
+            }
+        }
+        return total;
+    }
+
+    private static long retainedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) throws IOException {
+        try {
+            if (!latch.await(30, TimeUnit.SECONDS)) {
+                throw new IOException("Client did not consume the first chunk");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}